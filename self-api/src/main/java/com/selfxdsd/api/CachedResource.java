@@ -31,8 +31,8 @@ import java.util.Map;
 
 /**
  * Cached {@link Resource}.
- * A Resource is considered cached if it has a eTag header in its
- * response headers.
+ * A Resource is considered cached if it has a eTag or a Last-Modified
+ * header in its response headers.
  * @author criske
  * @version $Id$
  * @since 0.0.8
@@ -51,10 +51,23 @@ public interface CachedResource extends Resource {
     /**
      * ETag of this resource.
      *
-     * @return String.
+     * @return String or null, if it only has a Last-Modified date.
      */
     String etag();
 
+    /**
+     * Last-Modified date of this resource, as sent by the provider
+     * (HTTP date format), to be used in If-Modified-Since.
+     *
+     * @return String or null, if it has no Last-Modified header.
+     */
+    default String lastModified() {
+        return this.header("Last-Modified")
+            .stream()
+            .findFirst()
+            .orElse(null);
+    }
+
     /**
      * Creation date of the cached resource.
      *
@@ -66,7 +79,8 @@ public interface CachedResource extends Resource {
      * Factory method that creates a CachedResource from a regular
      * Resource.
      * If the regular can't be cached
-     * (no ETag header present in its response headers) it returns null.
+     * (no ETag or Last-Modified header present in its response headers)
+     * it returns null.
      *
      * @param uri URI associated with the resource.
      * @param resource Original Resource.
@@ -86,15 +100,12 @@ public interface CachedResource extends Resource {
             }
         } else {
             final String eTag = resource
-                .headers()
-                .entrySet()
+                .header("ETag")
                 .stream()
-                .filter(entry -> entry.getKey()
-                    .equalsIgnoreCase("ETag"))
-                .flatMap(entry -> entry.getValue().stream())
                 .findFirst()
                 .orElse(null);
-            if (eTag != null) {
+            final boolean dated = !resource.header("Last-Modified").isEmpty();
+            if (eTag != null || dated) {
                 cached = new FromResource(resource, eTag, uri);
             } else {
                 cached = null;
@@ -106,8 +117,8 @@ public interface CachedResource extends Resource {
 
     /**
      * Cached Resource created from a regular Resource.
-     * A Resource is considered cached if it has eTag header in its
-     * response headers.
+     * A Resource is considered cached if it has eTag or Last-Modified
+     * header in its response headers.
      */
     class FromResource implements CachedResource {
 
@@ -136,7 +147,7 @@ public interface CachedResource extends Resource {
          * Ctr.
          *
          * @param original Resource.
-         * @param eTag Etag extracted from original headers.
+         * @param eTag Etag extracted from original headers, possibly null.
          * @param uri URI.
          */
         private FromResource(
@@ -192,7 +203,7 @@ public interface CachedResource extends Resource {
                 (code, body, headers) -> new FromResource(
                     this.original.newBuilder()
                         .status(code)
-                        .body(body.toString())
+                        .body(body)
                         .headers(h -> headers)
                         .build(),
                     eTag,
@@ -22,6 +22,8 @@
  */
 package com.selfxdsd.api;
 
+import java.time.Instant;
+
 /**
  * Event received from the Provider.
  * @author Mihai Andronache (amihaiemil@gmail.com)
@@ -62,6 +64,15 @@ public interface Event {
      */
     Project project();
 
+    /**
+     * Until when this Event should be resolved. Work still left after
+     * the deadline is abandoned. By default, there is no deadline.
+     * @return Instant, {@link Instant#MAX} if there is no deadline.
+     */
+    default Instant deadline() {
+        return Instant.MAX;
+    }
+
     /**
      * Event types.
      */
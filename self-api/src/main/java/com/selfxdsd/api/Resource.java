@@ -25,7 +25,6 @@ package com.selfxdsd.api;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
-import javax.json.JsonStructure;
 import javax.json.JsonValue;
 import java.io.StringReader;
 import java.util.List;
@@ -64,6 +63,25 @@ public interface Resource {
      */
     Map<String, List<String>> headers();
 
+    /**
+     * Values of a header, looked up ignoring the case of its name.
+     * @param name Header name.
+     * @return Header values, empty list if the header is missing.
+     */
+    default List<String> header(final String name) {
+        final Map<String, List<String>> headers = this.headers();
+        List<String> values = headers.get(name);
+        if (values == null) {
+            values = headers.entrySet()
+                .stream()
+                .filter(entry -> entry.getKey().equalsIgnoreCase(name))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(List.of());
+        }
+        return values;
+    }
+
     /**
      * Abstract builder for a new Resource based on this resource.
      * @return Builder.
@@ -81,10 +99,15 @@ public interface Resource {
         private int statusCode;
 
         /**
-         * Body.
+         * Body, null until it is set or read from the source.
          */
         private JsonValue body;
 
+        /**
+         * Original Resource.
+         */
+        private final Resource source;
+
         /**
          * Headers.
          */
@@ -96,21 +119,29 @@ public interface Resource {
         private final Factory factory;
 
         /**
-         * Ctor.
+         * Ctor. The source body is parsed from its String representation
+         * only if it is not replaced, when the new Resource is built.
          * @param source Original Resource.
          * @param factory Resource factory.
          */
         public Builder(final Resource source, final Factory factory) {
+            this(source, null, factory);
+        }
+
+        /**
+         * Ctor. Use it if the source already has its body parsed.
+         * @param source Original Resource.
+         * @param body Parsed body of the original Resource.
+         * @param factory Resource factory.
+         */
+        public Builder(
+            final Resource source,
+            final JsonValue body,
+            final Factory factory
+        ) {
+            this.source = source;
             this.statusCode = source.statusCode();
-            final String sourceBody = source.toString();
-            if (sourceBody == null || sourceBody.isBlank()
-                || "null".equalsIgnoreCase(sourceBody)) {
-                this.body = JsonValue.NULL;
-            } else {
-                this.body = Json.createReader(
-                    new StringReader(sourceBody)
-                ).read();
-            }
+            this.body = body;
             this.headers = source.headers();
             this.factory = factory;
         }
@@ -126,11 +157,11 @@ public interface Resource {
         }
 
         /**
-         * Set new body as json object or array.
+         * Set new body as json value (usually an object or array).
          * @param body Body.
          * @return Builder.
          */
-        public Builder body(final JsonStructure body){
+        public Builder body(final JsonValue body){
             this.body = body;
             return this;
         }
@@ -161,6 +192,17 @@ public interface Resource {
          * @return Resource.
          */
         public Resource build() {
+            if (this.body == null) {
+                final String sourceBody = this.source.toString();
+                if (sourceBody == null || sourceBody.isBlank()
+                    || "null".equalsIgnoreCase(sourceBody)) {
+                    this.body = JsonValue.NULL;
+                } else {
+                    this.body = Json.createReader(
+                        new StringReader(sourceBody)
+                    ).read();
+                }
+            }
             return this.factory
                 .create(this.statusCode, this.body, this.headers);
         }
@@ -51,7 +51,164 @@ public interface JsonStorage {
     CachedResource storeResource(CachedResource resource);
 
     /**
-     * In memory JsonStorage.
+     * Remove the resource, because it was changed (e.g. by a PATCH)
+     * and is now stale, together with all its variants: the resources
+     * stored under the same URI with any query or fragment (e.g. the
+     * pages and the filtered versions of a listing). See
+     * {@link #base(URI)}.
+     * <br/>
+     * By default nothing is removed, in which case the stale resource is
+     * still revalidated using its ETag, but it may be served without
+     * revalidation while it is fresh. Implementations should override it.
+     * @param uri URI.
+     */
+    default void removeResource(final URI uri) {
+        //does nothing by default.
+    }
+
+    /**
+     * The URI without its query and fragment. The resources stored under
+     * URIs with the same base are variants of the same resource, so they
+     * are removed together.
+     * @param uri URI.
+     * @return URI.
+     */
+    static URI base(final URI uri) {
+        final String text = uri.toString();
+        int end = text.length();
+        for (final char delimiter : new char[] {'?', '#'}) {
+            final int index = text.indexOf(delimiter);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        return URI.create(text.substring(0, end));
+    }
+
+    /**
+     * Statistics of this storage and of the cached GETs served from it.
+     * By default, nothing is counted.
+     * @return Stats.
+     */
+    default Stats stats() {
+        return new Stats.None();
+    }
+
+    /**
+     * Statistics of a JsonStorage: what happened to the cached GETs
+     * (overall and by URI pattern), plus the size of the storage.
+     */
+    interface Stats {
+
+        /**
+         * Outcome of a cached GET, or of a change of the storage.
+         */
+        enum Outcome {
+            /**
+             * Served from the storage, without any request (still fresh).
+             */
+            HIT,
+            /**
+             * Revalidated by the provider with 304 Not Modified.
+             */
+            REVALIDATED,
+            /**
+             * Was stored, but the provider sent a new version.
+             */
+            MODIFIED,
+            /**
+             * Was not stored.
+             */
+            MISS,
+            /**
+             * A resource was stored.
+             */
+            STORED,
+            /**
+             * A resource was removed, because of a mutation.
+             */
+            INVALIDATED
+        }
+
+        /**
+         * Record an outcome.
+         * @param uri URI of the resource.
+         * @param outcome Outcome.
+         */
+        void record(URI uri, Outcome outcome);
+
+        /**
+         * How many times the outcome happened.
+         * @param outcome Outcome.
+         * @return Long.
+         */
+        long count(Outcome outcome);
+
+        /**
+         * Counts of the outcomes, by URI pattern
+         * (e.g. "/repos/{owner}/{repo}/issues/{n}").
+         * @return Map of pattern to the counts of each outcome.
+         */
+        Map<String, Map<Outcome, Long>> byPattern();
+
+        /**
+         * Number of stored resources.
+         * @return Long.
+         */
+        long entries();
+
+        /**
+         * Bytes taken by the stored resources.
+         * @return Long.
+         */
+        long bytes();
+
+        /**
+         * Number of resources evicted to make room for others.
+         * @return Long.
+         */
+        long evictions();
+
+        /**
+         * No statistics.
+         */
+        final class None implements Stats {
+
+            @Override
+            public void record(final URI uri, final Outcome outcome) {
+                //nothing is counted.
+            }
+
+            @Override
+            public long count(final Outcome outcome) {
+                return 0;
+            }
+
+            @Override
+            public Map<String, Map<Outcome, Long>> byPattern() {
+                return Map.of();
+            }
+
+            @Override
+            public long entries() {
+                return 0;
+            }
+
+            @Override
+            public long bytes() {
+                return 0;
+            }
+
+            @Override
+            public long evictions() {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * In memory JsonStorage. It is unbounded, so use it only in tests;
+     * otherwise prefer a bounded implementation.
      */
     final class InMemory implements JsonStorage {
 
@@ -72,5 +229,13 @@ public interface JsonStorage {
         ) {
             return storage.put(resource.uri(), resource);
         }
+
+        @Override
+        public void removeResource(final URI uri) {
+            final URI base = JsonStorage.base(uri);
+            storage.keySet().removeIf(
+                key -> JsonStorage.base(key).equals(base)
+            );
+        }
     }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package com.selfxdsd.core;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 /**
  * Representation of an access token in a http request header.
  * This is used by {@link JsonResources} to execute authenticated requests.
@@ -24,6 +28,29 @@ public interface AccessToken {
      */
     String value();
 
+    /**
+     * Digest of an access token, which tells the tokens apart without
+     * revealing them (e.g. in a storage or in the process-wide state of
+     * the JsonResources decorators).
+     * @param accessToken Access token.
+     * @return First 8 bytes of its SHA-256, in hex.
+     */
+    static String digest(final AccessToken accessToken) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(
+                (accessToken.header() + ":" + accessToken.value())
+                    .getBytes(StandardCharsets.UTF_8)
+            );
+            final StringBuilder hex = new StringBuilder();
+            for (int idx = 0; idx < 8; ++idx) {
+                hex.append(String.format("%02x", hash[idx]));
+            }
+            return hex.toString();
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
     /**
      * A Github access token.
      */
@@ -0,0 +1,601 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * JSON Resources which adapt the number of in-flight requests of each
+ * access token (per host) to what the provider can take, using AIMD
+ * (additive increase, multiplicative decrease).
+ * <br/>
+ * The limit grows by one per "round" of fast, successful calls and is
+ * halved on 403, 429, I/O errors or responses much slower than usual
+ * (twice the moving average latency). Calls over the limit wait for a
+ * free slot: sync calls block (at most until the current
+ * {@link Deadline} or the max wait), async calls are queued without
+ * blocking the caller.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class AdaptiveJsonResources implements JsonResources {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        AdaptiveJsonResources.class
+    );
+
+    /**
+     * Limits shared by all the instances created with the public ctors.
+     * A limit unused for an hour is dropped.
+     */
+    private static final Registry<Limit> SHARED = new Registry<>(
+        Duration.ofHours(1)
+    );
+
+    /**
+     * Identity of unauthenticated requests.
+     */
+    private static final String ANONYMOUS = "anonymous";
+
+    /**
+     * JsonResources delegate.
+     */
+    private final JsonResources delegate;
+
+    /**
+     * Identity of the access token (its digest).
+     */
+    private final String identity;
+
+    /**
+     * Initial limit.
+     */
+    private final int initial;
+
+    /**
+     * Maximum limit.
+     */
+    private final int max;
+
+    /**
+     * Maximum time a sync call waits for a slot.
+     */
+    private final Duration maxWait;
+
+    /**
+     * Limits, by host and identity.
+     */
+    private final Registry<Limit> limits;
+
+    /**
+     * Ctor. Starts at 4 in-flight requests per token and host, never
+     * going over 64; sync calls wait at most 30 seconds for a slot.
+     * @param delegate JsonResources delegate.
+     */
+    public AdaptiveJsonResources(final JsonResources delegate) {
+        this(delegate, 4, 64, Duration.ofSeconds(30));
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param initial Initial limit.
+     * @param max Maximum limit.
+     * @param maxWait Maximum time a sync call waits for a slot.
+     */
+    public AdaptiveJsonResources(
+        final JsonResources delegate,
+        final int initial,
+        final int max,
+        final Duration maxWait
+    ) {
+        this(delegate, ANONYMOUS, initial, max, maxWait, SHARED);
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param identity Identity of the access token (its digest).
+     * @param initial Initial limit.
+     * @param max Maximum limit.
+     * @param maxWait Maximum time a sync call waits for a slot.
+     * @param limits Limits, by host and identity.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    AdaptiveJsonResources(
+        final JsonResources delegate,
+        final String identity,
+        final int initial,
+        final int max,
+        final Duration maxWait,
+        final Registry<Limit> limits
+    ) {
+        this.delegate = delegate;
+        this.identity = identity;
+        this.initial = initial;
+        this.max = max;
+        this.maxWait = maxWait;
+        this.limits = limits;
+    }
+
+    @Override
+    public JsonResources authenticated(final AccessToken accessToken) {
+        return new AdaptiveJsonResources(
+            this.delegate.authenticated(accessToken),
+            AccessToken.digest(accessToken),
+            this.initial,
+            this.max,
+            this.maxWait,
+            this.limits
+        );
+    }
+
+    /**
+     * Current in-flight limit of this access token, for the URI's host.
+     * @param uri URI.
+     * @return Limit.
+     */
+    public int limit(final URI uri) {
+        return this.limitOf(uri).current();
+    }
+
+    @Override
+    public Resource get(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.limited(uri, () -> this.delegate.get(uri, headers));
+    }
+
+    @Override
+    public Resource post(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.limited(
+            uri, () -> this.delegate.post(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource patch(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.limited(
+            uri, () -> this.delegate.patch(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource put(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.limited(
+            uri, () -> this.delegate.put(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource delete(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.limited(
+            uri, () -> this.delegate.delete(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.limitedAsync(
+            uri, () -> this.delegate.getAsync(uri, headers)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.limitedAsync(
+            uri, () -> this.delegate.postAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.limitedAsync(
+            uri, () -> this.delegate.patchAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.limitedAsync(
+            uri, () -> this.delegate.putAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.limitedAsync(
+            uri, () -> this.delegate.deleteAsync(uri, headers, body)
+        );
+    }
+
+    /**
+     * Wait for a slot, make the call and adapt the limit to its outcome.
+     * @param uri URI.
+     * @param call Call to the delegate.
+     * @return Resource.
+     */
+    private Resource limited(final URI uri, final Supplier<Resource> call) {
+        final Limit limit = this.limitOf(uri);
+        final CompletableFuture<Void> slot = limit.acquire();
+        final Duration wait = Deadline.current().timeout(this.maxWait);
+        try {
+            slot.get(wait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException | ExecutionException ex) {
+            if (slot.cancel(false)) {
+                throw new IllegalStateException(
+                    "No free slot for [" + uri + "] after " + wait
+                    + ", the limit is " + limit.current() + ".",
+                    ex
+                );
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if (slot.cancel(false)) {
+                throw new IllegalStateException(
+                    "Interrupted while waiting for a slot for [" + uri + "]",
+                    ex
+                );
+            }
+        }
+        final long start = System.nanoTime();
+        Resource resource = null;
+        Throwable error = null;
+        try {
+            resource = call.get();
+        } catch (final IllegalStateException ex) {
+            error = ex;
+            throw ex;
+        } finally {
+            limit.release(System.nanoTime() - start, dropped(resource, error));
+        }
+        return resource;
+    }
+
+    /**
+     * Wait for a slot without blocking, make the async call and adapt
+     * the limit to its outcome. The call may be made on the thread which
+     * frees the slot, so it runs within the caller's {@link Deadline}.
+     * @param uri URI.
+     * @param call Call to the delegate.
+     * @return Future Resource.
+     */
+    private CompletableFuture<Resource> limitedAsync(
+        final URI uri,
+        final Supplier<CompletableFuture<Resource>> call
+    ) {
+        final Limit limit = this.limitOf(uri);
+        final Deadline deadline = Deadline.current();
+        return limit.acquire().thenCompose(
+            nothing -> measuredAsync(limit, deadline, call)
+        );
+    }
+
+    /**
+     * Make the async call within the given deadline and release the
+     * slot once it completes.
+     * @param limit Limit holding the slot.
+     * @param deadline Deadline of the caller.
+     * @param call Call to the delegate.
+     * @return Future Resource.
+     */
+    private static CompletableFuture<Resource> measuredAsync(
+        final Limit limit,
+        final Deadline deadline,
+        final Supplier<CompletableFuture<Resource>> call
+    ) {
+        final long start = System.nanoTime();
+        final AtomicReference<CompletableFuture<Resource>> future =
+            new AtomicReference<>();
+        Throwable error = null;
+        try {
+            deadline.run(() -> future.set(call.get()));
+        } catch (final IllegalStateException ex) {
+            error = ex;
+            throw ex;
+        } finally {
+            if (future.get() == null) {
+                limit.release(
+                    System.nanoTime() - start, dropped(null, error)
+                );
+            }
+        }
+        return future.get().whenComplete(
+            (resource, thrown) -> limit.release(
+                System.nanoTime() - start, dropped(resource, thrown)
+            )
+        );
+    }
+
+    /**
+     * The limit of this access token, for the URI's host.
+     * @param uri URI.
+     * @return Limit.
+     */
+    private Limit limitOf(final URI uri) {
+        return this.limits.get(
+            uri.getHost() + "|" + this.identity,
+            () -> new Limit(this.initial, this.max)
+        );
+    }
+
+    /**
+     * Did the provider push back (403, 429 or I/O error)?
+     * @param resource Response, null if the call failed.
+     * @param error Error, null if there is a response.
+     * @return True or false.
+     */
+    private static boolean dropped(
+        final Resource resource,
+        final Throwable error
+    ) {
+        boolean dropped = false;
+        if (resource != null) {
+            dropped = resource.statusCode() == HttpURLConnection.HTTP_FORBIDDEN
+                || resource.statusCode() == 429;
+        } else {
+            Throwable cause = error;
+            if (cause instanceof CompletionException) {
+                cause = cause.getCause();
+            }
+            while (cause != null && !dropped) {
+                dropped = cause instanceof IOException;
+                cause = cause.getCause();
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * AIMD in-flight limit of one access token, on one host.
+     */
+    static final class Limit {
+
+        /**
+         * How much slower than the average latency is "slow".
+         */
+        private static final double TOLERANCE = 2.0;
+
+        /**
+         * Weight of a new latency sample in the moving average.
+         */
+        private static final double SMOOTHING = 0.05;
+
+        /**
+         * Maximum limit.
+         */
+        private final int max;
+
+        /**
+         * Lock guarding the state below.
+         */
+        private final Object lock = new Object();
+
+        /**
+         * Calls waiting for a slot.
+         */
+        private final Deque<CompletableFuture<Void>> waiting =
+            new ArrayDeque<>();
+
+        /**
+         * Current limit; fractional, to grow by 1/limit per call.
+         */
+        private double limit;
+
+        /**
+         * Calls in flight.
+         */
+        private int inflight;
+
+        /**
+         * Moving average latency (nanos), 0 until the first call.
+         */
+        private double average;
+
+        /**
+         * Ctor.
+         * @param initial Initial limit.
+         * @param max Maximum limit.
+         */
+        Limit(final int initial, final int max) {
+            this.limit = initial;
+            this.max = max;
+        }
+
+        /**
+         * Current limit.
+         * @return Integer, at least 1.
+         */
+        int current() {
+            synchronized (this.lock) {
+                return (int) this.limit;
+            }
+        }
+
+        /**
+         * Calls in flight.
+         * @return Integer.
+         */
+        int inflight() {
+            synchronized (this.lock) {
+                return this.inflight;
+            }
+        }
+
+        /**
+         * Ask for a slot.
+         * @return Future completed when the slot is given. If cancelled
+         *  before that, the slot is not taken anymore.
+         */
+        CompletableFuture<Void> acquire() {
+            final CompletableFuture<Void> slot;
+            synchronized (this.lock) {
+                if (this.inflight < (int) this.limit) {
+                    this.inflight = this.inflight + 1;
+                    slot = CompletableFuture.completedFuture(null);
+                } else {
+                    slot = new CompletableFuture<>();
+                    this.waiting.add(slot);
+                }
+            }
+            return slot;
+        }
+
+        /**
+         * Give back a slot and adapt the limit to the call's outcome.
+         * @param latency Latency of the call (nanos).
+         * @param dropped Did the provider push back?
+         */
+        void release(final long latency, final boolean dropped) {
+            final List<CompletableFuture<Void>> next;
+            synchronized (this.lock) {
+                this.inflight = this.inflight - 1;
+                this.adapt(latency, dropped);
+                next = this.granted();
+            }
+            this.complete(next);
+        }
+
+        /**
+         * Adapt the limit to the outcome of a call. Call it holding
+         * the lock.
+         * @param latency Latency of the call (nanos).
+         * @param dropped Did the provider push back?
+         */
+        private void adapt(final long latency, final boolean dropped) {
+            final boolean slow = this.average > 0
+                && latency > this.average * TOLERANCE;
+            if (dropped || slow) {
+                this.limit = Math.max(1, this.limit / 2);
+                LOG.debug(
+                    "Limit decreased to {} (dropped: {}, slow: {}).",
+                    (int) this.limit, dropped, slow
+                );
+            } else if (this.inflight + 1 >= (int) this.limit / 2) {
+                this.limit = Math.min(this.max, this.limit + 1 / this.limit);
+            }
+            if (!dropped && this.average == 0) {
+                this.average = latency;
+            } else if (!dropped) {
+                this.average = this.average * (1 - SMOOTHING)
+                    + latency * SMOOTHING;
+            }
+        }
+
+        /**
+         * Take slots for the waiting calls, as long as the limit allows.
+         * Call it holding the lock.
+         * @return The waiting calls which got a slot.
+         */
+        private List<CompletableFuture<Void>> granted() {
+            final List<CompletableFuture<Void>> granted = new ArrayList<>();
+            while (!this.waiting.isEmpty()
+                && this.inflight < (int) this.limit) {
+                final CompletableFuture<Void> slot = this.waiting.poll();
+                if (!slot.isCancelled()) {
+                    this.inflight = this.inflight + 1;
+                    granted.add(slot);
+                }
+            }
+            return granted;
+        }
+
+        /**
+         * Let the calls which got a slot go. If one was cancelled
+         * meanwhile, its slot is given back.
+         * @param granted The waiting calls which got a slot.
+         */
+        private void complete(final List<CompletableFuture<Void>> granted) {
+            for (final CompletableFuture<Void> slot : granted) {
+                if (!slot.complete(null)) {
+                    final List<CompletableFuture<Void>> next;
+                    synchronized (this.lock) {
+                        this.inflight = this.inflight - 1;
+                        next = this.granted();
+                    }
+                    this.complete(next);
+                }
+            }
+        }
+    }
+}
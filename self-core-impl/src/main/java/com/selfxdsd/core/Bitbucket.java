@@ -42,6 +42,11 @@ import java.net.URI;
  */
 public final class Bitbucket implements Provider {
 
+    /**
+     * Base URI of Bitbucket's API.
+     */
+    static final URI BASE_URI = URI.create("https://bitbucket.org/api/2.0");
+
     /**
      * User.
      */
@@ -50,7 +55,7 @@ public final class Bitbucket implements Provider {
     /**
      * Bitbucket's URI.
      */
-    private final URI uri = URI.create("https://bitbucket.org/api/2.0");
+    private final URI uri = Bitbucket.BASE_URI;
 
     /**
      * Bitbucket's JSON Resources.
@@ -71,9 +76,13 @@ public final class Bitbucket implements Provider {
         this(
             user,
             storage,
-            new ConditionalJsonResources(
-                new JsonResources.JdkHttp(),
-                storage.jsonStorage()
+            new SingleFlightJsonResources(
+                new ConditionalJsonResources(
+                    new CircuitBreakerJsonResources(
+                        new JsonResources.JdkHttp()
+                    ),
+                    storage.jsonStorage()
+                )
             )
         );
     }
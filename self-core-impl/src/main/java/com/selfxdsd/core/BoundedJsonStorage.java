@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+import com.selfxdsd.api.storage.JsonStorage;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory JsonStorage bounded by the total size of the stored bodies.
+ * <br/>
+ * Eviction follows a segmented LRU policy: a new resource enters the
+ * probation segment and is promoted to the protected segment (80% of the
+ * capacity) only when it is read again. When the storage is full, the
+ * least recently used resources of the probation segment go first, so
+ * one-off resources (e.g. searches with unique query strings) do not push
+ * out the ones we read all the time. A resource bigger than the whole
+ * capacity is not stored at all (and the one it would replace is
+ * dropped, wherever it was).
+ * <br/>
+ * The weight of a resource is the length of its body (the size in memory,
+ * for a {@link CompactResource}), plus the length of its URI and a fixed
+ * overhead.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class BoundedJsonStorage implements JsonStorage {
+
+    /**
+     * Fixed weight of each entry (object headers, ETag, dates etc).
+     */
+    private static final long OVERHEAD = 256;
+
+    /**
+     * Lock guarding the segments and the counters.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Probation segment, from least to most recently used.
+     */
+    private final Map<URI, Entry> probation = new LinkedHashMap<>();
+
+    /**
+     * Protected segment, from least to most recently used.
+     */
+    private final Map<URI, Entry> protect = new LinkedHashMap<>();
+
+    /**
+     * Stored URIs, by their base (see {@link JsonStorage#base(URI)}), so
+     * a resource can be removed together with its variants.
+     */
+    private final Map<URI, Set<URI>> variants = new HashMap<>();
+
+    /**
+     * Statistics.
+     */
+    private final CacheStats stats = new CacheStats(
+        this::size, this::weight, this::evictions
+    );
+
+    /**
+     * Maximum total weight.
+     */
+    private final long capacity;
+
+    /**
+     * Maximum weight of the protected segment.
+     */
+    private final long protectedCapacity;
+
+    /**
+     * Weight of the probation segment.
+     */
+    private long probationWeight;
+
+    /**
+     * Weight of the protected segment.
+     */
+    private long protectedWeight;
+
+    /**
+     * Number of evicted resources.
+     */
+    private long evictions;
+
+    /**
+     * Total weight of the evicted resources.
+     */
+    private long evictedWeight;
+
+    /**
+     * Ctor. The capacity is 64MB.
+     */
+    public BoundedJsonStorage() {
+        this(64L * 1024 * 1024);
+    }
+
+    /**
+     * Ctor.
+     * @param capacity Maximum total weight (approximately, bytes).
+     */
+    public BoundedJsonStorage(final long capacity) {
+        this.capacity = capacity;
+        this.protectedCapacity = capacity * 4 / 5;
+    }
+
+    @Override
+    public CachedResource getResource(final URI uri) {
+        final CachedResource found;
+        synchronized (this.lock) {
+            Entry entry = this.protect.remove(uri);
+            if (entry != null) {
+                this.protect.put(uri, entry);
+            } else {
+                entry = this.probation.remove(uri);
+                if (entry != null) {
+                    this.probationWeight -= entry.weight;
+                    this.promote(uri, entry);
+                }
+            }
+            if (entry == null) {
+                found = null;
+            } else {
+                found = entry.resource;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public CachedResource storeResource(final CachedResource resource) {
+        final URI uri = resource.uri();
+        final Entry entry = new Entry(
+            resource, BoundedJsonStorage.weigh(resource)
+        );
+        synchronized (this.lock) {
+            final Entry old = this.protect.remove(uri);
+            if (old != null) {
+                this.protectedWeight -= old.weight;
+            }
+            final Entry previous = this.probation.remove(uri);
+            if (previous != null) {
+                this.probationWeight -= previous.weight;
+            }
+            if (entry.weight > this.capacity) {
+                this.unindexed(uri);
+            } else if (old != null) {
+                this.promote(uri, entry);
+            } else {
+                this.probation.put(uri, entry);
+                this.probationWeight += entry.weight;
+                this.indexed(uri);
+            }
+            this.evict();
+        }
+        return resource;
+    }
+
+    @Override
+    public void removeResource(final URI uri) {
+        synchronized (this.lock) {
+            final Set<URI> stored = this.variants.get(JsonStorage.base(uri));
+            final List<URI> removed;
+            if (stored == null) {
+                removed = List.of();
+            } else {
+                removed = new ArrayList<>(stored);
+            }
+            for (final URI variant : removed) {
+                final Entry protect = this.protect.remove(variant);
+                if (protect != null) {
+                    this.protectedWeight -= protect.weight;
+                }
+                final Entry probation = this.probation.remove(variant);
+                if (probation != null) {
+                    this.probationWeight -= probation.weight;
+                }
+                this.unindexed(variant);
+            }
+        }
+    }
+
+    @Override
+    public Stats stats() {
+        return this.stats;
+    }
+
+    /**
+     * Number of stored resources.
+     * @return Integer.
+     */
+    public int size() {
+        synchronized (this.lock) {
+            return this.probation.size() + this.protect.size();
+        }
+    }
+
+    /**
+     * Total weight of the stored resources.
+     * @return Long.
+     */
+    public long weight() {
+        synchronized (this.lock) {
+            return this.probationWeight + this.protectedWeight;
+        }
+    }
+
+    /**
+     * Number of resources evicted so far.
+     * @return Long.
+     */
+    public long evictions() {
+        synchronized (this.lock) {
+            return this.evictions;
+        }
+    }
+
+    /**
+     * Total weight of the resources evicted so far.
+     * @return Long.
+     */
+    public long evictedWeight() {
+        synchronized (this.lock) {
+            return this.evictedWeight;
+        }
+    }
+
+    /**
+     * Move an entry to the protected segment. If the protected segment
+     * overflows, its least recently used entries are demoted back to
+     * probation.
+     * @param uri URI.
+     * @param entry Entry.
+     */
+    private void promote(final URI uri, final Entry entry) {
+        this.protect.put(uri, entry);
+        this.protectedWeight += entry.weight;
+        final Iterator<Map.Entry<URI, Entry>> lru = this.protect
+            .entrySet().iterator();
+        while (this.protectedWeight > this.protectedCapacity
+            && lru.hasNext()) {
+            final Map.Entry<URI, Entry> demoted = lru.next();
+            if (demoted.getValue() != entry) {
+                lru.remove();
+                this.protectedWeight -= demoted.getValue().weight;
+                this.probation.put(demoted.getKey(), demoted.getValue());
+                this.probationWeight += demoted.getValue().weight;
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used entries, probation first, until the
+     * total weight fits the capacity.
+     */
+    private void evict() {
+        this.evict(this.probation.entrySet().iterator(), true);
+        this.evict(this.protect.entrySet().iterator(), false);
+    }
+
+    /**
+     * Evict the least recently used entries of a segment, until the total
+     * weight fits the capacity.
+     * @param lru Entries of the segment, least recently used first.
+     * @param probationary Is it the probation segment?
+     */
+    private void evict(
+        final Iterator<Map.Entry<URI, Entry>> lru,
+        final boolean probationary
+    ) {
+        while (this.probationWeight + this.protectedWeight > this.capacity
+            && lru.hasNext()) {
+            final Map.Entry<URI, Entry> evicted = lru.next();
+            final long weight = evicted.getValue().weight;
+            lru.remove();
+            this.unindexed(evicted.getKey());
+            if (probationary) {
+                this.probationWeight -= weight;
+            } else {
+                this.protectedWeight -= weight;
+            }
+            this.evictions = this.evictions + 1;
+            this.evictedWeight += weight;
+        }
+    }
+
+    /**
+     * Register a stored URI under its base.
+     * @param uri URI.
+     */
+    private void indexed(final URI uri) {
+        this.variants.computeIfAbsent(
+            JsonStorage.base(uri), base -> new HashSet<>()
+        ).add(uri);
+    }
+
+    /**
+     * Unregister a URI which is no longer stored.
+     * @param uri URI.
+     */
+    private void unindexed(final URI uri) {
+        final URI base = JsonStorage.base(uri);
+        final Set<URI> stored = this.variants.get(base);
+        if (stored != null) {
+            stored.remove(uri);
+            if (stored.isEmpty()) {
+                this.variants.remove(base);
+            }
+        }
+    }
+
+    /**
+     * Weigh a resource.
+     * @param resource Resource.
+     * @return Weight.
+     */
+    private static long weigh(final CachedResource resource) {
+        long weight = OVERHEAD + resource.uri().toString().length();
+        if (resource instanceof CompactResource) {
+            weight += ((CompactResource) resource).bodySize();
+        } else {
+            final String body = resource.toString();
+            if (body != null) {
+                weight += body.length();
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Stored resource and its weight.
+     */
+    private static final class Entry {
+
+        /**
+         * Resource.
+         */
+        private final CachedResource resource;
+
+        /**
+         * Weight.
+         */
+        private final long weight;
+
+        /**
+         * Ctor.
+         * @param resource Resource.
+         * @param weight Weight.
+         */
+        Entry(final CachedResource resource, final long weight) {
+            this.resource = resource;
+            this.weight = weight;
+        }
+    }
+}
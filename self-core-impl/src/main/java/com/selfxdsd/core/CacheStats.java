@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.storage.JsonStorage;
+
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Statistics of a JsonStorage, counted in memory. The outcomes are
+ * grouped by URI pattern (see {@link MeteredJsonResources#template(URI)}),
+ * while the size of the storage is read from the storage itself.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class CacheStats implements JsonStorage.Stats {
+
+    /**
+     * Counters of each outcome, by URI pattern.
+     */
+    private final Map<String, LongAdder[]> patterns =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Number of stored resources.
+     */
+    private final LongSupplier entries;
+
+    /**
+     * Bytes taken by the stored resources.
+     */
+    private final LongSupplier bytes;
+
+    /**
+     * Number of evicted resources.
+     */
+    private final LongSupplier evictions;
+
+    /**
+     * Ctor.
+     * @param entries Number of stored resources.
+     * @param bytes Bytes taken by the stored resources.
+     * @param evictions Number of evicted resources.
+     */
+    public CacheStats(
+        final LongSupplier entries,
+        final LongSupplier bytes,
+        final LongSupplier evictions
+    ) {
+        this.entries = entries;
+        this.bytes = bytes;
+        this.evictions = evictions;
+    }
+
+    @Override
+    public void record(final URI uri, final Outcome outcome) {
+        this.patterns.computeIfAbsent(
+            MeteredJsonResources.template(uri),
+            pattern -> {
+                final LongAdder[] counters =
+                    new LongAdder[Outcome.values().length];
+                for (int idx = 0; idx < counters.length; ++idx) {
+                    counters[idx] = new LongAdder();
+                }
+                return counters;
+            }
+        )[outcome.ordinal()].increment();
+    }
+
+    @Override
+    public long count(final Outcome outcome) {
+        long count = 0;
+        for (final LongAdder[] counters : this.patterns.values()) {
+            count += counters[outcome.ordinal()].sum();
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Map<Outcome, Long>> byPattern() {
+        final Map<String, Map<Outcome, Long>> snapshot = new TreeMap<>();
+        this.patterns.forEach(
+            (pattern, counters) -> {
+                final Map<Outcome, Long> counts = new EnumMap<>(
+                    Outcome.class
+                );
+                for (final Outcome outcome : Outcome.values()) {
+                    counts.put(outcome, counters[outcome.ordinal()].sum());
+                }
+                snapshot.put(pattern, counts);
+            }
+        );
+        return snapshot;
+    }
+
+    @Override
+    public long entries() {
+        return this.entries.getAsLong();
+    }
+
+    @Override
+    public long bytes() {
+        return this.bytes.getAsLong();
+    }
+
+    @Override
+    public long evictions() {
+        return this.evictions.getAsLong();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder text = new StringBuilder()
+            .append("entries=").append(this.entries())
+            .append(", bytes=").append(this.bytes())
+            .append(", evictions=").append(this.evictions());
+        for (final Outcome outcome : Outcome.values()) {
+            text.append(", ").append(outcome.name().toLowerCase())
+                .append('=').append(this.count(outcome));
+        }
+        return text.toString();
+    }
+}
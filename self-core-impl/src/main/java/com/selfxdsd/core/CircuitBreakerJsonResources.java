@@ -0,0 +1,607 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * JSON Resources which isolate the provider hosts from each other. Each
+ * host has its own circuit breaker and its own concurrency limit
+ * (bulkhead), so a slow or failing provider cannot take the threads
+ * and the throughput of the healthy ones.
+ * <br/>
+ * After a number of consecutive failures (I/O errors, timeouts or 5xx
+ * responses) the circuit opens and the calls to that host fail fast
+ * with IllegalStateException. After a cooldown, one probe call is let
+ * through (half-open): if it succeeds the circuit closes, otherwise it
+ * opens again.
+ * <br/>
+ * A call which does not get a permit from the bulkhead in the allowed
+ * time (never past the current {@link Deadline}) also fails fast. Async
+ * calls never wait for a permit, and they never throw: they return a
+ * failed future instead.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class CircuitBreakerJsonResources implements JsonResources {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        CircuitBreakerJsonResources.class
+    );
+
+    /**
+     * Circuits shared by all the instances created with the public ctors.
+     */
+    private static final Map<String, Circuit> SHARED =
+        new ConcurrentHashMap<>();
+
+    /**
+     * JsonResources delegate.
+     */
+    private final JsonResources delegate;
+
+    /**
+     * Consecutive failures after which the circuit opens.
+     */
+    private final int threshold;
+
+    /**
+     * How long the circuit stays open before a probe is let through.
+     */
+    private final Duration cooldown;
+
+    /**
+     * Maximum concurrent calls per host.
+     */
+    private final int concurrency;
+
+    /**
+     * Maximum time a call waits for a permit.
+     */
+    private final Duration maxWait;
+
+    /**
+     * Circuits, by host.
+     */
+    private final Map<String, Circuit> circuits;
+
+    /**
+     * Ctor. The circuit opens after 5 consecutive failures, for 30
+     * seconds; at most 16 concurrent calls per host, waiting at most
+     * 10 seconds for a permit.
+     * @param delegate JsonResources delegate.
+     */
+    public CircuitBreakerJsonResources(final JsonResources delegate) {
+        this(
+            delegate, 5, Duration.ofSeconds(30), 16, Duration.ofSeconds(10)
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param threshold Consecutive failures after which the circuit opens.
+     * @param cooldown How long the circuit stays open before a probe.
+     * @param concurrency Maximum concurrent calls per host.
+     * @param maxWait Maximum time a call waits for a permit.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    public CircuitBreakerJsonResources(
+        final JsonResources delegate,
+        final int threshold,
+        final Duration cooldown,
+        final int concurrency,
+        final Duration maxWait
+    ) {
+        this(delegate, threshold, cooldown, concurrency, maxWait, SHARED);
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param threshold Consecutive failures after which the circuit opens.
+     * @param cooldown How long the circuit stays open before a probe.
+     * @param concurrency Maximum concurrent calls per host.
+     * @param maxWait Maximum time a call waits for a permit.
+     * @param circuits Circuits, by host.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    CircuitBreakerJsonResources(
+        final JsonResources delegate,
+        final int threshold,
+        final Duration cooldown,
+        final int concurrency,
+        final Duration maxWait,
+        final Map<String, Circuit> circuits
+    ) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.cooldown = cooldown;
+        this.concurrency = concurrency;
+        this.maxWait = maxWait;
+        this.circuits = circuits;
+    }
+
+    @Override
+    public JsonResources authenticated(final AccessToken accessToken) {
+        return new CircuitBreakerJsonResources(
+            this.delegate.authenticated(accessToken),
+            this.threshold,
+            this.cooldown,
+            this.concurrency,
+            this.maxWait,
+            this.circuits
+        );
+    }
+
+    /**
+     * State of the circuit of the given host.
+     * @param host Host.
+     * @return State.
+     */
+    public State state(final String host) {
+        final Circuit circuit = this.circuits.get(host);
+        final State state;
+        if (circuit == null) {
+            state = State.CLOSED;
+        } else {
+            state = circuit.state();
+        }
+        return state;
+    }
+
+    @Override
+    public Resource get(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.guarded(uri, () -> this.delegate.get(uri, headers));
+    }
+
+    @Override
+    public Resource post(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.guarded(
+            uri, () -> this.delegate.post(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource patch(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.guarded(
+            uri, () -> this.delegate.patch(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource put(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.guarded(
+            uri, () -> this.delegate.put(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource delete(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.guarded(
+            uri, () -> this.delegate.delete(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.guardedAsync(
+            uri, () -> this.delegate.getAsync(uri, headers)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.guardedAsync(
+            uri, () -> this.delegate.postAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.guardedAsync(
+            uri, () -> this.delegate.patchAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.guardedAsync(
+            uri, () -> this.delegate.putAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.guardedAsync(
+            uri, () -> this.delegate.deleteAsync(uri, headers, body)
+        );
+    }
+
+    /**
+     * Make the call through the host's circuit and bulkhead.
+     * @param uri URI.
+     * @param call Call to the delegate.
+     * @return Resource.
+     */
+    private Resource guarded(final URI uri, final Supplier<Resource> call) {
+        final Circuit circuit = this.admitted(uri);
+        boolean permit;
+        try {
+            permit = circuit.permits.tryAcquire(
+                Deadline.current().timeout(this.maxWait).toMillis(),
+                TimeUnit.MILLISECONDS
+            );
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            permit = false;
+        }
+        if (!permit) {
+            throw this.rejected(uri, circuit);
+        }
+        final Resource resource;
+        try {
+            resource = call.get();
+        } catch (final IllegalStateException ex) {
+            this.judged(uri, circuit, null, ex);
+            throw ex;
+        } finally {
+            circuit.permits.release();
+        }
+        this.judged(uri, circuit, resource, null);
+        return resource;
+    }
+
+    /**
+     * Make the async call through the host's circuit and bulkhead.
+     * @param uri URI.
+     * @param call Call to the delegate.
+     * @return Future Resource.
+     */
+    private CompletableFuture<Resource> guardedAsync(
+        final URI uri,
+        final Supplier<CompletableFuture<Resource>> call
+    ) {
+        CompletableFuture<Resource> future;
+        try {
+            final Circuit circuit = this.admitted(uri);
+            if (!circuit.permits.tryAcquire()) {
+                throw this.rejected(uri, circuit);
+            }
+            future = this.permitted(uri, circuit, call);
+        } catch (final IllegalStateException ex) {
+            future = CompletableFuture.failedFuture(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Make the async call which got a permit from the bulkhead, giving
+     * the permit back when it completes.
+     * @param uri URI.
+     * @param circuit Circuit of the host.
+     * @param call Call to the delegate.
+     * @return Future Resource.
+     */
+    private CompletableFuture<Resource> permitted(
+        final URI uri,
+        final Circuit circuit,
+        final Supplier<CompletableFuture<Resource>> call
+    ) {
+        final CompletableFuture<Resource> future;
+        try {
+            future = call.get();
+        } catch (final IllegalStateException ex) {
+            circuit.permits.release();
+            this.judged(uri, circuit, null, ex);
+            throw ex;
+        }
+        return future.whenComplete(
+            (resource, error) -> {
+                circuit.permits.release();
+                this.judged(uri, circuit, resource, error);
+            }
+        );
+    }
+
+    /**
+     * The circuit of the URI's host, if it lets the call through.
+     * @param uri URI.
+     * @return Circuit.
+     * @throws IllegalStateException If the circuit is open.
+     */
+    private Circuit admitted(final URI uri) {
+        final Circuit circuit = this.circuits.computeIfAbsent(
+            uri.getHost(), host -> new Circuit(this.concurrency)
+        );
+        if (!circuit.allow(System.currentTimeMillis(), this.cooldown)) {
+            throw new IllegalStateException(
+                "Circuit open for [" + uri.getHost() + "], not calling ["
+                + uri + "]."
+            );
+        }
+        return circuit;
+    }
+
+    /**
+     * A call rejected by the bulkhead.
+     * @param uri URI.
+     * @param circuit Circuit which admitted the call.
+     * @return IllegalStateException to throw.
+     */
+    private IllegalStateException rejected(
+        final URI uri,
+        final Circuit circuit
+    ) {
+        circuit.neutral();
+        return new IllegalStateException(
+            "Too many concurrent calls to [" + uri.getHost()
+            + "], not calling [" + uri + "]."
+        );
+    }
+
+    /**
+     * Record the outcome of a call in the circuit.
+     * @param uri URI.
+     * @param circuit Circuit.
+     * @param resource Response, null if the call failed.
+     * @param error Error, null if there is a response.
+     */
+    private void judged(
+        final URI uri,
+        final Circuit circuit,
+        final Resource resource,
+        final Throwable error
+    ) {
+        final boolean serverError = resource != null
+            && resource.statusCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        if (serverError) {
+            this.failed(uri, circuit);
+        } else if (resource != null) {
+            circuit.success();
+        } else if (CircuitBreakerJsonResources.hostFailure(error)) {
+            this.failed(uri, circuit);
+        } else {
+            circuit.neutral();
+        }
+    }
+
+    /**
+     * Record a failure in the circuit.
+     * @param uri URI.
+     * @param circuit Circuit.
+     */
+    private void failed(final URI uri, final Circuit circuit) {
+        final boolean opened = circuit.failure(
+            System.currentTimeMillis(), this.threshold
+        );
+        if (opened) {
+            LOG.warn(
+                "Circuit opened for {} after calling {}, for {}.",
+                uri.getHost(), uri, this.cooldown
+            );
+        }
+    }
+
+    /**
+     * Is the error the host's fault (I/O error or timeout)?
+     * @param error Error.
+     * @return True or false.
+     */
+    private static boolean hostFailure(final Throwable error) {
+        boolean found = false;
+        Throwable cause = error;
+        if (cause instanceof CompletionException) {
+            cause = cause.getCause();
+        }
+        while (cause != null && !found) {
+            found = cause instanceof IOException;
+            cause = cause.getCause();
+        }
+        return found;
+    }
+
+    /**
+     * State of a circuit.
+     */
+    public enum State {
+        /**
+         * Calls go through.
+         */
+        CLOSED,
+
+        /**
+         * Calls fail fast.
+         */
+        OPEN,
+
+        /**
+         * One probe call goes through, to see if the host recovered.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Circuit breaker and bulkhead of one host.
+     */
+    static final class Circuit {
+
+        /**
+         * Bulkhead permits.
+         */
+        private final Semaphore permits;
+
+        /**
+         * Current state.
+         */
+        private State current = State.CLOSED;
+
+        /**
+         * Consecutive failures.
+         */
+        private int failures;
+
+        /**
+         * When the circuit opened (epoch millis).
+         */
+        private long opened;
+
+        /**
+         * Is a probe in flight (half-open)?
+         */
+        private boolean probing;
+
+        /**
+         * Ctor.
+         * @param concurrency Maximum concurrent calls.
+         */
+        Circuit(final int concurrency) {
+            this.permits = new Semaphore(concurrency);
+        }
+
+        /**
+         * Can a call go through?
+         * @param now Current time (epoch millis).
+         * @param cooldown How long the circuit stays open before a probe.
+         * @return True or false.
+         */
+        synchronized boolean allow(final long now, final Duration cooldown) {
+            final boolean allow;
+            if (this.current == State.CLOSED) {
+                allow = true;
+            } else if (this.current == State.OPEN
+                && now - this.opened >= cooldown.toMillis()) {
+                this.current = State.HALF_OPEN;
+                this.probing = true;
+                allow = true;
+            } else if (this.current == State.HALF_OPEN && !this.probing) {
+                this.probing = true;
+                allow = true;
+            } else {
+                allow = false;
+            }
+            return allow;
+        }
+
+        /**
+         * A call succeeded.
+         */
+        synchronized void success() {
+            this.current = State.CLOSED;
+            this.failures = 0;
+            this.probing = false;
+        }
+
+        /**
+         * A call failed.
+         * @param now Current time (epoch millis).
+         * @param threshold Consecutive failures after which it opens.
+         * @return True if the circuit opened because of this failure.
+         */
+        synchronized boolean failure(final long now, final int threshold) {
+            this.failures = this.failures + 1;
+            final boolean open = this.current == State.HALF_OPEN
+                || this.current == State.CLOSED && this.failures >= threshold;
+            if (open) {
+                this.current = State.OPEN;
+                this.opened = now;
+                this.probing = false;
+            }
+            return open;
+        }
+
+        /**
+         * A call ended without telling us anything about the host's
+         * health (e.g. it was rejected before reaching the host).
+         */
+        synchronized void neutral() {
+            this.probing = false;
+        }
+
+        /**
+         * Current state.
+         * @return State.
+         */
+        synchronized State state() {
+            return this.current;
+        }
+    }
+}
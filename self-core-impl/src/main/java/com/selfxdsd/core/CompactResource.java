@@ -0,0 +1,371 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+import com.selfxdsd.api.Resource;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact CachedResource, meant to be kept in memory for a long time:
+ * the body is kept as UTF-8 bytes, deflate-compressed if it is big enough
+ * and compression pays off, and it is decoded (and parsed) only when it is
+ * read. The decoded body is kept softly referenced, so the resources read
+ * often are not decoded again, until the memory runs low. Only the headers
+ * needed by the core are kept (ETag, Last-Modified, Cache-Control, Vary,
+ * Link, Content-Type and Date).
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class CompactResource implements CachedResource {
+
+    /**
+     * Bodies smaller than this are not compressed.
+     */
+    private static final int MIN_DEFLATE = 512;
+
+    /**
+     * Headers which are kept (lower case).
+     */
+    private static final Set<String> KEPT = Set.of(
+        "etag", "last-modified", "cache-control", "vary",
+        "link", "content-type", "date"
+    );
+
+    /**
+     * URI.
+     */
+    private final URI uri;
+
+    /**
+     * ETag.
+     */
+    private final String etag;
+
+    /**
+     * Creation date.
+     */
+    private final LocalDateTime creationDate;
+
+    /**
+     * Status code.
+     */
+    private final int statusCode;
+
+    /**
+     * Body, as UTF-8 bytes, possibly deflated.
+     */
+    private final byte[] body;
+
+    /**
+     * Is the body deflated?
+     */
+    private final boolean deflated;
+
+    /**
+     * Kept headers.
+     */
+    private final Map<String, List<String>> headers;
+
+    /**
+     * The decoded resource, if it was read lately.
+     */
+    private volatile SoftReference<JsonResources.JsonResponse> decoded;
+
+    /**
+     * Ctor.
+     * @param resource Cached resource to compact.
+     */
+    public CompactResource(final CachedResource resource) {
+        this(
+            resource.uri(),
+            resource.etag(),
+            resource.creationDate(),
+            resource.statusCode(),
+            resource.toString().getBytes(StandardCharsets.UTF_8),
+            CompactResource.kept(resource.headers())
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param uri URI.
+     * @param etag ETag.
+     * @param creationDate Creation date.
+     * @param statusCode Status code.
+     * @param utf UTF-8 bytes of the body.
+     * @param headers Kept headers.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    private CompactResource(
+        final URI uri,
+        final String etag,
+        final LocalDateTime creationDate,
+        final int statusCode,
+        final byte[] utf,
+        final Map<String, List<String>> headers
+    ) {
+        this.uri = uri;
+        this.etag = etag;
+        this.creationDate = creationDate;
+        this.statusCode = statusCode;
+        final byte[] compressed = CompactResource.deflated(utf);
+        this.deflated = compressed.length < utf.length;
+        if (this.deflated) {
+            this.body = compressed;
+        } else {
+            this.body = utf;
+        }
+        this.headers = headers;
+        this.decoded = new SoftReference<>(null);
+    }
+
+    /**
+     * Ctor.
+     * @param origin Resource to copy.
+     * @param creationDate Creation date of the copy.
+     */
+    private CompactResource(
+        final CompactResource origin,
+        final LocalDateTime creationDate
+    ) {
+        this.uri = origin.uri;
+        this.etag = origin.etag;
+        this.creationDate = creationDate;
+        this.statusCode = origin.statusCode;
+        this.body = origin.body;
+        this.deflated = origin.deflated;
+        this.headers = origin.headers;
+        this.decoded = origin.decoded;
+    }
+
+    /**
+     * The same resource, created now (e.g. after it was revalidated with
+     * a 304). The body is shared, not encoded again.
+     * @return CompactResource.
+     */
+    public CompactResource refreshed() {
+        return new CompactResource(this, LocalDateTime.now());
+    }
+
+    /**
+     * How many bytes the body takes in memory.
+     * @return Integer.
+     */
+    public int bodySize() {
+        return this.body.length;
+    }
+
+    @Override
+    public URI uri() {
+        return this.uri;
+    }
+
+    @Override
+    public String etag() {
+        return this.etag;
+    }
+
+    @Override
+    public LocalDateTime creationDate() {
+        return this.creationDate;
+    }
+
+    @Override
+    public int statusCode() {
+        return this.statusCode;
+    }
+
+    @Override
+    public JsonObject asJsonObject() {
+        return this.decoded().asJsonObject();
+    }
+
+    @Override
+    public JsonArray asJsonArray() {
+        return this.decoded().asJsonArray();
+    }
+
+    @Override
+    public Map<String, List<String>> headers() {
+        return this.headers;
+    }
+
+    @Override
+    public Builder newBuilder() {
+        return new Builder(
+            this,
+            (status, json, headers) -> this.built(
+                new JsonResources.JsonResponse(
+                    status,
+                    json,
+                    CompactResource.withEtag(headers, this.etag)
+                )
+            )
+        );
+    }
+
+    @Override
+    public String toString() {
+        final byte[] utf;
+        if (this.deflated) {
+            try (
+                final InputStream inflater = new InflaterInputStream(
+                    new ByteArrayInputStream(this.body)
+                )
+            ) {
+                utf = inflater.readAllBytes();
+            } catch (final IOException ex) {
+                throw new IllegalStateException(
+                    "Could not inflate the cached body of " + this.uri, ex
+                );
+            }
+        } else {
+            utf = this.body;
+        }
+        return new String(utf, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Resource built from this one. It can be cached only if it still has
+     * an ETag or a Last-Modified header, otherwise it is returned as it is.
+     * @param response Built response.
+     * @return Resource.
+     */
+    private Resource built(final JsonResources.JsonResponse response) {
+        final CachedResource cached = CachedResource.fromResource(
+            this.uri, response
+        );
+        final Resource built;
+        if (cached == null) {
+            built = response;
+        } else {
+            built = new CompactResource(cached);
+        }
+        return built;
+    }
+
+    /**
+     * The decoded resource. It is softly referenced, so it can be
+     * collected when the memory runs low.
+     * @return JsonResponse.
+     */
+    private JsonResources.JsonResponse decoded() {
+        JsonResources.JsonResponse response = this.decoded.get();
+        if (response == null) {
+            response = new JsonResources.JsonResponse(
+                this.statusCode, this.toString(), this.headers
+            );
+            this.decoded = new SoftReference<>(response);
+        }
+        return response;
+    }
+
+    /**
+     * Deflate the body, if it is big enough.
+     * @param utf UTF-8 bytes of the body.
+     * @return Deflated bytes, or the same bytes if it is too small.
+     */
+    private static byte[] deflated(final byte[] utf) {
+        byte[] deflated = utf;
+        if (utf.length >= MIN_DEFLATE) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                utf.length / 4
+            );
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (
+                final DeflaterOutputStream out = new DeflaterOutputStream(
+                    bytes, deflater
+                )
+            ) {
+                out.write(utf);
+            } catch (final IOException ex) {
+                throw new IllegalStateException(
+                    "Could not deflate the body", ex
+                );
+            } finally {
+                deflater.end();
+            }
+            deflated = bytes.toByteArray();
+        }
+        return deflated;
+    }
+
+    /**
+     * Keep only the headers needed by the core.
+     * @param headers All headers.
+     * @return Kept headers.
+     */
+    private static Map<String, List<String>> kept(
+        final Map<String, List<String>> headers
+    ) {
+        final Map<String, List<String>> kept = new LinkedHashMap<>();
+        for (final Map.Entry<String, List<String>> header
+            : headers.entrySet()) {
+            if (header.getKey() != null
+                && KEPT.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                kept.put(header.getKey(), List.copyOf(header.getValue()));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Make sure the headers have the ETag (if there is one), so the built
+     * resource can be cached too.
+     * @param headers Headers.
+     * @param etag ETag, possibly null.
+     * @return Headers with ETag.
+     */
+    private static Map<String, List<String>> withEtag(
+        final Map<String, List<String>> headers,
+        final String etag
+    ) {
+        final Map<String, List<String>> tagged = new LinkedHashMap<>(headers);
+        final boolean present = etag == null || tagged.keySet().stream()
+            .anyMatch(name -> "etag".equalsIgnoreCase(name));
+        if (!present) {
+            tagged.put("ETag", List.of(etag));
+        }
+        return tagged;
+    }
+}
@@ -25,6 +25,7 @@ package com.selfxdsd.core;
 import com.selfxdsd.api.CachedResource;
 import com.selfxdsd.api.Resource;
 import com.selfxdsd.api.storage.JsonStorage;
+import com.selfxdsd.api.storage.JsonStorage.Stats.Outcome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,11 +34,25 @@ import java.net.HttpURLConnection;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 /**
  * Cacheable JSON Resources used by Provider.
+ * <br/>
+ * The stored resources are partitioned by identity (access token): the
+ * responses to authenticated requests are stored under the URI plus a
+ * fragment which identifies the token (a hash of it), so they are never
+ * served to another identity. A response goes to the shared partition
+ * (the plain URI) only if it is provably public: it was an anonymous
+ * request, or it says <code>Cache-Control: public</code>, and it does not
+ * say <code>private</code> or <code>Vary: Authorization</code>. An
+ * identity is served the newer of its own resource and the shared one
+ * (skipping shared resources which vary by Authorization). A mutation
+ * removes the affected resources from all the partitions, since the
+ * JsonStorage removes them together with all their variants.
  * @author criske
  * @version $Id$
  * @since 0.0.79
@@ -64,11 +79,26 @@ public final class ConditionalJsonResources implements JsonResources {
     private final JsonStorage jsonStorage;
 
     /**
-     * Ctor.
+     * How long the stored resources can be served without revalidation.
+     */
+    private final Freshness freshness;
+
+    /**
+     * Which stored resources are made stale by a mutation.
+     */
+    private final Invalidations invalidations;
+
+    /**
+     * Partition of this identity, null if the requests are anonymous.
+     */
+    private final String partition;
+
+    /**
+     * Ctor. Resources are stored in memory, up to 64MB.
      * @param delegate JsonResources delegate.
      */
     public ConditionalJsonResources(final JsonResources delegate) {
-        this(delegate, new JsonStorage.InMemory());
+        this(delegate, new BoundedJsonStorage());
     }
 
     /**
@@ -78,16 +108,75 @@ public final class ConditionalJsonResources implements JsonResources {
      */
     public ConditionalJsonResources(final JsonResources delegate,
                                     final JsonStorage jsonStorage) {
+        this(delegate, jsonStorage, new Freshness());
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param jsonStorage JSON storage.
+     * @param freshness How long the stored resources can be served
+     *  without revalidation.
+     */
+    public ConditionalJsonResources(
+        final JsonResources delegate,
+        final JsonStorage jsonStorage,
+        final Freshness freshness
+    ) {
+        this(delegate, jsonStorage, freshness, new Invalidations());
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param jsonStorage JSON storage.
+     * @param freshness How long the stored resources can be served
+     *  without revalidation.
+     * @param invalidations Which stored resources are made stale
+     *  by a mutation.
+     */
+    public ConditionalJsonResources(
+        final JsonResources delegate,
+        final JsonStorage jsonStorage,
+        final Freshness freshness,
+        final Invalidations invalidations
+    ) {
+        this(delegate, jsonStorage, freshness, invalidations, null);
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param jsonStorage JSON storage.
+     * @param freshness How long the stored resources can be served
+     *  without revalidation.
+     * @param invalidations Which stored resources are made stale
+     *  by a mutation.
+     * @param partition Partition of this identity, null if anonymous.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    private ConditionalJsonResources(
+        final JsonResources delegate,
+        final JsonStorage jsonStorage,
+        final Freshness freshness,
+        final Invalidations invalidations,
+        final String partition
+    ) {
         this.delegate = delegate;
         this.jsonStorage = jsonStorage;
+        this.freshness = freshness;
+        this.invalidations = invalidations;
+        this.partition = partition;
     }
 
-
     @Override
     public JsonResources authenticated(final AccessToken accessToken) {
         return new ConditionalJsonResources(
             this.delegate.authenticated(accessToken),
-            this.jsonStorage
+            this.jsonStorage,
+            this.freshness,
+            this.invalidations,
+            AccessToken.digest(accessToken)
         );
     }
 
@@ -101,7 +190,9 @@ public final class ConditionalJsonResources implements JsonResources {
     public Resource post(final URI uri,
                          final Supplier<Map<String, List<String>>> headers,
                          final JsonValue body) {
-        return this.delegate.post(uri, headers, body);
+        return this.mutated(
+            uri, this.delegate.post(uri, headers, body), false
+        );
     }
 
     @Override
@@ -110,7 +201,9 @@ public final class ConditionalJsonResources implements JsonResources {
         final Supplier<Map<String, List<String>>> headers,
         final JsonValue body
     ) {
-        return this.delegate.patch(uri, headers, body);
+        return this.mutated(
+            uri, this.delegate.patch(uri, headers, body), true
+        );
     }
 
     @Override
@@ -119,7 +212,9 @@ public final class ConditionalJsonResources implements JsonResources {
         final Supplier<Map<String, List<String>>> headers,
         final JsonValue body
     ) {
-        return this.delegate.put(uri, headers, body);
+        return this.mutated(
+            uri, this.delegate.put(uri, headers, body), false
+        );
     }
 
     @Override
@@ -128,11 +223,76 @@ public final class ConditionalJsonResources implements JsonResources {
         final Supplier<Map<String, List<String>>> headers,
         final JsonValue body
     ) {
-        return this.delegate.delete(uri, headers, body);
+        return this.mutated(
+            uri, this.delegate.delete(uri, headers, body), false
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        final CompletableFuture<Resource> resource;
+        final CachedResource stored = this.stored(uri);
+        if (this.fresh(headers, stored)) {
+            this.record(uri, Outcome.HIT);
+            resource = CompletableFuture.completedFuture(stored);
+        } else if (stored != null) {
+            resource = this.delegate
+                .getAsync(uri, this.conditional(headers, stored))
+                .thenApply(remote -> this.revalidated(uri, stored, remote));
+        } else {
+            resource = this.delegate
+                .getAsync(uri, headers)
+                .thenApply(remote -> this.fetched(uri, headers, remote));
+        }
+        return resource;
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.postAsync(uri, headers, body)
+            .thenApply(resource -> this.mutated(uri, resource, false));
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.patchAsync(uri, headers, body)
+            .thenApply(resource -> this.mutated(uri, resource, true));
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.putAsync(uri, headers, body)
+            .thenApply(resource -> this.mutated(uri, resource, false));
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.deleteAsync(uri, headers, body)
+            .thenApply(resource -> this.mutated(uri, resource, false));
     }
 
     /**
-     * Try to get Resource from json storage cache by URI, otherwise fetch
+     * Try to get Resource from json storage cache by URI (without any
+     * request if it is still fresh), otherwise fetch
      * from remote and then store the Resource.
      * @param uri URI.
      * @param headers Current Headers.
@@ -143,54 +303,320 @@ public final class ConditionalJsonResources implements JsonResources {
         final Supplier<Map<String, List<String>>> headers
     ) {
         final Resource resource;
-        final CachedResource stored = this.jsonStorage.getResource(uri);
-        if (stored != null) {
-            final Resource remoteResource = this.delegate
-                .get(uri, this.ifNoneMatch(headers, stored.etag()));
-            final int status = remoteResource.statusCode();
+        final CachedResource stored = this.stored(uri);
+        if (this.fresh(headers, stored)) {
+            this.record(uri, Outcome.HIT);
+            resource = stored;
+        } else if (stored != null) {
+            resource = this.revalidated(
+                uri,
+                stored,
+                this.delegate.get(uri, this.conditional(headers, stored))
+            );
+        } else {
+            resource = this.fetched(
+                uri,
+                headers,
+                this.delegate.get(uri, headers)
+            );
+        }
+        return resource;
+    }
 
-            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+    /**
+     * Handle the response of a conditional (If-None-Match) request made
+     * for a stored resource.
+     * @param uri URI.
+     * @param stored Stored resource.
+     * @param remoteResource Remote response.
+     * @return Stored resource if it was not modified (stored again, so it
+     *  is fresh again, if it has a freshness window), the remote
+     *  resource otherwise.
+     */
+    private Resource revalidated(
+        final URI uri,
+        final CachedResource stored,
+        final Resource remoteResource
+    ) {
+        final Resource resource;
+        final int status = remoteResource.statusCode();
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            LOG.debug(
+                "Remote resource body for {} was not modified."
+                    + " Getting the resource body from json storage.",
+                uri
+            );
+            this.record(uri, Outcome.REVALIDATED);
+            if (this.freshness.window(stored).isZero()) {
+                resource = stored;
+            } else {
+                final CachedResource refreshed =
+                    ConditionalJsonResources.refreshed(stored);
+                this.jsonStorage.storeResource(refreshed);
+                resource = refreshed;
+            }
+        } else {
+            LOG.debug(
+                "Remote resource body for {} was modified or "
+                    + " has an unexpected status code.",
+                uri
+            );
+            this.record(uri, Outcome.MODIFIED);
+            final CachedResource cached = ConditionalJsonResources.cached(
+                this.key(uri, remoteResource), remoteResource
+            );
+            if (cached != null) {
                 LOG.debug(
-                    "Remote resource body for {} was not modified."
-                        + " Getting the resource body from json storage.",
-                    uri
+                    "Storing remote resource body for {} with ETag {}",
+                    uri,
+                    cached.etag()
                 );
-                resource = stored;
+                this.record(uri, Outcome.STORED);
+                this.jsonStorage.storeResource(cached);
+                resource = cached;
             } else {
+                resource = remoteResource;
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Handle the response of a mutation (POST, PATCH, PUT or DELETE):
+     * if it succeeded, the stored resources which it affected are removed.
+     * The response of a PATCH is the new state of the resource, so it is
+     * stored, if possible, instead of being removed.
+     * @param uri Mutated URI.
+     * @param resource Response of the mutation.
+     * @param patch Was it a PATCH?
+     * @return The same response.
+     */
+    private Resource mutated(
+        final URI uri,
+        final Resource resource,
+        final boolean patch
+    ) {
+        final int status = resource.statusCode();
+        if (status >= HttpURLConnection.HTTP_OK
+            && status < HttpURLConnection.HTTP_MULT_CHOICE) {
+            for (final URI stale : this.invalidations.affected(uri)) {
+                LOG.debug("Removing stale resource {}", stale);
+                this.record(stale, Outcome.INVALIDATED);
+                this.jsonStorage.removeResource(stale);
+            }
+            final CachedResource updated = ConditionalJsonResources.cached(
+                this.key(uri, resource), resource
+            );
+            if (patch && updated != null) {
+                this.record(uri, Outcome.STORED);
+                this.jsonStorage.storeResource(updated);
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Handle the response of a request made for a resource which was not
+     * stored yet. Store it, if possible.
+     * @param uri URI.
+     * @param headers Request headers.
+     * @param resource Remote response.
+     * @return The remote resource.
+     */
+    private Resource fetched(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final Resource resource
+    ) {
+        this.record(uri, Outcome.MISS);
+        if (!this.cacheControlNoCache(headers)) {
+            final CachedResource cached = ConditionalJsonResources.cached(
+                this.key(uri, resource), resource
+            );
+            if (cached != null) {
                 LOG.debug(
-                    "Remote resource body for {} was modified or "
-                        + " has an unexpected status code.",
-                    uri
+                    "Storing remote resource body for {} with ETag {}",
+                    uri,
+                    cached.etag()
                 );
-                final CachedResource cached = CachedResource
-                    .fromResource(uri, remoteResource);
-                if (cached != null) {
-                    LOG.debug(
-                        "Storing remote resource body for {} with ETag {}",
-                        uri,
-                        cached.etag()
-                    );
-                    resource = this.jsonStorage.storeResource(cached);
-                } else {
-                    resource = remoteResource;
+                this.record(uri, Outcome.STORED);
+                this.jsonStorage.storeResource(cached);
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Can the stored resource be served without revalidation? It can't,
+     * if the request says <code>Cache-Control: no-cache</code> or
+     * <code>Cache-Control: max-age=0</code>.
+     * @param headers Request headers.
+     * @param stored Stored resource, possibly null.
+     * @return True or false.
+     */
+    private boolean fresh(
+        final Supplier<Map<String, List<String>>> headers,
+        final CachedResource stored
+    ) {
+        return stored != null
+            && !this.cacheControlNoCache(headers)
+            && !this.cacheControlMaxAgeZero(headers)
+            && this.freshness.fresh(stored);
+    }
+
+    /**
+     * The stored resource to be served for the URI: the newer of the one
+     * in this identity's partition and the shared one (the shared one is
+     * skipped if it varies by Authorization and this identity is not
+     * anonymous).
+     * @param uri URI.
+     * @return CachedResource or null if there is none.
+     */
+    private CachedResource stored(final URI uri) {
+        CachedResource own = null;
+        CachedResource shared = this.jsonStorage.getResource(uri);
+        if (this.partition != null) {
+            own = this.jsonStorage.getResource(
+                ConditionalJsonResources.key(uri, this.partition)
+            );
+            if (shared != null && ConditionalJsonResources.varies(shared)) {
+                shared = null;
+            }
+        }
+        final CachedResource stored;
+        if (own == null) {
+            stored = shared;
+        } else if (shared == null
+            || !shared.creationDate().isAfter(own.creationDate())) {
+            stored = own;
+        } else {
+            stored = shared;
+        }
+        return stored;
+    }
+
+    /**
+     * Storage key of a response: the plain URI (shared partition) if the
+     * response is provably public, the URI in this identity's partition
+     * otherwise.
+     * @param uri URI.
+     * @param resource Response.
+     * @return URI.
+     */
+    private URI key(final URI uri, final Resource resource) {
+        boolean shared = !ConditionalJsonResources.varies(resource);
+        boolean pub = this.partition == null;
+        for (final String value : resource.header("Cache-Control")) {
+            for (final String directive : value.split(",")) {
+                final String trimmed = directive.trim()
+                    .toLowerCase(Locale.ROOT);
+                if ("private".equals(trimmed)) {
+                    shared = false;
+                } else if ("public".equals(trimmed)) {
+                    pub = true;
                 }
             }
+        }
+        final URI key;
+        if (shared && pub) {
+            key = uri;
         } else {
-            resource = this.delegate.get(uri, headers);
-            if (!this.cacheControlNoCache(headers)) {
-                final CachedResource cached = CachedResource
-                    .fromResource(uri, resource);
-                if (cached != null) {
-                    LOG.debug(
-                        "Storing remote resource body for {} with ETag {}",
-                        uri,
-                        cached.etag()
-                    );
-                    this.jsonStorage.storeResource(cached);
+            key = ConditionalJsonResources.key(uri, this.partition);
+        }
+        return key;
+    }
+
+    /**
+     * Does the response vary by the Authorization header?
+     * @param resource Response.
+     * @return True or false.
+     */
+    private static boolean varies(final Resource resource) {
+        boolean varies = false;
+        for (final String value : resource.header("Vary")) {
+            for (final String name : value.split(",")) {
+                final String trimmed = name.trim();
+                if ("*".equals(trimmed)
+                    || "Authorization".equalsIgnoreCase(trimmed)) {
+                    varies = true;
                 }
             }
         }
-        return resource;
+        return varies;
+    }
+
+    /**
+     * Storage key of the URI in a partition.
+     * @param uri URI.
+     * @param partition Partition, null for the shared one.
+     * @return URI.
+     */
+    private static URI key(final URI uri, final String partition) {
+        final URI key;
+        if (partition == null) {
+            key = uri;
+        } else {
+            final String plain = uri.toString();
+            final int fragment = plain.indexOf('#');
+            if (fragment < 0) {
+                key = URI.create(plain + "#" + partition);
+            } else {
+                key = URI.create(
+                    plain.substring(0, fragment) + "#" + partition
+                );
+            }
+        }
+        return key;
+    }
+
+    /**
+     * The stored resource, created now, after it was revalidated.
+     * @param stored Stored resource.
+     * @return CachedResource.
+     */
+    private static CachedResource refreshed(final CachedResource stored) {
+        final CachedResource fresh;
+        if (stored instanceof CompactResource) {
+            fresh = ((CompactResource) stored).refreshed();
+        } else {
+            fresh = ConditionalJsonResources.cached(
+                stored.uri(), stored.newBuilder().build()
+            );
+        }
+        return fresh;
+    }
+
+    /**
+     * The compact form of the resource, to be stored, if it can be cached.
+     * @param uri URI.
+     * @param resource Resource.
+     * @return CompactResource or null if it can't be cached.
+     */
+    private static CachedResource cached(
+        final URI uri,
+        final Resource resource
+    ) {
+        final CachedResource cached = CachedResource
+            .fromResource(uri, resource);
+        final CachedResource compact;
+        if (cached == null || cached instanceof CompactResource) {
+            compact = cached;
+        } else {
+            compact = new CompactResource(cached);
+        }
+        return compact;
+    }
+
+    /**
+     * Record an outcome in the stats of the storage, if it has any.
+     * @param uri URI.
+     * @param outcome Outcome.
+     */
+    private void record(final URI uri, final Outcome outcome) {
+        final JsonStorage.Stats stats = this.jsonStorage.stats();
+        if (stats != null) {
+            stats.record(uri, outcome);
+        }
     }
 
     /**
@@ -207,19 +633,42 @@ public final class ConditionalJsonResources implements JsonResources {
     }
 
     /**
-     * Append "If-None-Match" header to current headers.
+     * Checks if <code>Cache-Control: max-age=0</code> is present: the
+     * response can be stored, but a stored resource must be revalidated.
      * @param headers Headers.
-     * @param etag Etag.
+     * @return Boolean.
+     */
+    private boolean cacheControlMaxAgeZero(
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        final List<String> entry = headers.get().get("Cache-Control");
+        return entry != null && !entry.isEmpty()
+            && entry.get(0).equalsIgnoreCase("max-age=0");
+    }
+
+    /**
+     * Append the "If-None-Match" header (if the stored resource has an ETag)
+     * and the "If-Modified-Since" header (if it has a Last-Modified date)
+     * to current headers.
+     * @param headers Headers.
+     * @param stored Stored resource.
      * @return Updated headers.
      */
-    private Supplier<Map<String, List<String>>> ifNoneMatch(
+    private Supplier<Map<String, List<String>>> conditional(
         final Supplier<Map<String, List<String>>> headers,
-        final String etag
+        final CachedResource stored
     ){
+        final String etag = stored.etag();
+        final String lastModified = stored.lastModified();
         return () -> {
             final Map<String, List<String>> updatedHeaders =
                 new HashMap<>(headers.get());
-            updatedHeaders.put("If-None-Match", List.of(etag));
+            if (etag != null) {
+                updatedHeaders.put("If-None-Match", List.of(etag));
+            }
+            if (lastModified != null) {
+                updatedHeaders.put("If-Modified-Since", List.of(lastModified));
+            }
             return updatedHeaders;
         };
     }
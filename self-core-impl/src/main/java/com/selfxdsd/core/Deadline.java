@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Deadline of the work done by the current thread. While some work runs
+ * within a Deadline (see {@link #run(Runnable)}), every HTTP request
+ * made by {@link JsonResources.JdkHttp} on that thread times out when the
+ * deadline passes, and no request is sent anymore after it passed.
+ * <br/>
+ * Deadlines can be nested: the inner work gets the earlier of the two.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class Deadline {
+
+    /**
+     * Deadline of the current thread.
+     */
+    private static final ThreadLocal<Instant> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The moment of the deadline.
+     */
+    private final Instant instant;
+
+    /**
+     * Ctor.
+     * @param budget How much time is left from now.
+     */
+    public Deadline(final Duration budget) {
+        this(Instant.now().plus(budget));
+    }
+
+    /**
+     * Ctor.
+     * @param instant The moment of the deadline ({@link Instant#MAX} for
+     *  no deadline).
+     */
+    public Deadline(final Instant instant) {
+        this.instant = instant;
+    }
+
+    /**
+     * Deadline of the current thread.
+     * @return Deadline, never passing if the thread has none.
+     */
+    public static Deadline current() {
+        final Instant current = CURRENT.get();
+        final Deadline deadline;
+        if (current == null) {
+            deadline = new Deadline(Instant.MAX);
+        } else {
+            deadline = new Deadline(current);
+        }
+        return deadline;
+    }
+
+    /**
+     * Run the work within this deadline (or within the current one, if
+     * that is earlier).
+     * @param work Work to run on the current thread.
+     */
+    public void run(final Runnable work) {
+        final Instant previous = CURRENT.get();
+        Instant effective = this.instant;
+        if (previous != null && previous.isBefore(effective)) {
+            effective = previous;
+        }
+        CURRENT.set(effective);
+        try {
+            work.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * The moment of the deadline.
+     * @return Instant, {@link Instant#MAX} if there is no deadline.
+     */
+    public Instant instant() {
+        return this.instant;
+    }
+
+    /**
+     * Did the deadline pass?
+     * @return True or false.
+     */
+    public boolean passed() {
+        return !Instant.now().isBefore(this.instant);
+    }
+
+    /**
+     * Time left until the deadline.
+     * @return Duration, zero if it passed.
+     */
+    public Duration remaining() {
+        Duration remaining = Duration.between(Instant.now(), this.instant);
+        if (remaining.isNegative()) {
+            remaining = Duration.ZERO;
+        }
+        return remaining;
+    }
+
+    /**
+     * Timeout of an operation which should not take longer than max nor
+     * go past the deadline.
+     * @param max Maximum timeout.
+     * @return The shorter of max and the time left.
+     * @throws IllegalStateException If the deadline passed.
+     */
+    public Duration timeout(final Duration max) {
+        final Duration remaining = this.remaining();
+        if (remaining.isZero()) {
+            throw new IllegalStateException(
+                "Deadline " + this.instant + " passed, abandoning the work."
+            );
+        }
+        Duration timeout = max;
+        if (remaining.compareTo(max) < 0) {
+            timeout = remaining;
+        }
+        return timeout;
+    }
+}
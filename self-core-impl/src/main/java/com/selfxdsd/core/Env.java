@@ -96,4 +96,10 @@ public final class Env {
      */
     public static final String PDD_PRIVATE_KEY = "self_pdd_privatekey";
 
+    /**
+     * Set it to true if the provider APIs should be asked for
+     * gzip/deflate compressed responses.
+     */
+    public static final String HTTP_COMPRESSION = "self_http_compression";
+
 }
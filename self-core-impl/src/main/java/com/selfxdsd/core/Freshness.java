@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * How long a cached resource stays fresh, meaning it can be served
+ * without revalidating it with the provider.
+ * <br/>
+ * The windows configured for URI path patterns come first (the first
+ * matching pattern wins), then the upstream
+ * <code>Cache-Control: max-age</code> of the resource is honored.
+ * Otherwise (or with <code>no-cache</code>/<code>no-store</code>),
+ * the resource is always revalidated.
+ * <pre>
+ *     new Freshness()
+ *         .with("/repos/[^/]+/[^/]+", Duration.ofMinutes(10))
+ *         .with(".+/labels", Duration.ofMinutes(10));
+ * </pre>
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class Freshness {
+
+    /**
+     * Freshness windows, by URI path pattern.
+     */
+    private final Map<Pattern, Duration> windows;
+
+    /**
+     * Ctor. Only the upstream max-age is honored.
+     */
+    public Freshness() {
+        this(Map.of());
+    }
+
+    /**
+     * Ctor.
+     * @param windows Freshness windows, by URI path pattern.
+     */
+    private Freshness(final Map<Pattern, Duration> windows) {
+        this.windows = windows;
+    }
+
+    /**
+     * Freshness with one more window.
+     * @param pattern Regex which the whole URI path must match.
+     * @param window How long the matching resources stay fresh.
+     * @return Freshness.
+     */
+    public Freshness with(final String pattern, final Duration window) {
+        final Map<Pattern, Duration> more = new LinkedHashMap<>(this.windows);
+        more.put(Pattern.compile(pattern), window);
+        return new Freshness(more);
+    }
+
+    /**
+     * Is the resource still fresh?
+     * @param resource Cached resource.
+     * @return True or false.
+     */
+    public boolean fresh(final CachedResource resource) {
+        final Duration window = this.window(resource);
+        return !window.isZero() && resource.creationDate().plus(window)
+            .isAfter(LocalDateTime.now());
+    }
+
+    /**
+     * How long the resource stays fresh after it was stored or
+     * revalidated.
+     * @param resource Cached resource.
+     * @return Duration, zero if it should always be revalidated.
+     */
+    public Duration window(final CachedResource resource) {
+        final URI uri = resource.uri();
+        Duration window = null;
+        for (final Map.Entry<Pattern, Duration> entry
+            : this.windows.entrySet()) {
+            if (window == null
+                && entry.getKey().matcher(uri.getPath()).matches()) {
+                window = entry.getValue();
+            }
+        }
+        if (window == null) {
+            window = Freshness.maxAge(resource);
+        }
+        return window;
+    }
+
+    /**
+     * Max-age from the Cache-Control header of the resource.
+     * @param resource Resource.
+     * @return Duration, zero if missing or if caching is forbidden.
+     */
+    private static Duration maxAge(final CachedResource resource) {
+        Duration age = Duration.ZERO;
+        boolean forbidden = false;
+        for (final String value : resource.header("Cache-Control")) {
+            for (final String directive : value.split(",")) {
+                final String trimmed = directive.trim()
+                    .toLowerCase(Locale.ROOT);
+                if (trimmed.startsWith("max-age=")) {
+                    age = Freshness.seconds(trimmed.substring(8));
+                } else if ("no-cache".equals(trimmed)
+                    || "no-store".equals(trimmed)) {
+                    forbidden = true;
+                }
+            }
+        }
+        if (forbidden) {
+            age = Duration.ZERO;
+        }
+        return age;
+    }
+
+    /**
+     * Parse the seconds of a max-age directive.
+     * @param value Value.
+     * @return Duration, zero if it is not a valid number.
+     */
+    private static Duration seconds(final String value) {
+        Duration seconds;
+        try {
+            seconds = Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (final NumberFormatException ex) {
+            seconds = Duration.ZERO;
+        }
+        return seconds;
+    }
+}
@@ -37,6 +37,11 @@ import java.net.URI;
  */
 public final class Github implements Provider {
 
+    /**
+     * Base URI of Github's API.
+     */
+    static final URI BASE_URI = URI.create("https://api.github.com");
+
     /**
      * User.
      */
@@ -45,7 +50,7 @@ public final class Github implements Provider {
     /**
      * Github's URI.
      */
-    private final URI uri = URI.create("https://api.github.com");
+    private final URI uri = Github.BASE_URI;
 
     /**
      * Github's JSON Resources.
@@ -66,9 +71,19 @@ public final class Github implements Provider {
         this(
             user,
             storage,
-            new ConditionalJsonResources(
-                new JsonResources.JdkHttp(),
-                storage.jsonStorage()
+            new SingleFlightJsonResources(
+                new ConditionalJsonResources(
+                    new RetryingJsonResources(
+                        new RateLimitedJsonResources(
+                            new CircuitBreakerJsonResources(
+                                new AdaptiveJsonResources(
+                                    new JsonResources.JdkHttp()
+                                )
+                            )
+                        )
+                    ),
+                    storage.jsonStorage()
+                )
             )
         );
     }
@@ -32,9 +32,11 @@ import javax.json.Json;
 import javax.json.JsonObject;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -74,15 +76,19 @@ final class GithubRepoLabels implements Labels {
 
     @Override
     public boolean add(final String... names) {
+        final List<CompletableFuture<Resource>> added = new ArrayList<>();
         for(final String name : names) {
-            this.resources.post(
-                this.repoLabelsUri,
-                Json.createObjectBuilder()
-                    .add("name", name)
-                    .add("color", this.randomColor())
-                    .build()
+            added.add(
+                this.resources.postAsync(
+                    this.repoLabelsUri,
+                    Json.createObjectBuilder()
+                        .add("name", name)
+                        .add("color", this.randomColor())
+                        .build()
+                )
             );
         }
+        added.forEach(JsonResources::join);
         return true;
     }
 
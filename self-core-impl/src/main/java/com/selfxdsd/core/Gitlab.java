@@ -39,6 +39,11 @@ import java.net.URI;
  */
 public final class Gitlab implements Provider {
 
+    /**
+     * Base URI of Gitlab's API.
+     */
+    static final URI BASE_URI = URI.create("https://gitlab.com/api/v4");
+
     /**
      * User.
      */
@@ -47,7 +52,7 @@ public final class Gitlab implements Provider {
     /**
      * Github's URI.
      */
-    private final URI uri = URI.create("https://gitlab.com/api/v4");
+    private final URI uri = Gitlab.BASE_URI;
 
     /**
      * Github's JSON Resources.
@@ -68,9 +73,19 @@ public final class Gitlab implements Provider {
         this(
             user,
             storage,
-            new ConditionalJsonResources(
-                new JsonResources.JdkHttp(),
-                storage.jsonStorage()
+            new SingleFlightJsonResources(
+                new ConditionalJsonResources(
+                    new RetryingJsonResources(
+                        new RateLimitedJsonResources(
+                            new CircuitBreakerJsonResources(
+                                new AdaptiveJsonResources(
+                                    new JsonResources.JdkHttp()
+                                )
+                            )
+                        )
+                    ),
+                    storage.jsonStorage()
+                )
             )
         );
     }
@@ -32,9 +32,11 @@ import javax.json.Json;
 import javax.json.JsonObject;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -77,20 +79,25 @@ final class GitlabRepoLabels implements Labels {
 
     @Override
     public boolean add(final String... names) {
-        boolean added = true;
+        final List<CompletableFuture<Resource>> posts = new ArrayList<>();
         for(final String name : names) {
             LOG.debug(
                 "Adding Label [" + name + "] to GitLab repo "
                 + "["  + this.repoLabelsUri + "]... "
             );
-            final Resource resource = this.resources.post(
-                this.repoLabelsUri,
-                Json.createObjectBuilder()
-                    .add("name", name)
-                    .add("color", "#" + this.randomColor())
-                    .build()
+            posts.add(
+                this.resources.postAsync(
+                    this.repoLabelsUri,
+                    Json.createObjectBuilder()
+                        .add("name", name)
+                        .add("color", "#" + this.randomColor())
+                        .build()
+                )
             );
-            final int status = resource.statusCode();
+        }
+        boolean added = true;
+        for(final CompletableFuture<Resource> post : posts) {
+            final int status = JsonResources.join(post).statusCode();
             if(status == HttpURLConnection.HTTP_CREATED) {
                 LOG.debug("Label successfully added!");
             } else {
@@ -0,0 +1,429 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * JSON Resources which hedge slow GET requests: if a GET did not answer
+ * within the given percentile of the recent GET latencies (per host and
+ * access token), a second, identical GET is sent. Whichever answers first
+ * without an error is returned and the other one is cancelled. The GET
+ * fails only when every request sent for it failed.
+ * <br/>
+ * Cancelling does not abort the HTTP exchange (JDK 11's HttpClient cannot
+ * do it, see {@link JsonResources.JdkHttp}): the loser still reaches the
+ * provider and costs a request of the rate limit. So the hedges should go
+ * through {@link RateLimitedJsonResources}, which counts every request
+ * when it is sent: decorate it (or a chain over it) with this class, not
+ * the other way around.
+ * <br/>
+ * Hedges go out only when the rate limit has headroom: the last response
+ * from the host told us that more than 20% of the limit is left (or said
+ * nothing about it). There is no hedging until enough latencies were
+ * observed. Only GET is hedged; the other methods go straight to the
+ * delegate.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class HedgedJsonResources implements JsonResources {
+
+    /**
+     * Latencies and headroom shared by all the instances created with
+     * the public ctors. The ones unused for an hour are dropped.
+     */
+    private static final Registry<Latencies> SHARED = new Registry<>(
+        Duration.ofHours(1)
+    );
+
+    /**
+     * JsonResources delegate.
+     */
+    private final JsonResources delegate;
+
+    /**
+     * Identity of the access token (its digest).
+     */
+    private final String identity;
+
+    /**
+     * Percentile of the latency after which a GET is hedged.
+     */
+    private final double percentile;
+
+    /**
+     * Latencies and headroom, by host and identity.
+     */
+    private final Registry<Latencies> latencies;
+
+    /**
+     * Number of hedges sent so far.
+     */
+    private final AtomicLong hedged;
+
+    /**
+     * Ctor. GETs slower than the 95th percentile are hedged.
+     * @param delegate JsonResources delegate.
+     */
+    public HedgedJsonResources(final JsonResources delegate) {
+        this(delegate, 95);
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param percentile Percentile of the latency after which a GET
+     *  is hedged (e.g. 95).
+     */
+    public HedgedJsonResources(
+        final JsonResources delegate,
+        final double percentile
+    ) {
+        this(delegate, "anonymous", percentile, SHARED, new AtomicLong());
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param identity Identity of the access token (its digest).
+     * @param percentile Percentile of the latency after which a GET
+     *  is hedged.
+     * @param latencies Latencies and headroom, by host and identity.
+     * @param hedged Number of hedges sent so far.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    HedgedJsonResources(
+        final JsonResources delegate,
+        final String identity,
+        final double percentile,
+        final Registry<Latencies> latencies,
+        final AtomicLong hedged
+    ) {
+        this.delegate = delegate;
+        this.identity = identity;
+        this.percentile = percentile;
+        this.latencies = latencies;
+        this.hedged = hedged;
+    }
+
+    @Override
+    public JsonResources authenticated(final AccessToken accessToken) {
+        return new HedgedJsonResources(
+            this.delegate.authenticated(accessToken),
+            AccessToken.digest(accessToken),
+            this.percentile,
+            this.latencies,
+            this.hedged
+        );
+    }
+
+    /**
+     * Number of hedges sent so far, by this instance and by the instances
+     * obtained from it via authenticated(...).
+     * @return Long.
+     */
+    public long hedges() {
+        return this.hedged.get();
+    }
+
+    @Override
+    public Resource get(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return JsonResources.join(this.getAsync(uri, headers));
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        final Latencies recent = this.latencies.get(
+            uri.getHost() + "|" + this.identity, Latencies::new
+        );
+        final OptionalLong threshold = recent.percentile(this.percentile);
+        final long start = System.nanoTime();
+        final CompletableFuture<Resource> primary = this.delegate
+            .getAsync(uri, headers);
+        primary.thenAccept(
+            resource -> recent.record(System.nanoTime() - start, resource)
+        );
+        final CompletableFuture<Resource> result;
+        if (threshold.isPresent()) {
+            result = new CompletableFuture<>();
+            final AtomicInteger racing = new AtomicInteger(1);
+            HedgedJsonResources.race(primary, result, racing);
+            final Executor later = CompletableFuture.delayedExecutor(
+                threshold.getAsLong(), TimeUnit.NANOSECONDS
+            );
+            later.execute(
+                () -> this.hedge(uri, headers, recent, primary, result, racing)
+            );
+        } else {
+            result = primary;
+        }
+        return result;
+    }
+
+    @Override
+    public Resource post(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.post(uri, headers, body);
+    }
+
+    @Override
+    public Resource patch(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.patch(uri, headers, body);
+    }
+
+    @Override
+    public Resource put(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.put(uri, headers, body);
+    }
+
+    @Override
+    public Resource delete(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.delete(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.postAsync(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.patchAsync(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.putAsync(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.deleteAsync(uri, headers, body);
+    }
+
+    /**
+     * Send the hedge, if the primary GET did not answer yet and there is
+     * headroom in the rate limit. The loser is cancelled (only its response
+     * is dropped, see the class doc).
+     * @param uri URI.
+     * @param headers Request headers.
+     * @param recent Recent latencies and headroom.
+     * @param primary Primary GET.
+     * @param result Result.
+     * @param racing How many calls are still racing for the result.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    private void hedge(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final Latencies recent,
+        final CompletableFuture<Resource> primary,
+        final CompletableFuture<Resource> result,
+        final AtomicInteger racing
+    ) {
+        if (!result.isDone() && recent.headroom()) {
+            this.hedged.incrementAndGet();
+            racing.incrementAndGet();
+            final CompletableFuture<Resource> hedge = this.delegate
+                .getAsync(uri, headers);
+            hedge.thenAccept(recent::headroom);
+            result.whenComplete(
+                (resource, error) -> {
+                    primary.cancel(true);
+                    hedge.cancel(true);
+                }
+            );
+            HedgedJsonResources.race(hedge, result, racing);
+        }
+    }
+
+    /**
+     * Let the call race for the result: the first one to succeed
+     * completes it. A failed call fails the result only if it was the
+     * last one racing.
+     * @param call Call.
+     * @param result Result.
+     * @param racing How many calls are still racing for the result.
+     */
+    private static void race(
+        final CompletableFuture<Resource> call,
+        final CompletableFuture<Resource> result,
+        final AtomicInteger racing
+    ) {
+        call.whenComplete(
+            (resource, error) -> {
+                if (error == null) {
+                    result.complete(resource);
+                } else if (racing.decrementAndGet() == 0) {
+                    result.completeExceptionally(error);
+                }
+            }
+        );
+    }
+
+    /**
+     * Recent GET latencies and rate limit headroom of an access token,
+     * on one host.
+     */
+    static final class Latencies {
+
+        /**
+         * How many latencies we need before hedging.
+         */
+        private static final int MIN_SAMPLES = 20;
+
+        /**
+         * Lock guarding the state below.
+         */
+        private final Object lock = new Object();
+
+        /**
+         * Ring of the most recent latencies (nanos).
+         */
+        private final long[] ring = new long[128];
+
+        /**
+         * Number of latencies recorded so far.
+         */
+        private long count;
+
+        /**
+         * Is there headroom in the rate limit?
+         */
+        private volatile boolean room = true;
+
+        /**
+         * Record the latency of a GET and the headroom it reports.
+         * @param latency Latency (nanos).
+         * @param resource Response.
+         */
+        void record(final long latency, final Resource resource) {
+            synchronized (this.lock) {
+                this.ring[(int) (this.count % this.ring.length)] = latency;
+                this.count = this.count + 1;
+            }
+            this.headroom(resource);
+        }
+
+        /**
+         * Update the headroom from the rate limit headers.
+         * @param resource Response.
+         */
+        void headroom(final Resource resource) {
+            final ResponseHeaders headers = new ResponseHeaders(
+                resource.headers()
+            );
+            final OptionalLong remaining = headers.rateLimitRemaining();
+            final OptionalLong limit = headers.rateLimitLimit();
+            if (remaining.isPresent() && limit.isPresent()) {
+                this.room = remaining.getAsLong() * 5 > limit.getAsLong();
+            }
+        }
+
+        /**
+         * Is there headroom in the rate limit for a hedge?
+         * @return True or false.
+         */
+        boolean headroom() {
+            return this.room;
+        }
+
+        /**
+         * Percentile of the recent latencies.
+         * @param percentile Percentile, between 0 and 100.
+         * @return Latency (nanos), empty if too few were recorded.
+         */
+        OptionalLong percentile(final double percentile) {
+            final long[] sorted;
+            synchronized (this.lock) {
+                sorted = Arrays.copyOf(
+                    this.ring, (int) Math.min(this.count, this.ring.length)
+                );
+            }
+            final OptionalLong value;
+            if (sorted.length < MIN_SAMPLES) {
+                value = OptionalLong.empty();
+            } else {
+                Arrays.sort(sorted);
+                final int index = (int) Math.min(
+                    sorted.length - 1,
+                    Math.ceil(sorted.length * percentile / 100) - 1
+                );
+                value = OptionalLong.of(sorted[Math.max(0, index)]);
+            }
+            return value;
+        }
+    }
+}
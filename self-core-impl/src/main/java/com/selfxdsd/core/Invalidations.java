@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Which cached GETs are made stale by a mutation (POST, PATCH, PUT or
+ * DELETE) of a URI.
+ * <br/>
+ * A mutation always affects the mutated URI itself and its parent (e.g.
+ * creating a comment changes the comments list, while closing an issue
+ * changes the issue and the issues list). On top of that, the rules map
+ * the path of a mutated URI to more affected paths. A rule is a regex,
+ * which must match the whole path, and replacement templates
+ * (see {@link Matcher#replaceFirst(String)}). By default, there are rules
+ * for the issues' sub-resources (labels, comments, assignees), since they
+ * are also part of the issue's JSON:
+ * <pre>
+ *     new Invalidations().with(
+ *         "(/repos/[^/]+/[^/]+)/collaborators/[^/]+",
+ *         "$1/invitations"
+ *     );
+ * </pre>
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class Invalidations {
+
+    /**
+     * Rules: regex and its replacement templates.
+     */
+    private final List<Rule> rules;
+
+    /**
+     * Ctor. Rules for the issues' sub-resources.
+     */
+    public Invalidations() {
+        this(
+            List.of(
+                new Rule(
+                    "(.*/issues/\\d+)/labels(/[^/]+)?",
+                    "$1", "$1/labels"
+                ),
+                new Rule("(.*/issues/\\d+)/comments", "$1"),
+                new Rule("(.*/issues/\\d+)/assignees", "$1")
+            )
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param rules Rules.
+     */
+    private Invalidations(final List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Invalidations with one more rule.
+     * @param pattern Regex which the whole path of the mutated URI
+     *  must match.
+     * @param affected Templates of the affected paths.
+     * @return Invalidations.
+     */
+    public Invalidations with(final String pattern, final String... affected) {
+        final List<Rule> more = new ArrayList<>(this.rules);
+        more.add(new Rule(pattern, affected));
+        return new Invalidations(more);
+    }
+
+    /**
+     * URIs made stale by the mutation of the given URI. They have no
+     * query: the JsonStorage removes every variant of them, whatever its
+     * query (e.g. the pages and the filtered versions of a listing).
+     * @param mutated Mutated URI.
+     * @return URIs, the mutated one first.
+     */
+    public Set<URI> affected(final URI mutated) {
+        final String path = mutated.getRawPath();
+        final Set<String> paths = new LinkedHashSet<>();
+        paths.add(path);
+        final int slash = path.lastIndexOf('/');
+        if (slash > 0) {
+            paths.add(path.substring(0, slash));
+        }
+        for (final Rule rule : this.rules) {
+            paths.addAll(rule.affected(path));
+        }
+        final Set<URI> affected = new LinkedHashSet<>();
+        for (final String stale : paths) {
+            affected.add(mutated.resolve(stale));
+        }
+        return affected;
+    }
+
+    /**
+     * Rule of invalidation.
+     */
+    private static final class Rule {
+
+        /**
+         * Regex of the mutated path.
+         */
+        private final Pattern pattern;
+
+        /**
+         * Templates of the affected paths.
+         */
+        private final String[] templates;
+
+        /**
+         * Ctor.
+         * @param pattern Regex of the mutated path.
+         * @param templates Templates of the affected paths.
+         */
+        Rule(final String pattern, final String... templates) {
+            this.pattern = Pattern.compile(pattern);
+            this.templates = templates.clone();
+        }
+
+        /**
+         * Paths affected by the mutation of the given path.
+         * @param path Mutated path.
+         * @return Paths, empty if the rule does not apply.
+         */
+        List<String> affected(final String path) {
+            final List<String> affected = new ArrayList<>();
+            final Matcher matcher = this.pattern.matcher(path);
+            if (matcher.matches()) {
+                for (final String template : this.templates) {
+                    affected.add(matcher.replaceFirst(template));
+                }
+            }
+            return affected;
+        }
+    }
+}
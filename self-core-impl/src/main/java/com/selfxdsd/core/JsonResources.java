@@ -26,17 +26,30 @@ import com.selfxdsd.api.Resource;
 
 import javax.json.Json;
 import javax.json.JsonArray;
+import javax.json.JsonException;
 import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
 import javax.json.JsonValue;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.http.HttpClient;
-import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * JSON Resources used by the Provider.
@@ -200,6 +213,175 @@ public interface JsonResources {
         final JsonValue body
     );
 
+    /**
+     * Get the Resource at the specified URI, asynchronously.
+     * @param uri Resource location.
+     * @return Future Resource.
+     */
+    default CompletableFuture<Resource> getAsync(final URI uri) {
+        return this.getAsync(uri, Collections::emptyMap);
+    }
+
+    /**
+     * Get the Resource at the specified URI, asynchronously. By default,
+     * the blocking {@link #get(URI, Supplier)} is run on the common pool;
+     * implementations with a non-blocking transport should override it.
+     * @param uri Resource location.
+     * @param headers HTTP Headers.
+     * @return Future Resource. It completes exceptionally with
+     *  IllegalStateException if the HTTP request fails.
+     */
+    default CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return CompletableFuture.supplyAsync(() -> this.get(uri, headers));
+    }
+
+    /**
+     * Post a JsonObject to the specified URI, asynchronously.
+     * @param uri URI.
+     * @param body JSON body of the request.
+     * @return Future Resource.
+     */
+    default CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final JsonValue body
+    ) {
+        return this.postAsync(uri, Collections::emptyMap, body);
+    }
+
+    /**
+     * Post a JsonObject to the specified URI, asynchronously.
+     * @param uri URI.
+     * @param headers HTTP Headers.
+     * @param body JSON body of the request.
+     * @return Future Resource. It completes exceptionally with
+     *  IllegalStateException if the HTTP request fails.
+     */
+    default CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return CompletableFuture.supplyAsync(
+            () -> this.post(uri, headers, body)
+        );
+    }
+
+    /**
+     * Patch a JsonObject at the specified URI, asynchronously.
+     * @param uri URI.
+     * @param body JSON body of the request.
+     * @return Future Resource.
+     */
+    default CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final JsonValue body
+    ) {
+        return this.patchAsync(uri, Collections::emptyMap, body);
+    }
+
+    /**
+     * Patch a JsonObject at the specified URI, asynchronously.
+     * @param uri URI.
+     * @param headers HTTP Headers.
+     * @param body JSON body of the request.
+     * @return Future Resource. It completes exceptionally with
+     *  IllegalStateException if the HTTP request fails.
+     */
+    default CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return CompletableFuture.supplyAsync(
+            () -> this.patch(uri, headers, body)
+        );
+    }
+
+    /**
+     * Put a JsonObject at the specified URI, asynchronously.
+     * @param uri URI.
+     * @param body JSON body of the request.
+     * @return Future Resource.
+     */
+    default CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final JsonValue body
+    ) {
+        return this.putAsync(uri, Collections::emptyMap, body);
+    }
+
+    /**
+     * Put a JsonObject at the specified URI, asynchronously.
+     * @param uri URI.
+     * @param headers HTTP Headers.
+     * @param body JSON body of the request.
+     * @return Future Resource. It completes exceptionally with
+     *  IllegalStateException if the HTTP request fails.
+     */
+    default CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return CompletableFuture.supplyAsync(
+            () -> this.put(uri, headers, body)
+        );
+    }
+
+    /**
+     * DELETE the specified resource, asynchronously.
+     * @param uri URI.
+     * @param body JSON body of the request.
+     * @return Future Resource.
+     */
+    default CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final JsonValue body
+    ) {
+        return this.deleteAsync(uri, Collections::emptyMap, body);
+    }
+
+    /**
+     * DELETE the specified resource, asynchronously.
+     * @param uri URI.
+     * @param headers HTTP Headers.
+     * @param body JSON body of the request.
+     * @return Future Resource. It completes exceptionally with
+     *  IllegalStateException if the HTTP request fails.
+     */
+    default CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return CompletableFuture.supplyAsync(
+            () -> this.delete(uri, headers, body)
+        );
+    }
+
+    /**
+     * Wait for an asynchronously obtained Resource. Unlike
+     * {@link CompletableFuture#join()}, the IllegalStateException (or any
+     * other RuntimeException) with which the future failed is rethrown
+     * as it is, not wrapped in a CompletionException.
+     * @param future Future Resource.
+     * @return Resource.
+     * @throws IllegalStateException If the HTTP request failed.
+     */
+    static Resource join(final CompletableFuture<Resource> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
     /**
      * JSON Resources obtained by making HTTP calls, using
      * the JDK.
@@ -209,23 +391,47 @@ public interface JsonResources {
      */
     final class JdkHttp implements JsonResources {
 
+        /**
+         * Default connect timeout.
+         */
+        private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+        /**
+         * Default request timeout.
+         */
+        private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
         /**
          * Access token.
          */
         private final AccessToken accessToken;
 
         /**
-         * Instructs http client to use {@link HttpClient.Version#HTTP_1_1}.
-         * Use this flag if the integration test server doesn't support
-         * HTTP_2.
+         * Long-lived HTTP client, shared with the authenticated copies
+         * of this instance so connections (and HTTP/2 streams) are reused.
          */
-        private final boolean useOldHttpProtocol;
+        private final HttpClient client;
 
         /**
-         * Ctor.
+         * Ask for gzip/deflate compressed responses?
+         */
+        private final boolean compression;
+
+        /**
+         * Timeout of each request. It is shortened to the time left until
+         * the current {@link Deadline}, if that is sooner.
+         */
+        private final Duration timeout;
+
+        /**
+         * Ctor. Compression is used only if the env variable
+         * {@link Env#HTTP_COMPRESSION} is set to true.
          */
         JdkHttp() {
-            this(null, false);
+            this(
+                false,
+                Boolean.parseBoolean(System.getenv(Env.HTTP_COMPRESSION))
+            );
         }
 
         /**
@@ -235,29 +441,117 @@ public interface JsonResources {
          * integration test server doesn't support HTTP_2.
          */
         JdkHttp(final boolean useOldHttpProtocol) {
-            this(null, useOldHttpProtocol);
+            this(useOldHttpProtocol, false);
         }
 
         /**
          * Ctor.
-         * @param accessToken Access token for authenticated requests.
          * @param useOldHttpProtocol Instructs http client to use
          * {@link HttpClient.Version#HTTP_1_1}. Use this flag if
          * integration test server doesn't support HTTP_2.
+         * @param compression Ask for gzip/deflate compressed responses?
+         */
+        JdkHttp(final boolean useOldHttpProtocol, final boolean compression) {
+            this(
+                null,
+                JdkHttp.shared(useOldHttpProtocol),
+                compression,
+                REQUEST_TIMEOUT
+            );
+        }
+
+        /**
+         * Ctor. Use it if you need a dedicated client, with its own
+         * executor and connect timeout. The client is created once and
+         * then shared by every authenticated copy of this instance.
+         * @param version HTTP protocol version.
+         * @param connectTimeout Connect timeout.
+         * @param executor Executor for the asynchronous tasks of the client.
+         */
+        public JdkHttp(
+            final HttpClient.Version version,
+            final Duration connectTimeout,
+            final Executor executor
+        ) {
+            this(version, connectTimeout, executor, false);
+        }
+
+        /**
+         * Ctor. Use it if you need a dedicated client, with its own
+         * executor and connect timeout. The client is created once and
+         * then shared by every authenticated copy of this instance.
+         * @param version HTTP protocol version.
+         * @param connectTimeout Connect timeout.
+         * @param executor Executor for the asynchronous tasks of the client.
+         * @param compression Ask for gzip/deflate compressed responses?
+         */
+        public JdkHttp(
+            final HttpClient.Version version,
+            final Duration connectTimeout,
+            final Executor executor,
+            final boolean compression
+        ) {
+            this(
+                version, connectTimeout, REQUEST_TIMEOUT, executor, compression
+            );
+        }
+
+        /**
+         * Ctor. Use it if you need a dedicated client, with its own
+         * executor and timeouts. The client is created once and
+         * then shared by every authenticated copy of this instance.
+         * @param version HTTP protocol version.
+         * @param connectTimeout Connect timeout.
+         * @param requestTimeout Timeout of each request.
+         * @param executor Executor for the asynchronous tasks of the client.
+         * @param compression Ask for gzip/deflate compressed responses?
+         * @checkstyle ParameterNumber (10 lines)
+         */
+        public JdkHttp(
+            final HttpClient.Version version,
+            final Duration connectTimeout,
+            final Duration requestTimeout,
+            final Executor executor,
+            final boolean compression
+        ) {
+            this(
+                null,
+                HttpClient.newBuilder()
+                    .version(version)
+                    .connectTimeout(connectTimeout)
+                    .executor(executor)
+                    .build(),
+                compression,
+                requestTimeout
+            );
+        }
+
+        /**
+         * Ctor.
+         * @param accessToken Access token for authenticated requests.
+         * @param client HTTP client.
+         * @param compression Ask for gzip/deflate compressed responses?
+         * @param timeout Timeout of each request.
          */
         private JdkHttp(
             final AccessToken accessToken,
-            final boolean useOldHttpProtocol
+            final HttpClient client,
+            final boolean compression,
+            final Duration timeout
         ) {
             this.accessToken = accessToken;
-            this.useOldHttpProtocol= useOldHttpProtocol;
+            this.client = client;
+            this.compression = compression;
+            this.timeout = timeout;
         }
 
         @Override
         public JsonResources authenticated(final AccessToken accessToken) {
             return new JsonResources.JdkHttp(
                 accessToken,
-                this.useOldHttpProtocol
+                this.client,
+                this.compression,
+                this.timeout
             );
         }
 
@@ -267,7 +561,7 @@ public interface JsonResources {
             final Supplier<Map<String, List<String>>> headers
         ) {
             try {
-                final HttpResponse<String> response = this.newHttpClient()
+                final HttpResponse<InputStream> response = this.client
                     .send(
                         this.request(
                             uri,
@@ -275,13 +569,9 @@ public interface JsonResources {
                             headers.get(),
                             HttpRequest.BodyPublishers.noBody()
                         ),
-                        HttpResponse.BodyHandlers.ofString()
+                        HttpResponse.BodyHandlers.ofInputStream()
                     );
-                return new JsonResponse(
-                    response.statusCode(),
-                    response.body(),
-                    this.headers(response.headers())
-                );
+                return this.response(response);
             } catch (final IOException | InterruptedException ex) {
                 throw new IllegalStateException(
                     "Couldn't GET [" + uri.toString() +"]",
@@ -297,7 +587,7 @@ public interface JsonResources {
             final JsonValue body
         ) {
             try {
-                final HttpResponse<String> response = this.newHttpClient()
+                final HttpResponse<InputStream> response = this.client
                     .send(
                         this.request(
                             uri,
@@ -307,13 +597,9 @@ public interface JsonResources {
                                 body.toString()
                             )
                         ),
-                        HttpResponse.BodyHandlers.ofString()
+                        HttpResponse.BodyHandlers.ofInputStream()
                     );
-                return new JsonResponse(
-                    response.statusCode(),
-                    response.body(),
-                    this.headers(response.headers())
-                );
+                return this.response(response);
             } catch (final IOException | InterruptedException ex) {
                 throw new IllegalStateException(
                     "Couldn't POST " + body.toString()
@@ -330,7 +616,7 @@ public interface JsonResources {
             final JsonValue body
         ) {
             try {
-                final HttpResponse<String> response = this.newHttpClient()
+                final HttpResponse<InputStream> response = this.client
                     .send(
                         this.request(
                             uri,
@@ -340,13 +626,9 @@ public interface JsonResources {
                                 body.toString()
                             )
                         ),
-                        HttpResponse.BodyHandlers.ofString()
+                        HttpResponse.BodyHandlers.ofInputStream()
                     );
-                return new JsonResponse(
-                    response.statusCode(),
-                    response.body(),
-                    this.headers(response.headers())
-                );
+                return this.response(response);
             } catch (final IOException | InterruptedException ex) {
                 throw new IllegalStateException(
                     "Couldn't PATCH " + body.toString()
@@ -363,7 +645,7 @@ public interface JsonResources {
             final JsonValue body
         ) {
             try {
-                final HttpResponse<String> response = this.newHttpClient()
+                final HttpResponse<InputStream> response = this.client
                     .send(
                         this.request(
                             uri,
@@ -373,13 +655,9 @@ public interface JsonResources {
                                 body.toString()
                             )
                         ),
-                        HttpResponse.BodyHandlers.ofString()
+                        HttpResponse.BodyHandlers.ofInputStream()
                     );
-                return new JsonResponse(
-                    response.statusCode(),
-                    response.body(),
-                    this.headers(response.headers())
-                );
+                return this.response(response);
             } catch (final IOException | InterruptedException ex) {
                 throw new IllegalStateException(
                     "Couldn't PUT " + body.toString()
@@ -396,7 +674,7 @@ public interface JsonResources {
             final JsonValue body
         ) {
             try {
-                final HttpResponse<String> response = this.newHttpClient()
+                final HttpResponse<InputStream> response = this.client
                     .send(
                         this.request(
                             uri,
@@ -406,13 +684,9 @@ public interface JsonResources {
                                 body.toString()
                             )
                         ),
-                        HttpResponse.BodyHandlers.ofString()
+                        HttpResponse.BodyHandlers.ofInputStream()
                     );
-                return new JsonResponse(
-                    response.statusCode(),
-                    response.body(),
-                    this.headers(response.headers())
-                );
+                return this.response(response);
             } catch (final IOException | InterruptedException ex) {
                 throw new IllegalStateException(
                     "Couldn't DELETE " + body.toString()
@@ -422,13 +696,282 @@ public interface JsonResources {
             }
         }
 
+        @Override
+        public CompletableFuture<Resource> getAsync(
+            final URI uri,
+            final Supplier<Map<String, List<String>>> headers
+        ) {
+            return this.sendAsync(
+                this.request(
+                    uri,
+                    "GET",
+                    headers.get(),
+                    HttpRequest.BodyPublishers.noBody()
+                ),
+                () -> "Couldn't GET [" + uri.toString() +"]"
+            );
+        }
+
+        @Override
+        public CompletableFuture<Resource> postAsync(
+            final URI uri,
+            final Supplier<Map<String, List<String>>> headers,
+            final JsonValue body
+        ) {
+            return this.sendAsync(
+                this.request(
+                    uri,
+                    "POST",
+                    headers.get(),
+                    HttpRequest.BodyPublishers.ofString(body.toString())
+                ),
+                () -> "Couldn't POST " + body.toString()
+                    + " to [" + uri.toString() +"]"
+            );
+        }
+
+        @Override
+        public CompletableFuture<Resource> patchAsync(
+            final URI uri,
+            final Supplier<Map<String, List<String>>> headers,
+            final JsonValue body
+        ) {
+            return this.sendAsync(
+                this.request(
+                    uri,
+                    "PATCH",
+                    headers.get(),
+                    HttpRequest.BodyPublishers.ofString(body.toString())
+                ),
+                () -> "Couldn't PATCH " + body.toString()
+                    + " at [" + uri.toString() +"]"
+            );
+        }
+
+        @Override
+        public CompletableFuture<Resource> putAsync(
+            final URI uri,
+            final Supplier<Map<String, List<String>>> headers,
+            final JsonValue body
+        ) {
+            return this.sendAsync(
+                this.request(
+                    uri,
+                    "PUT",
+                    headers.get(),
+                    HttpRequest.BodyPublishers.ofString(body.toString())
+                ),
+                () -> "Couldn't PUT " + body.toString()
+                    + " at [" + uri.toString() +"]"
+            );
+        }
+
+        @Override
+        public CompletableFuture<Resource> deleteAsync(
+            final URI uri,
+            final Supplier<Map<String, List<String>>> headers,
+            final JsonValue body
+        ) {
+            return this.sendAsync(
+                this.request(
+                    uri,
+                    "DELETE",
+                    headers.get(),
+                    HttpRequest.BodyPublishers.ofString(body.toString())
+                ),
+                () -> "Couldn't DELETE " + body.toString()
+                    + " at [" + uri.toString() +"]"
+            );
+        }
+
+        /**
+         * Send the request asynchronously, with the shared client.
+         * <br/>
+         * Cancelling the returned future does not abort the HTTP exchange
+         * (JDK 11's HttpClient cannot do it): the request still reaches
+         * the provider, only its response is dropped. The body of the
+         * dropped response is closed as soon as it arrives, so the
+         * connection is not leaked.
+         * @param request HTTP Request.
+         * @param message Error message, in case the request fails.
+         * @return Future Resource.
+         */
+        private CompletableFuture<Resource> sendAsync(
+            final HttpRequest request,
+            final Supplier<String> message
+        ) {
+            final CompletableFuture<HttpResponse<InputStream>> exchange =
+                this.client.sendAsync(
+                    request, HttpResponse.BodyHandlers.ofInputStream()
+                );
+            final CompletableFuture<Resource> resource = exchange.handle(
+                (response, error) -> {
+                    if (error != null) {
+                        throw new IllegalStateException(
+                            message.get(),
+                            JdkHttp.cause(error)
+                        );
+                    }
+                    try {
+                        return this.response(response);
+                    } catch (final IOException ex) {
+                        throw new IllegalStateException(
+                            message.get(),
+                            ex
+                        );
+                    }
+                }
+            );
+            resource.whenComplete(
+                (response, error) -> {
+                    if (resource.isCancelled()) {
+                        exchange.thenAccept(JdkHttp::discard);
+                    }
+                }
+            );
+            return resource;
+        }
+
+        /**
+         * Close the body of a response nobody waits for anymore.
+         * @param response HTTP response.
+         */
+        private static void discard(final HttpResponse<InputStream> response) {
+            try {
+                response.body().close();
+            } catch (final IOException ex) {
+                throw new IllegalStateException(
+                    "Could not discard the response of "
+                    + response.request().uri(),
+                    ex
+                );
+            }
+        }
+
+        /**
+         * Read the HTTP response. A JSON body is parsed only once, straight
+         * from its bytes, without building a String first (unless it turns
+         * out to be malformed).
+         * A gzip or deflate encoded body is decompressed while it is read.
+         * A body which is not JSON (according to the Content-Type header)
+         * is kept as it is.
+         * @param response HTTP response.
+         * @return JsonResponse.
+         * @throws IOException If the body cannot be read.
+         */
+        private JsonResponse response(
+            final HttpResponse<InputStream> response
+        ) throws IOException {
+            final JsonResponse json;
+            final Map<String, List<String>> headers = new ResponseHeaders(
+                response.headers()
+            );
+            final String type = response.headers()
+                .firstValue("Content-Type")
+                .orElse("application/json");
+            final String encoding = response.headers()
+                .firstValue("Content-Encoding")
+                .orElse("identity");
+            try (
+                final PushbackInputStream raw = new PushbackInputStream(
+                    response.body(), 2
+                )
+            ) {
+                final int first = raw.read();
+                if (first == -1) {
+                    json = new JsonResponse(response.statusCode(), "", headers);
+                } else {
+                    raw.unread(first);
+                    final InputStream body = JdkHttp.decoded(raw, encoding);
+                    if (type.toLowerCase(Locale.ROOT).contains("json")) {
+                        json = JsonResponse.parsed(
+                            response.statusCode(),
+                            body.readAllBytes(),
+                            headers
+                        );
+                    } else {
+                        json = new JsonResponse(
+                            response.statusCode(),
+                            new String(
+                                body.readAllBytes(),
+                                StandardCharsets.UTF_8
+                            ),
+                            headers
+                        );
+                    }
+                }
+            }
+            return json;
+        }
+
+        /**
+         * Decompress the body, if it is encoded.
+         * @param body Body stream, with room to push back 2 bytes.
+         * @param encoding Value of the Content-Encoding header.
+         * @return Decoded body stream.
+         * @throws IOException If the body cannot be read.
+         */
+        private static InputStream decoded(
+            final PushbackInputStream body,
+            final String encoding
+        ) throws IOException {
+            final String name = encoding.trim().toLowerCase(Locale.ROOT);
+            final InputStream decoded;
+            if ("gzip".equals(name) || "x-gzip".equals(name)) {
+                decoded = new GZIPInputStream(body);
+            } else if ("deflate".equals(name)) {
+                final byte[] header = body.readNBytes(2);
+                body.unread(header);
+                decoded = new InflaterInputStream(
+                    body, new Inflater(!JdkHttp.zlib(header))
+                );
+            } else {
+                decoded = body;
+            }
+            return decoded;
+        }
+
         /**
-         * Build and return the HTTP Request.
+         * Does the deflate body start with a zlib header? Some servers send
+         * raw deflate data, without the zlib wrapper.
+         * @param header First 2 bytes of the body.
+         * @return True or false.
+         */
+        private static boolean zlib(final byte[] header) {
+            boolean zlib = false;
+            if (header.length == 2 && (header[0] & 0x0F) == 8) {
+                zlib = ((header[0] & 0xFF) << 8 | header[1] & 0xFF) % 31 == 0;
+            }
+            return zlib;
+        }
+
+        /**
+         * Unwrap the CompletionException in which an async stage
+         * might wrap the actual cause of the failure.
+         * @param error Error.
+         * @return The actual cause.
+         */
+        private static Throwable cause(final Throwable error) {
+            final Throwable cause;
+            if (error instanceof CompletionException
+                && error.getCause() != null) {
+                cause = error.getCause();
+            } else {
+                cause = error;
+            }
+            return cause;
+        }
+
+        /**
+         * Build and return the HTTP Request. Its timeout is the request
+         * timeout or the time left until the current {@link Deadline},
+         * whichever is shorter.
          * @param uri URI.
          * @param method Method.
          * @param headers HTTP Headers.
          * @param body Body.
          * @return HttpRequest.
+         * @throws IllegalStateException If the current deadline passed.
          * @checkstyle LineLength (100 lines)
          */
         private HttpRequest request(
@@ -437,9 +980,11 @@ public interface JsonResources {
             final Map<String, List<String>> headers,
             final HttpRequest.BodyPublisher body
         ) {
+            final Duration left = Deadline.current().timeout(this.timeout);
             HttpRequest.Builder requestBuilder;
             if(this.accessToken != null) {
                 requestBuilder = HttpRequest.newBuilder()
+                    .timeout(left)
                     .uri(uri)
                     .method(method, body)
                     .header("Content-Type", "application/json")
@@ -449,63 +994,76 @@ public interface JsonResources {
                     );
             } else {
                 requestBuilder = HttpRequest.newBuilder()
+                    .timeout(left)
                     .uri(uri)
                     .method(method, body)
                     .header("Content-Type", "application/json");
             }
+            boolean encoding = false;
             for(final Map.Entry<String, List<String>> header : headers.entrySet()) {
                 requestBuilder = requestBuilder.header(
                     header.getKey(),
                     String.join(",", header.getValue())
                 );
+                encoding = encoding || "Accept-Encoding".equalsIgnoreCase(header.getKey());
+            }
+            if (this.compression && !encoding) {
+                requestBuilder = requestBuilder.header(
+                    "Accept-Encoding", "gzip, deflate"
+                );
             }
             return requestBuilder.build();
         }
 
         /**
-         * Creates a new http client.
+         * The shared client for the required protocol version.
+         * @param useOldHttpProtocol Use {@link HttpClient.Version#HTTP_1_1}?
          * @return HttpClient.
          */
-        private HttpClient newHttpClient() {
+        private static HttpClient shared(final boolean useOldHttpProtocol) {
             final HttpClient client;
-            if (this.useOldHttpProtocol) {
-                client = HttpClient
-                    .newBuilder()
-                    .version(HttpClient.Version.HTTP_1_1)
-                    .build();
+            if (useOldHttpProtocol) {
+                client = Http11.CLIENT;
             } else {
-                client = HttpClient.newHttpClient();
+                client = Http2.CLIENT;
             }
             return client;
         }
 
         /**
-         * Calling HttpHeaders.map() will return a Map<String, List<String>>,
-         * BUT it will not split the header's value by comma. We have to do
-         * that manually.
-         * @param headers Headers map with values list split by comma.
-         * @return Map.
-         * @checkstyle LineLength (10 lines)
-         * @see <a href="https://docs.oracle.com/en/java/javase/11/docs/api/java.net.http/java/net/http/HttpHeaders.html">HttpHeaders.map() JavaDoc.</a>
+         * Lazy holder of the shared HTTP/2 client.
          */
-        private Map<String, List<String>> headers(final HttpHeaders headers) {
-            final Map<String, List<String>> split = new HashMap<>();
-            final Map<String, List<String>> original = headers.map();
-            for(final Map.Entry<String, List<String>> header : original.entrySet()) {
-                final List<String> splitList = new ArrayList<>();
-                for(final String value : header.getValue()) {
-                    Arrays.asList(value.split(",")).stream().forEach(
-                        v -> splitList.add(v.trim())
-                    );
-                }
-                split.put(header.getKey(), splitList);
-            }
-            return split;
+        private static final class Http2 {
+
+            /**
+             * Shared client, created on first use.
+             */
+            private static final HttpClient CLIENT = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+        }
+
+        /**
+         * Lazy holder of the shared HTTP/1.1 client.
+         */
+        private static final class Http11 {
+
+            /**
+             * Shared client, created on first use.
+             */
+            private static final HttpClient CLIENT = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
         }
     }
 
     /**
-     * Response as JSON.
+     * Response as JSON. The body is parsed only once, when it is first
+     * needed, and then reused. A body which is not valid JSON is kept as
+     * it came: {@link #toString()} shows it, while {@link #asJsonObject()}
+     * and {@link #asJsonArray()} throw.
      * @author Mihai Andronache (amihaiemil@gmail.com)
      * @version $Id$
      * @since 0.0.8
@@ -513,20 +1071,34 @@ public interface JsonResources {
     final class JsonResponse implements Resource {
 
         /**
-         * Response status code.
+         * Shared reader factory. Looking up the JsonProvider is expensive,
+         * so we do not want to do it for every parsed body.
          */
-        final int statusCode;
+        static final JsonReaderFactory READERS = Json.createReaderFactory(
+            Collections.emptyMap()
+        );
 
         /**
-         * Response body (expected to be a JSON).
+         * Response status code.
          */
-        final String body;
+        final int statusCode;
 
         /**
          * Response headers.
          */
         private final Map<String, List<String>> headers;
 
+        /**
+         * Response body as text (expected to be a JSON), null if
+         * we only have the parsed body.
+         */
+        private volatile String text;
+
+        /**
+         * Parsed body, null until it is first needed.
+         */
+        private volatile JsonValue json;
+
         /**
          * Ctor.
          * @param statusCode Status code.
@@ -537,10 +1109,52 @@ public interface JsonResources {
                      final String body,
                      final Map<String, List<String>> headers) {
             this.statusCode = statusCode;
-            this.body = body;
+            this.text = body;
             this.headers = headers;
         }
 
+        /**
+         * Ctor.
+         * @param statusCode Status code.
+         * @param body Already parsed Response Body.
+         * @param headers Response Headers.
+         */
+        JsonResponse(final int statusCode,
+                     final JsonValue body,
+                     final Map<String, List<String>> headers) {
+            this.statusCode = statusCode;
+            this.json = body;
+            this.headers = headers;
+        }
+
+        /**
+         * Parse the JSON body. A malformed body is kept as raw text, so it
+         * can still be seen (e.g. an HTML error page of a proxy).
+         * @param status Status code.
+         * @param body Body bytes.
+         * @param headers Response headers.
+         * @return JsonResponse.
+         */
+        static JsonResponse parsed(
+            final int status,
+            final byte[] body,
+            final Map<String, List<String>> headers
+        ) {
+            JsonResponse parsed;
+            try (
+                final JsonReader reader = READERS.createReader(
+                    new ByteArrayInputStream(body), StandardCharsets.UTF_8
+                )
+            ) {
+                parsed = new JsonResponse(status, reader.readValue(), headers);
+            } catch (final JsonException ex) {
+                parsed = new JsonResponse(
+                    status, new String(body, StandardCharsets.UTF_8), headers
+                );
+            }
+            return parsed;
+        }
+
         @Override
         public int statusCode() {
             return this.statusCode;
@@ -548,16 +1162,24 @@ public interface JsonResources {
 
         @Override
         public JsonObject asJsonObject() {
-            return Json.createReader(
-                new StringReader(this.body)
-            ).readObject();
+            final JsonValue body = this.json();
+            if (body.getValueType() != JsonValue.ValueType.OBJECT) {
+                throw new JsonException(
+                    "Expected a JSON object, but the body is: " + body
+                );
+            }
+            return body.asJsonObject();
         }
 
         @Override
         public JsonArray asJsonArray() {
-            return Json.createReader(
-                new StringReader(this.body)
-            ).readArray();
+            final JsonValue body = this.json();
+            if (body.getValueType() != JsonValue.ValueType.ARRAY) {
+                throw new JsonException(
+                    "Expected a JSON array, but the body is: " + body
+                );
+            }
+            return body.asJsonArray();
         }
 
         @Override
@@ -569,9 +1191,10 @@ public interface JsonResources {
         public Builder newBuilder() {
             return new Builder(
                 this,
+                this.json,
                 (status, body, headers) -> new JsonResponse(
                     status,
-                    body.toString(),
+                    body,
                     headers
                 )
             );
@@ -579,7 +1202,43 @@ public interface JsonResources {
 
         @Override
         public String toString() {
-            return this.body;
+            String body = this.text;
+            if (body == null) {
+                body = this.json.toString();
+                this.text = body;
+            }
+            return body;
+        }
+
+        /**
+         * The parsed body. It is parsed only the first time.
+         * @return JsonValue, JsonValue.NULL if the body is blank.
+         * @throws JsonException If the body is not valid JSON.
+         */
+        private JsonValue json() {
+            JsonValue body = this.json;
+            if (body == null) {
+                final String raw = this.text;
+                if (raw.isBlank() || "null".equalsIgnoreCase(raw)) {
+                    body = JsonValue.NULL;
+                } else {
+                    try (
+                        final JsonReader reader = READERS.createReader(
+                            new StringReader(raw)
+                        )
+                    ) {
+                        body = reader.readValue();
+                    } catch (final JsonException ex) {
+                        throw new JsonException(
+                            "Response body (status " + this.statusCode
+                            + ") is not valid JSON: " + raw,
+                            ex
+                        );
+                    }
+                }
+                this.json = body;
+            }
+            return body;
         }
     }
 }
@@ -0,0 +1,1218 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+import com.selfxdsd.api.storage.JsonStorage;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * JsonStorage persisted on disk, so the ETags survive restarts and the
+ * first GETs after a deploy can already be revalidated (a 304 does not
+ * count against Github's rate limit).
+ * <br/>
+ * Resources are appended to a log of segment files (segment-00000001.log,
+ * segment-00000002.log etc) in the given directory, while an in-memory
+ * index keeps the location of the latest record of each URI. Each record
+ * is [length][CRC32][payload], the payload being the JSON metadata of the
+ * resource, a newline and the body exactly as it was received, so reading
+ * it decodes the body only once. The index is rebuilt when the storage is
+ * first used; scanning a segment stops at the first empty, truncated or
+ * corrupted record, so a torn write (e.g. after a crash) only loses that
+ * record and the ones after it.
+ * <br/>
+ * Only the active segment (the last one) is memory-mapped, read-write.
+ * When it is full, it is forced to disk and sealed: its mapping is
+ * dropped and its records are read from the file from then on. The
+ * records of the active segment are written back by the OS: they survive
+ * a crash of the process, but a crash of the machine may lose the most
+ * recent of them.
+ * <br/>
+ * A removed resource gets a tombstone record, which is kept only while
+ * an older segment may still hold a record of the resource.
+ * <br/>
+ * The live records take at most the given capacity (bytes). Beyond it,
+ * the oldest segment is dropped together with the resources still in it:
+ * those which were not stored again (e.g. refreshed after a 304) for the
+ * longest time.
+ * <br/>
+ * Records which were replaced by newer ones are garbage. When a sealed
+ * segment is mostly garbage, it is compacted in the background: its live
+ * records are copied to the active segment, which is forced to disk, and
+ * its file is deleted. Eviction and compaction run on a dedicated thread
+ * and hold the storage's lock only to update the index, not while
+ * reading the records or forcing them to disk. A GET racing with them
+ * may miss a resource which was just moved, which only costs a request.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class MappedJsonStorage implements JsonStorage {
+
+    /**
+     * Size of a record's header: length and CRC32.
+     */
+    private static final int HEADER = 8;
+
+    /**
+     * Separator of the metadata and the body, in a payload.
+     */
+    private static final byte NEWLINE = '\n';
+
+    /**
+     * Thread which evicts and compacts the segments of all the storages.
+     */
+    private static final ExecutorService MAINTENANCE =
+        Executors.newSingleThreadExecutor(MappedJsonStorage::daemon);
+
+    /**
+     * Lock guarding the segments and the index.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Lock making sure only one eviction or compaction runs at a time.
+     */
+    private final Object maintenance = new Object();
+
+    /**
+     * Directory of the segments.
+     */
+    private final Path directory;
+
+    /**
+     * Size of a segment file.
+     */
+    private final int segmentSize;
+
+    /**
+     * Maximum bytes of the live records.
+     */
+    private final long capacity;
+
+    /**
+     * Location of the latest record of each URI.
+     */
+    private final Map<URI, Location> index = new HashMap<>();
+
+    /**
+     * Stored URIs, by their base (see {@link JsonStorage#base(URI)}), so
+     * a resource can be removed together with its variants.
+     */
+    private final Map<URI, Set<URI>> variants = new HashMap<>();
+
+    /**
+     * Location of the tombstone of each removed URI. Tombstones are live
+     * records, so compaction keeps them (while needed) and the removed
+     * resources don't come back after a restart.
+     */
+    private final Map<URI, Location> tombstones = new HashMap<>();
+
+    /**
+     * Segments, by id. The last one is the active segment.
+     */
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+
+    /**
+     * Is an eviction and compaction scheduled?
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Statistics. The bytes are those of the live records on disk.
+     */
+    private final CacheStats stats = new CacheStats(
+        this::size, this::bytes, this::evictions
+    );
+
+    /**
+     * Number of resources evicted so far.
+     */
+    private long evictions;
+
+    /**
+     * Were the segments opened and the index rebuilt?
+     */
+    private boolean opened;
+
+    /**
+     * Ctor. Segments of 16MB, at most 256MB of live records.
+     * @param directory Directory of the segments.
+     */
+    public MappedJsonStorage(final Path directory) {
+        this(directory, 16 * 1024 * 1024);
+    }
+
+    /**
+     * Ctor. At most 16 segments worth of live records.
+     * @param directory Directory of the segments.
+     * @param segmentSize Size of a segment file (bytes). Bigger resources
+     *  are not stored.
+     */
+    public MappedJsonStorage(final Path directory, final int segmentSize) {
+        this(directory, segmentSize, 16L * segmentSize);
+    }
+
+    /**
+     * Ctor.
+     * @param directory Directory of the segments.
+     * @param segmentSize Size of a segment file (bytes). Bigger resources
+     *  are not stored.
+     * @param capacity Maximum bytes of the live records.
+     */
+    public MappedJsonStorage(
+        final Path directory,
+        final int segmentSize,
+        final long capacity
+    ) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public CachedResource getResource(final URI uri) {
+        final Location location;
+        synchronized (this.lock) {
+            this.open();
+            location = this.index.get(uri);
+        }
+        CachedResource found = null;
+        if (location != null) {
+            final byte[] payload = location.payload();
+            if (payload != null) {
+                found = MappedJsonStorage.resource(uri, payload);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public CachedResource storeResource(final CachedResource resource) {
+        final byte[] payload = MappedJsonStorage.payload(resource);
+        final boolean maintain;
+        synchronized (this.lock) {
+            this.open();
+            if (HEADER + payload.length <= this.segmentSize) {
+                this.append(
+                    resource.uri(), MappedJsonStorage.record(payload), false
+                );
+            }
+            maintain = this.live() > this.capacity || this.compactable();
+        }
+        if (maintain && this.scheduled.compareAndSet(false, true)) {
+            MAINTENANCE.execute(
+                () -> {
+                    this.scheduled.set(false);
+                    this.evict();
+                    this.compact();
+                }
+            );
+        }
+        return resource;
+    }
+
+    @Override
+    public void removeResource(final URI uri) {
+        synchronized (this.lock) {
+            this.open();
+            final Set<URI> stored = this.variants.get(JsonStorage.base(uri));
+            final List<URI> removed;
+            if (stored == null) {
+                removed = List.of();
+            } else {
+                removed = new ArrayList<>(stored);
+            }
+            for (final URI variant : removed) {
+                this.append(
+                    variant,
+                    MappedJsonStorage.record(
+                        MappedJsonStorage.payload(
+                            Json.createObjectBuilder()
+                                .add("uri", variant.toString())
+                                .add("removed", true)
+                                .build(),
+                            ""
+                        )
+                    ),
+                    true
+                );
+            }
+        }
+    }
+
+    /**
+     * Number of stored resources.
+     * @return Integer.
+     */
+    public int size() {
+        synchronized (this.lock) {
+            this.open();
+            return this.index.size();
+        }
+    }
+
+    @Override
+    public Stats stats() {
+        return this.stats;
+    }
+
+    /**
+     * Bytes taken by the live records, tombstones included.
+     * @return Long.
+     */
+    public long bytes() {
+        synchronized (this.lock) {
+            this.open();
+            return this.live();
+        }
+    }
+
+    /**
+     * Number of resources evicted so far.
+     * @return Long.
+     */
+    public long evictions() {
+        synchronized (this.lock) {
+            return this.evictions;
+        }
+    }
+
+    /**
+     * Number of segment files.
+     * @return Integer.
+     */
+    public int segments() {
+        synchronized (this.lock) {
+            this.open();
+            return this.segments.size();
+        }
+    }
+
+    /**
+     * Drop the oldest segments, with the resources still in them, while
+     * the live records take more than the capacity. It is done
+     * automatically, in the background, but it can also be called
+     * directly.
+     */
+    public void evict() {
+        synchronized (this.maintenance) {
+            boolean full = true;
+            while (full) {
+                Segment oldest = null;
+                synchronized (this.lock) {
+                    this.open();
+                    full = this.live() > this.capacity
+                        && this.segments.size() > 1;
+                    if (full) {
+                        oldest = this.segments.firstEntry().getValue();
+                        this.evictions += this.dropped(oldest);
+                    }
+                }
+                if (oldest != null) {
+                    oldest.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Compact the sealed segments which are mostly garbage: copy their
+     * live records to the active segment and delete them. It is done
+     * automatically, in the background, but it can also be called
+     * directly.
+     */
+    public void compact() {
+        synchronized (this.maintenance) {
+            final List<Segment> compacted;
+            final Map<URI, Location> live;
+            synchronized (this.lock) {
+                this.open();
+                compacted = this.garbage();
+                live = this.movable(compacted);
+            }
+            if (!compacted.isEmpty()) {
+                final Map<URI, byte[]> records = new HashMap<>();
+                for (final Map.Entry<URI, Location> entry : live.entrySet()) {
+                    records.put(entry.getKey(), entry.getValue().payload());
+                }
+                final Segment active;
+                synchronized (this.lock) {
+                    this.copied(live, records);
+                    compacted.forEach(this::dropped);
+                    active = this.segments.lastEntry().getValue();
+                }
+                active.force();
+                compacted.forEach(Segment::delete);
+            }
+        }
+    }
+
+    /**
+     * The sealed segments which are mostly garbage.
+     * @return Segments, oldest first.
+     */
+    private List<Segment> garbage() {
+        final List<Segment> garbage = new ArrayList<>();
+        for (final Segment segment : this.sealed()) {
+            if (segment.mostlyGarbage()) {
+                garbage.add(segment);
+            }
+        }
+        return garbage;
+    }
+
+    /**
+     * Records of the given segments which have to be moved: the latest
+     * records of the stored resources and the tombstones still needed.
+     * @param compacted Segments being compacted.
+     * @return Locations of the records, by URI.
+     */
+    private Map<URI, Location> movable(final List<Segment> compacted) {
+        final Map<URI, Location> movable = new HashMap<>(
+            this.located(this.index, compacted)
+        );
+        movable.putAll(this.needed(compacted));
+        return movable;
+    }
+
+    /**
+     * Append the copied records which are still the latest of their
+     * URIs. The others were replaced or removed in the meantime.
+     * @param live Locations of the records when they were read.
+     * @param records Records read, by URI.
+     */
+    private void copied(
+        final Map<URI, Location> live,
+        final Map<URI, byte[]> records
+    ) {
+        for (final Map.Entry<URI, Location> entry : live.entrySet()) {
+            final URI uri = entry.getKey();
+            final Location location = entry.getValue();
+            final byte[] payload = records.get(uri);
+            final boolean removed = this.tombstones.get(uri) == location;
+            if (payload != null
+                && (removed || this.index.get(uri) == location)) {
+                this.append(uri, MappedJsonStorage.record(payload), removed);
+            }
+        }
+    }
+
+    /**
+     * Tombstones, located in the given segments, which are still needed:
+     * an older segment, which is kept, may hold a record of their URI.
+     * @param compacted Segments being compacted.
+     * @return Locations of the tombstones, by URI.
+     */
+    private Map<URI, Location> needed(final List<Segment> compacted) {
+        final Map<URI, Location> needed = new HashMap<>();
+        for (final Map.Entry<URI, Location> entry
+            : this.located(this.tombstones, compacted).entrySet()) {
+            final Segment segment = entry.getValue().segment;
+            for (final Segment older
+                : this.segments.headMap(segment.id).values()) {
+                if (!compacted.contains(older)
+                    && older.keys.contains(entry.getKey())) {
+                    needed.put(entry.getKey(), entry.getValue());
+                    break;
+                }
+            }
+        }
+        return needed;
+    }
+
+    /**
+     * Entries of an index located in the given segments.
+     * @param locations Index of resources or of tombstones.
+     * @param where Segments.
+     * @return Locations, by URI.
+     */
+    private Map<URI, Location> located(
+        final Map<URI, Location> locations,
+        final List<Segment> where
+    ) {
+        return locations.entrySet()
+            .stream()
+            .filter(entry -> where.contains(entry.getValue().segment))
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    /**
+     * Forget a segment and every record still in it. Its tombstones are
+     * not needed anymore: either it is the oldest segment, or they were
+     * left out by {@link #needed(List)}.
+     * @param segment Segment.
+     * @return Number of resources dropped.
+     */
+    private int dropped(final Segment segment) {
+        final List<Segment> where = List.of(segment);
+        final Set<URI> resources = this.located(this.index, where).keySet();
+        for (final URI uri : resources) {
+            this.index.remove(uri);
+            this.unindexed(uri);
+        }
+        this.tombstones.keySet().removeAll(
+            this.located(this.tombstones, where).keySet()
+        );
+        this.segments.remove(segment.id);
+        return resources.size();
+    }
+
+    /**
+     * Is any sealed segment mostly garbage, so {@link #compact()} would
+     * do something?
+     * @return True or false.
+     */
+    private boolean compactable() {
+        return !this.garbage().isEmpty();
+    }
+
+    /**
+     * The sealed segments: all of them but the active one.
+     * @return Segments, oldest first.
+     */
+    private List<Segment> sealed() {
+        return new ArrayList<>(
+            this.segments.headMap(this.segments.lastKey()).values()
+        );
+    }
+
+    /**
+     * Bytes taken by the live records, tombstones included.
+     * @return Long.
+     */
+    private long live() {
+        long bytes = 0;
+        for (final Segment segment : this.segments.values()) {
+            bytes += segment.live;
+        }
+        return bytes;
+    }
+
+    /**
+     * Append a record to the active segment, rolling a new segment if it
+     * is full, and index it.
+     * @param uri URI.
+     * @param record Record.
+     * @param removed Is it a tombstone?
+     */
+    private void append(
+        final URI uri, final byte[] record, final boolean removed
+    ) {
+        Segment active = this.segments.lastEntry().getValue();
+        if (active.position + record.length > this.segmentSize) {
+            active.seal();
+            active = this.segment(active.id + 1, true);
+        }
+        this.index(
+            uri,
+            new Location(active, active.write(record), record.length),
+            removed
+        );
+    }
+
+    /**
+     * Index a record, updating the live bytes of the segments. The
+     * previous record or tombstone of the URI becomes garbage.
+     * @param uri URI.
+     * @param location Location of the record.
+     * @param removed Is it a tombstone?
+     */
+    private void index(
+        final URI uri, final Location location, final boolean removed
+    ) {
+        for (final Location previous : Arrays.asList(
+            this.index.remove(uri), this.tombstones.remove(uri)
+        )) {
+            if (previous != null) {
+                previous.segment.live -= previous.length;
+            }
+        }
+        if (removed) {
+            this.tombstones.put(uri, location);
+            this.unindexed(uri);
+        } else {
+            this.index.put(uri, location);
+            this.variants.computeIfAbsent(
+                JsonStorage.base(uri), key -> new HashSet<>()
+            ).add(uri);
+        }
+        location.segment.live += location.length;
+        location.segment.keys.add(uri);
+    }
+
+    /**
+     * Forget a URI which is no longer stored, from its variants.
+     * @param uri URI.
+     */
+    private void unindexed(final URI uri) {
+        final URI base = JsonStorage.base(uri);
+        final Set<URI> stored = this.variants.get(base);
+        if (stored != null) {
+            stored.remove(uri);
+            if (stored.isEmpty()) {
+                this.variants.remove(base);
+            }
+        }
+    }
+
+    /**
+     * Open the segments and rebuild the index, if not done yet.
+     */
+    private void open() {
+        if (!this.opened) {
+            try {
+                Files.createDirectories(this.directory);
+                final List<Integer> ids;
+                try (final Stream<Path> files = Files.list(this.directory)) {
+                    ids = files
+                        .map(file -> file.getFileName().toString())
+                        .filter(name -> name.matches("segment-\\d{8}\\.log"))
+                        .map(name -> Integer.valueOf(name.substring(8, 16)))
+                        .sorted()
+                        .collect(Collectors.toList());
+                }
+                for (final Integer id : ids) {
+                    this.scan(
+                        this.segment(id, id.equals(ids.get(ids.size() - 1)))
+                    );
+                }
+                if (this.segments.isEmpty()) {
+                    this.segment(1, true);
+                }
+            } catch (final IOException ex) {
+                throw new IllegalStateException(
+                    "Could not open the JsonStorage in " + this.directory, ex
+                );
+            }
+            this.segments.lastEntry().getValue().clearTail();
+            this.opened = true;
+        }
+    }
+
+    /**
+     * Scan a segment, indexing its valid records.
+     * @param segment Segment.
+     */
+    private void scan(final Segment segment) {
+        boolean valid = true;
+        while (valid) {
+            final byte[] payload = segment.payload(segment.position);
+            if (payload == null) {
+                valid = false;
+            } else {
+                final JsonObject meta = MappedJsonStorage.meta(payload);
+                final int length = HEADER + payload.length;
+                this.index(
+                    URI.create(meta.getString("uri")),
+                    new Location(segment, segment.position, length),
+                    meta.getBoolean("removed", false)
+                );
+                segment.position += length;
+            }
+        }
+    }
+
+    /**
+     * Open (or create) a segment and register it.
+     * @param id Id of the segment.
+     * @param active Is it the active segment? Only that one is mapped.
+     * @return Segment.
+     */
+    private Segment segment(final int id, final boolean active) {
+        final Path file = this.directory.resolve(
+            String.format("segment-%08d.log", id)
+        );
+        MappedByteBuffer buffer = null;
+        if (active) {
+            try (
+                final FileChannel channel = FileChannel.open(
+                    file,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+                )
+            ) {
+                buffer = channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0, this.segmentSize
+                );
+            } catch (final IOException ex) {
+                throw new IllegalStateException(
+                    "Could not open the segment " + file, ex
+                );
+            }
+        }
+        final Segment segment = new Segment(
+            id, file, this.segmentSize, buffer
+        );
+        this.segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Daemon thread for the maintenance, so it does not keep the JVM
+     * running.
+     * @param work Work.
+     * @return Thread.
+     */
+    private static Thread daemon(final Runnable work) {
+        final Thread thread = new Thread(
+            work, "mapped-json-storage-maintenance"
+        );
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Record of a payload: length, CRC32 and the payload itself.
+     * @param payload Payload.
+     * @return Bytes.
+     */
+    private static byte[] record(final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(HEADER + payload.length)
+            .putInt(payload.length)
+            .putInt((int) crc.getValue())
+            .put(payload)
+            .array();
+    }
+
+    /**
+     * Payload of a resource.
+     * @param resource Resource.
+     * @return Bytes.
+     */
+    private static byte[] payload(final CachedResource resource) {
+        final JsonObjectBuilder headers = Json.createObjectBuilder();
+        for (final Map.Entry<String, List<String>> header
+            : resource.headers().entrySet()) {
+            final JsonArrayBuilder values = Json.createArrayBuilder();
+            header.getValue().forEach(values::add);
+            headers.add(header.getKey(), values);
+        }
+        return MappedJsonStorage.payload(
+            Json.createObjectBuilder()
+                .add("uri", resource.uri().toString())
+                .add("created", resource.creationDate().toString())
+                .add("status", resource.statusCode())
+                .add("headers", headers)
+                .build(),
+            resource.toString()
+        );
+    }
+
+    /**
+     * Payload of the metadata and the body. The metadata has no newline,
+     * since the JSON text has no whitespace and escapes it in strings.
+     * @param meta Metadata.
+     * @param body Body.
+     * @return Bytes.
+     */
+    private static byte[] payload(final JsonObject meta, final String body) {
+        final byte[] head = meta.toString().getBytes(StandardCharsets.UTF_8);
+        final byte[] tail = body.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(head.length + 1 + tail.length)
+            .put(head)
+            .put(NEWLINE)
+            .put(tail)
+            .array();
+    }
+
+    /**
+     * Where the metadata of the payload ends.
+     * @param payload Payload.
+     * @return Index of the newline, or the length of the payload if it is
+     *  all JSON (records written by older versions, with the body in it).
+     */
+    private static int metaEnd(final byte[] payload) {
+        int end = 0;
+        while (end < payload.length && payload[end] != NEWLINE) {
+            ++end;
+        }
+        return end;
+    }
+
+    /**
+     * Parse the metadata of a payload.
+     * @param payload Payload.
+     * @return JsonObject.
+     */
+    private static JsonObject meta(final byte[] payload) {
+        try (
+            final JsonReader reader = JsonResources.JsonResponse.READERS
+                .createReader(
+                    new ByteArrayInputStream(
+                        payload, 0, MappedJsonStorage.metaEnd(payload)
+                    ),
+                    StandardCharsets.UTF_8
+                )
+        ) {
+            return reader.readObject();
+        }
+    }
+
+    /**
+     * Build the CachedResource from its payload. The body is kept as it
+     * was received and parsed only when it is needed.
+     * @param uri URI.
+     * @param payload Payload.
+     * @return CachedResource.
+     */
+    private static CachedResource resource(
+        final URI uri,
+        final byte[] payload
+    ) {
+        final JsonObject meta = MappedJsonStorage.meta(payload);
+        final int end = MappedJsonStorage.metaEnd(payload);
+        final String body;
+        if (end < payload.length) {
+            body = new String(
+                payload, end + 1, payload.length - end - 1,
+                StandardCharsets.UTF_8
+            );
+        } else {
+            body = meta.getString("body");
+        }
+        final Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (final Map.Entry<String, JsonValue> header
+            : meta.getJsonObject("headers").entrySet()) {
+            headers.put(
+                header.getKey(),
+                header.getValue().asJsonArray()
+                    .getValuesAs(JsonString.class)
+                    .stream()
+                    .map(JsonString::getString)
+                    .collect(Collectors.toList())
+            );
+        }
+        return new Stored(
+            CachedResource.fromResource(
+                uri,
+                new JsonResources.JsonResponse(
+                    meta.getInt("status"), body, headers
+                )
+            ),
+            LocalDateTime.parse(
+                meta.getString("created", LocalDateTime.MIN.toString())
+            )
+        );
+    }
+
+    /**
+     * Resource read from the storage, with its original creation date.
+     */
+    private static final class Stored implements CachedResource {
+
+        /**
+         * Resource.
+         */
+        private final CachedResource resource;
+
+        /**
+         * When it was originally created.
+         */
+        private final LocalDateTime created;
+
+        /**
+         * Ctor.
+         * @param resource Resource.
+         * @param created When it was originally created.
+         */
+        Stored(final CachedResource resource, final LocalDateTime created) {
+            this.resource = resource;
+            this.created = created;
+        }
+
+        @Override
+        public URI uri() {
+            return this.resource.uri();
+        }
+
+        @Override
+        public String etag() {
+            return this.resource.etag();
+        }
+
+        @Override
+        public LocalDateTime creationDate() {
+            return this.created;
+        }
+
+        @Override
+        public int statusCode() {
+            return this.resource.statusCode();
+        }
+
+        @Override
+        public JsonObject asJsonObject() {
+            return this.resource.asJsonObject();
+        }
+
+        @Override
+        public JsonArray asJsonArray() {
+            return this.resource.asJsonArray();
+        }
+
+        @Override
+        public Map<String, List<String>> headers() {
+            return this.resource.headers();
+        }
+
+        @Override
+        public Builder newBuilder() {
+            return this.resource.newBuilder();
+        }
+
+        @Override
+        public String toString() {
+            return this.resource.toString();
+        }
+    }
+
+    /**
+     * Location of a record.
+     */
+    private static final class Location {
+
+        /**
+         * Segment.
+         */
+        private final Segment segment;
+
+        /**
+         * Offset in the segment.
+         */
+        private final int offset;
+
+        /**
+         * Length of the record, header included.
+         */
+        private final int length;
+
+        /**
+         * Ctor.
+         * @param segment Segment.
+         * @param offset Offset in the segment.
+         * @param length Length of the record, header included.
+         */
+        Location(final Segment segment, final int offset, final int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Payload of the record.
+         * @return Bytes.
+         */
+        byte[] payload() {
+            return this.segment.payload(this.offset);
+        }
+    }
+
+    /**
+     * Segment file. Only the active segment is mapped; the records of a
+     * sealed one are read from the file.
+     */
+    private static final class Segment {
+
+        /**
+         * Id.
+         */
+        private final int id;
+
+        /**
+         * File.
+         */
+        private final Path file;
+
+        /**
+         * Size of the file.
+         */
+        private final int size;
+
+        /**
+         * URIs of all the records ever written in it, live or not.
+         */
+        private final Set<URI> keys = new HashSet<>();
+
+        /**
+         * Mapped content, null once the segment is sealed. Only duplicates
+         * of it are read or written, so its position never changes.
+         */
+        private volatile MappedByteBuffer buffer;
+
+        /**
+         * Lock guarding the channel.
+         */
+        private final Object reading = new Object();
+
+        /**
+         * Channel reading the sealed segment, opened when first needed.
+         */
+        private FileChannel channel;
+
+        /**
+         * Was the segment deleted?
+         */
+        private boolean deleted;
+
+        /**
+         * Where the next record will be written.
+         */
+        private int position;
+
+        /**
+         * Bytes taken by the records which are still indexed.
+         */
+        private long live;
+
+        /**
+         * Ctor.
+         * @param id Id.
+         * @param file File.
+         * @param size Size of the file.
+         * @param buffer Mapped content, null if the segment is sealed.
+         * @checkstyle ParameterNumber (10 lines)
+         */
+        Segment(
+            final int id,
+            final Path file,
+            final int size,
+            final MappedByteBuffer buffer
+        ) {
+            this.id = id;
+            this.file = file;
+            this.size = size;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Write a record at the end of the active segment.
+         * @param record Record.
+         * @return Offset of the record.
+         */
+        int write(final byte[] record) {
+            final int offset = this.position;
+            final ByteBuffer target = this.buffer.duplicate();
+            target.position(offset + 4);
+            target.put(record, 4, record.length - 4);
+            target.putInt(offset, ByteBuffer.wrap(record).getInt());
+            this.position += record.length;
+            return offset;
+        }
+
+        /**
+         * Payload of the record at the given offset.
+         * @param offset Offset.
+         * @return Bytes, or null if there is no valid record there (or
+         *  the segment was deleted).
+         */
+        byte[] payload(final int offset) {
+            byte[] payload = null;
+            final ByteBuffer header = this.read(offset, HEADER);
+            if (header != null && header.getInt(0) > 0) {
+                final int length = header.getInt(0);
+                final ByteBuffer source = this.read(offset + HEADER, length);
+                if (source != null) {
+                    final byte[] bytes = new byte[length];
+                    source.get(bytes);
+                    final CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    if (crc.getValue() == (header.getInt(4) & 0xFFFFFFFFL)) {
+                        payload = bytes;
+                    }
+                }
+            }
+            return payload;
+        }
+
+        /**
+         * Are most of its bytes taken by replaced records?
+         * @return True or false.
+         */
+        boolean mostlyGarbage() {
+            return this.live * 2 < this.position;
+        }
+
+        /**
+         * Write the records of the active segment to the disk.
+         */
+        void force() {
+            final MappedByteBuffer mapped = this.buffer;
+            if (mapped != null) {
+                mapped.force();
+            }
+        }
+
+        /**
+         * Force the records to the disk and drop the mapping: from now on
+         * the records are read from the file.
+         */
+        void seal() {
+            this.force();
+            this.buffer = null;
+        }
+
+        /**
+         * Zero everything after the last valid record of the active
+         * segment, so a torn record is not mistaken for a valid one later.
+         */
+        void clearTail() {
+            final ByteBuffer target = this.buffer.duplicate();
+            target.position(this.position);
+            final byte[] zeros = new byte[4096];
+            while (target.hasRemaining()) {
+                target.put(
+                    zeros, 0, Math.min(zeros.length, target.remaining())
+                );
+            }
+        }
+
+        /**
+         * Delete the segment file. Readers still holding a Location of
+         * it get no record.
+         */
+        void delete() {
+            try {
+                synchronized (this.reading) {
+                    this.deleted = true;
+                    this.buffer = null;
+                    if (this.channel != null) {
+                        this.channel.close();
+                    }
+                }
+                Files.deleteIfExists(this.file);
+            } catch (final IOException ex) {
+                throw new IllegalStateException(
+                    "Could not delete the segment " + this.file, ex
+                );
+            }
+        }
+
+        /**
+         * Read bytes of the segment.
+         * @param offset Offset.
+         * @param length Number of bytes.
+         * @return Bytes, or null if they are not in the segment.
+         */
+        private ByteBuffer read(final int offset, final int length) {
+            ByteBuffer read = null;
+            if (offset >= 0 && (long) offset + length <= this.size) {
+                final MappedByteBuffer mapped = this.buffer;
+                if (mapped == null) {
+                    read = this.fromFile(offset, length);
+                } else {
+                    read = mapped.duplicate();
+                    read.position(offset);
+                    read.limit(offset + length);
+                    read = read.slice();
+                }
+            }
+            return read;
+        }
+
+        /**
+         * Read bytes of the sealed segment from its file.
+         * @param offset Offset.
+         * @param length Number of bytes.
+         * @return Bytes, or null if they could not be read.
+         */
+        private ByteBuffer fromFile(final int offset, final int length) {
+            ByteBuffer read = ByteBuffer.allocate(length);
+            try {
+                final FileChannel source = this.channel();
+                int count = 0;
+                while (read.hasRemaining() && count >= 0) {
+                    count = source.read(read, offset + read.position());
+                }
+                if (read.hasRemaining()) {
+                    read = null;
+                } else {
+                    read.flip();
+                }
+            } catch (final IOException ex) {
+                read = null;
+            }
+            return read;
+        }
+
+        /**
+         * Channel reading the file. It is opened again if it was closed
+         * by an interrupted read.
+         * @return FileChannel.
+         * @throws IOException If the segment was deleted or the file
+         *  cannot be opened.
+         */
+        private FileChannel channel() throws IOException {
+            synchronized (this.reading) {
+                if (this.deleted) {
+                    throw new ClosedChannelException();
+                }
+                if (this.channel == null || !this.channel.isOpen()) {
+                    this.channel = FileChannel.open(
+                        this.file, StandardOpenOption.READ
+                    );
+                }
+                return this.channel;
+            }
+        }
+    }
+}
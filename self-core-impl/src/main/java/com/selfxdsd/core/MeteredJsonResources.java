@@ -0,0 +1,368 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * JSON Resources which measure every call (latency, status, bytes in and
+ * out) and send the measurements to a {@link ResourcesMeter}, per host,
+ * method and URI template.
+ * <br/>
+ * The URI template is obtained by replacing the owner, repo, user, org
+ * and project names, the numbers and the commit SHAs in the path with
+ * placeholders, and by dropping the query. E.g.
+ * /repos/amihaiemil/docker-java-api/issues/12 becomes
+ * /repos/{owner}/{repo}/issues/{n}.
+ * <br/>
+ * Wrap the HTTP resources directly (not the cache) with it, so that
+ * 304 responses are visible.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class MeteredJsonResources implements JsonResources {
+
+    /**
+     * Path segments followed by an owner and a repo name.
+     */
+    private static final Set<String> REPOS = Set.of(
+        "repos", "repositories"
+    );
+
+    /**
+     * Path segments followed by a single name.
+     */
+    private static final Set<String> NAMED = Set.of(
+        "users", "orgs", "projects", "workspaces", "groups"
+    );
+
+    /**
+     * JsonResources delegate.
+     */
+    private final JsonResources delegate;
+
+    /**
+     * Where the measurements go.
+     */
+    private final ResourcesMeter meter;
+
+    /**
+     * Ctor. The measurements are ignored.
+     * @param delegate JsonResources delegate.
+     */
+    public MeteredJsonResources(final JsonResources delegate) {
+        this(delegate, new ResourcesMeter.NoOp());
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param meter Where the measurements go.
+     */
+    public MeteredJsonResources(
+        final JsonResources delegate,
+        final ResourcesMeter meter
+    ) {
+        this.delegate = delegate;
+        this.meter = meter;
+    }
+
+    @Override
+    public JsonResources authenticated(final AccessToken accessToken) {
+        return new MeteredJsonResources(
+            this.delegate.authenticated(accessToken),
+            this.meter
+        );
+    }
+
+    @Override
+    public Resource get(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.metered(
+            "GET", uri, null, () -> this.delegate.get(uri, headers)
+        );
+    }
+
+    @Override
+    public Resource post(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.metered(
+            "POST", uri, body, () -> this.delegate.post(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource patch(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.metered(
+            "PATCH", uri, body, () -> this.delegate.patch(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource put(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.metered(
+            "PUT", uri, body, () -> this.delegate.put(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource delete(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.metered(
+            "DELETE", uri, body,
+            () -> this.delegate.delete(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.meteredAsync(
+            "GET", uri, null, () -> this.delegate.getAsync(uri, headers)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.meteredAsync(
+            "POST", uri, body,
+            () -> this.delegate.postAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.meteredAsync(
+            "PATCH", uri, body,
+            () -> this.delegate.patchAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.meteredAsync(
+            "PUT", uri, body,
+            () -> this.delegate.putAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.meteredAsync(
+            "DELETE", uri, body,
+            () -> this.delegate.deleteAsync(uri, headers, body)
+        );
+    }
+
+    /**
+     * URI template of the given URI.
+     * @param uri URI.
+     * @return String.
+     */
+    static String template(final URI uri) {
+        final String path = uri.getRawPath();
+        final StringBuilder template = new StringBuilder();
+        if (path != null && !path.isEmpty()) {
+            final String[] segments = path.split("/", -1);
+            int names = 0;
+            String kind = "";
+            for (int idx = 1; idx < segments.length; ++idx) {
+                final String segment = segments[idx];
+                template.append('/');
+                if (names > 0 && !segment.isEmpty()) {
+                    template.append(MeteredJsonResources.name(kind, names));
+                    names = names - 1;
+                } else if (segment.matches("\\d+")) {
+                    template.append("{n}");
+                } else if (segment.matches("[0-9a-f]{40}")) {
+                    template.append("{sha}");
+                } else {
+                    template.append(segment);
+                    kind = segment;
+                    if (REPOS.contains(segment)) {
+                        names = 2;
+                    } else if (NAMED.contains(segment)) {
+                        names = 1;
+                    }
+                }
+            }
+        }
+        return template.toString();
+    }
+
+    /**
+     * Make the call and measure it.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @param body Request body, null if none.
+     * @param call Call to the delegate.
+     * @return Resource.
+     */
+    private Resource metered(
+        final String method,
+        final URI uri,
+        final JsonValue body,
+        final Supplier<Resource> call
+    ) {
+        final long start = System.nanoTime();
+        final Resource resource;
+        try {
+            resource = call.get();
+        } catch (final IllegalStateException ex) {
+            this.record(method, uri, body, null, start);
+            throw ex;
+        }
+        this.record(method, uri, body, resource, start);
+        return resource;
+    }
+
+    /**
+     * Make the async call and measure it.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @param body Request body, null if none.
+     * @param call Call to the delegate.
+     * @return Future Resource.
+     */
+    private CompletableFuture<Resource> meteredAsync(
+        final String method,
+        final URI uri,
+        final JsonValue body,
+        final Supplier<CompletableFuture<Resource>> call
+    ) {
+        final long start = System.nanoTime();
+        return call.get().whenComplete(
+            (resource, error) -> this.record(
+                method, uri, body, resource, start
+            )
+        );
+    }
+
+    /**
+     * Send a measurement to the meter.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @param body Request body, null if none.
+     * @param resource Response, null if the call failed.
+     * @param start When the call started (System.nanoTime()).
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    private void record(
+        final String method,
+        final URI uri,
+        final JsonValue body,
+        final Resource resource,
+        final long start
+    ) {
+        final Duration latency = Duration.ofNanos(System.nanoTime() - start);
+        int status = 0;
+        long received = -1;
+        if (resource != null) {
+            status = resource.statusCode();
+            final List<String> length = resource.header("Content-Length");
+            if (!length.isEmpty()) {
+                try {
+                    received = Long.parseLong(length.get(0).trim());
+                } catch (final NumberFormatException ex) {
+                    received = -1;
+                }
+            }
+        }
+        long sent = 0;
+        if (body != null && body != JsonValue.NULL) {
+            sent = body.toString().getBytes(StandardCharsets.UTF_8).length;
+        }
+        this.meter.record(
+            uri.getHost(),
+            method,
+            MeteredJsonResources.template(uri),
+            status,
+            latency,
+            received,
+            sent
+        );
+    }
+
+    /**
+     * Placeholder of a name in the URI template.
+     * @param kind The segment before the name(s), e.g. repos.
+     * @param left How many names are left after this one.
+     * @return String.
+     */
+    private static String name(final String kind, final int left) {
+        final String name;
+        if (REPOS.contains(kind) && left == 2) {
+            name = "{owner}";
+        } else if (REPOS.contains(kind)) {
+            name = "{repo}";
+        } else {
+            name = "{" + kind.substring(0, kind.length() - 1) + "}";
+        }
+        return name;
+    }
+}
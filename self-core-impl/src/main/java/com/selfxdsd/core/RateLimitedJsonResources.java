@@ -0,0 +1,502 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * JSON Resources which keep track of the provider's rate limit
+ * (X-RateLimit-* headers for Github, RateLimit-* headers for Gitlab),
+ * per access token and per rate limit resource (core, search etc).
+ * <br/>
+ * When the remaining budget drops under 10% of the limit, the requests are
+ * paced evenly until the limit resets. When the budget is exhausted, the
+ * requests wait for the reset, unless that is too far in the future
+ * (or past the current {@link Deadline}), in which case they fail fast
+ * with IllegalStateException, before reaching the provider.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class RateLimitedJsonResources implements JsonResources {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        RateLimitedJsonResources.class
+    );
+
+    /**
+     * Budgets shared by all the instances created with the default ctor.
+     * A budget unused for an hour is dropped: its window has reset
+     * anyway.
+     */
+    private static final Registry<Budget> SHARED = new Registry<>(
+        Duration.ofHours(1)
+    );
+
+    /**
+     * Identity of unauthenticated requests.
+     */
+    private static final String ANONYMOUS = "anonymous";
+
+    /**
+     * JsonResources delegate.
+     */
+    private final JsonResources delegate;
+
+    /**
+     * Identity of the access token (its digest).
+     */
+    private final String identity;
+
+    /**
+     * Budgets, by host, identity and rate limit resource.
+     */
+    private final Registry<Budget> budgets;
+
+    /**
+     * Maximum time a request is allowed to wait for the budget.
+     */
+    private final Duration maxWait;
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     */
+    public RateLimitedJsonResources(final JsonResources delegate) {
+        this(delegate, Duration.ofMinutes(1));
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param maxWait Maximum time a request is allowed to wait
+     *  for the budget.
+     */
+    public RateLimitedJsonResources(
+        final JsonResources delegate,
+        final Duration maxWait
+    ) {
+        this(delegate, ANONYMOUS, SHARED, maxWait);
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param identity Identity of the access token (its digest).
+     * @param budgets Budgets, by host, identity and rate limit resource.
+     * @param maxWait Maximum time a request is allowed to wait
+     *  for the budget.
+     */
+    RateLimitedJsonResources(
+        final JsonResources delegate,
+        final String identity,
+        final Registry<Budget> budgets,
+        final Duration maxWait
+    ) {
+        this.delegate = delegate;
+        this.identity = identity;
+        this.budgets = budgets;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public JsonResources authenticated(final AccessToken accessToken) {
+        return new RateLimitedJsonResources(
+            this.delegate.authenticated(accessToken),
+            AccessToken.digest(accessToken),
+            this.budgets,
+            this.maxWait
+        );
+    }
+
+    /**
+     * Remaining requests in the current rate limit window, for the
+     * rate limit resource which the given URI counts against.
+     * @param uri URI.
+     * @return Remaining requests, empty if we don't know it yet.
+     */
+    public OptionalLong remaining(final URI uri) {
+        return this.budget(uri, null).remaining();
+    }
+
+    @Override
+    public Resource get(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.paced(uri, () -> this.delegate.get(uri, headers));
+    }
+
+    @Override
+    public Resource post(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.paced(uri, () -> this.delegate.post(uri, headers, body));
+    }
+
+    @Override
+    public Resource patch(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.paced(
+            uri, () -> this.delegate.patch(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource put(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.paced(uri, () -> this.delegate.put(uri, headers, body));
+    }
+
+    @Override
+    public Resource delete(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.paced(
+            uri, () -> this.delegate.delete(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.pacedAsync(
+            uri, res -> res.getAsync(uri, headers)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.pacedAsync(
+            uri, res -> res.postAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.pacedAsync(
+            uri, res -> res.patchAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.pacedAsync(
+            uri, res -> res.putAsync(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.pacedAsync(
+            uri, res -> res.deleteAsync(uri, headers, body)
+        );
+    }
+
+    /**
+     * Wait for the budget, make the request and update the budget from
+     * the response headers.
+     * @param uri URI.
+     * @param request Request to the delegate.
+     * @return Resource.
+     */
+    private Resource paced(final URI uri, final Supplier<Resource> request) {
+        final long delay = this.delay(uri);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                    "Interrupted while waiting for the rate limit of ["
+                    + uri + "]",
+                    ex
+                );
+            }
+        }
+        return this.updated(uri, request.get());
+    }
+
+    /**
+     * Wait for the budget (without blocking), make the request and
+     * update the budget from the response headers.
+     * @param uri URI.
+     * @param request Request to the delegate.
+     * @return Future Resource.
+     */
+    private CompletableFuture<Resource> pacedAsync(
+        final URI uri,
+        final Function<JsonResources, CompletableFuture<Resource>> request
+    ) {
+        final long delay = this.delay(uri);
+        final CompletableFuture<Resource> resource;
+        if (delay > 0) {
+            resource = CompletableFuture
+                .runAsync(
+                    () -> { },
+                    CompletableFuture.delayedExecutor(
+                        delay, TimeUnit.MILLISECONDS
+                    )
+                )
+                .thenCompose(nothing -> request.apply(this.delegate));
+        } else {
+            resource = request.apply(this.delegate);
+        }
+        return resource.thenApply(res -> this.updated(uri, res));
+    }
+
+    /**
+     * How long should the request to the given URI wait for the budget.
+     * @param uri URI.
+     * @return Milliseconds.
+     * @throws IllegalStateException If it should wait longer than allowed
+     *  or longer than the time left until the current {@link Deadline}.
+     *  The rejected request does not take anything from the budget.
+     */
+    private long delay(final URI uri) {
+        final Budget budget = this.budget(uri, null);
+        long allowed = this.maxWait.toMillis();
+        final Duration left = Deadline.current().remaining();
+        if (left.compareTo(this.maxWait) < 0) {
+            allowed = left.toMillis();
+        }
+        final long delay = budget.acquire(System.currentTimeMillis(), allowed);
+        if (delay > this.maxWait.toMillis()) {
+            throw new IllegalStateException(
+                "Rate limit exhausted for [" + uri + "], it resets at "
+                + budget.reset() + ". Not waiting for it."
+            );
+        }
+        if (delay > allowed) {
+            throw new IllegalStateException(
+                "Waiting " + delay + "ms for the rate limit of [" + uri
+                + "] would go past the deadline. Not waiting for it."
+            );
+        }
+        if (delay > 0) {
+            LOG.debug("Waiting {}ms for the rate limit of {}", delay, uri);
+        }
+        return delay;
+    }
+
+    /**
+     * Update the budget from the response headers.
+     * @param uri Requested URI.
+     * @param resource Response.
+     * @return The same Resource.
+     */
+    private Resource updated(final URI uri, final Resource resource) {
+        final ResponseHeaders headers = new ResponseHeaders(
+            resource.headers()
+        );
+        final OptionalLong remaining = headers.rateLimitRemaining();
+        final OptionalLong reset = headers.rateLimitReset();
+        if (remaining.isPresent() && reset.isPresent()) {
+            this.budget(uri, headers.rateLimitResource()).update(
+                remaining.getAsLong(),
+                headers.rateLimitLimit().orElse(-1),
+                reset.getAsLong()
+            );
+        }
+        return resource;
+    }
+
+    /**
+     * The budget to which a request counts.
+     * @param uri URI.
+     * @param resource Rate limit resource, if the provider told us;
+     *  null if it should be deduced from the URI.
+     * @return Budget.
+     */
+    private Budget budget(final URI uri, final String resource) {
+        final String name;
+        if (resource != null) {
+            name = resource;
+        } else if (uri.getPath() == null
+            || !uri.getPath().contains("/search/")) {
+            name = "core";
+        } else if (uri.getPath().contains("/search/code")) {
+            name = "code_search";
+        } else {
+            name = "search";
+        }
+        return this.budgets.get(
+            uri.getHost() + "|" + this.identity + "|" + name, Budget::new
+        );
+    }
+
+    /**
+     * Rate limit budget of an access token, for one rate limit resource.
+     */
+    static final class Budget {
+
+        /**
+         * Remaining requests, -1 if unknown.
+         */
+        private long remaining = -1;
+
+        /**
+         * Limit of the window, -1 if unknown.
+         */
+        private long limit = -1;
+
+        /**
+         * When the window resets (epoch seconds).
+         */
+        private long resetAt;
+
+        /**
+         * Earliest moment (epoch millis) of the next paced request.
+         */
+        private long next;
+
+        /**
+         * Reserve one request from the budget, however long it has to
+         * wait.
+         * @param now Current time (epoch millis).
+         * @return How long (millis) should the request wait.
+         */
+        long acquire(final long now) {
+            return this.acquire(now, Long.MAX_VALUE);
+        }
+
+        /**
+         * Reserve one request from the budget, unless it would have to
+         * wait longer than allowed. Then nothing is reserved.
+         * @param now Current time (epoch millis).
+         * @param allowed How long (millis) can the request wait.
+         * @return How long (millis) should the request wait.
+         */
+        synchronized long acquire(final long now, final long allowed) {
+            final long window = this.resetAt * 1000 - now;
+            final long delay;
+            if (this.remaining < 0) {
+                delay = 0;
+            } else if (window <= 0) {
+                this.remaining = -1;
+                this.next = 0;
+                delay = 0;
+            } else if (this.remaining == 0) {
+                delay = window;
+            } else if (this.limit > 0 && this.remaining * 10 < this.limit) {
+                final long start = Math.max(now, this.next);
+                delay = start - now;
+                if (delay <= allowed) {
+                    this.next = start + window / this.remaining;
+                    this.remaining = this.remaining - 1;
+                }
+            } else {
+                this.remaining = this.remaining - 1;
+                delay = 0;
+            }
+            return delay;
+        }
+
+        /**
+         * Update the budget with what the provider told us. A new window
+         * forgets the pacing of the old one.
+         * @param left Remaining requests.
+         * @param max Limit of the window, -1 if unknown.
+         * @param reset When the window resets (epoch seconds).
+         */
+        synchronized void update(
+            final long left,
+            final long max,
+            final long reset
+        ) {
+            if (reset != this.resetAt) {
+                this.next = 0;
+            }
+            this.remaining = left;
+            this.limit = max;
+            this.resetAt = reset;
+        }
+
+        /**
+         * Remaining requests.
+         * @return Remaining requests, empty if unknown.
+         */
+        synchronized OptionalLong remaining() {
+            final OptionalLong left;
+            if (this.remaining < 0) {
+                left = OptionalLong.empty();
+            } else {
+                left = OptionalLong.of(this.remaining);
+            }
+            return left;
+        }
+
+        /**
+         * When the window resets.
+         * @return Instant.
+         */
+        synchronized Instant reset() {
+            return Instant.ofEpochSecond(this.resetAt);
+        }
+    }
+}
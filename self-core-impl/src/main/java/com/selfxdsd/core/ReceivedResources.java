@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+import com.selfxdsd.api.storage.JsonStorage;
+import com.selfxdsd.api.storage.JsonStorage.Stats.Outcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.json.JsonObject;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resources received from the provider in another way than as a response
+ * to a GET (e.g. embedded in a webhook payload), pushed into the
+ * {@link JsonStorage} used by {@link ConditionalJsonResources}, so the
+ * GETs which follow are served without asking the provider again.
+ * <br/>
+ * They go into the shared partition of the storage, so they are served
+ * to every identity: only public resources should be stored.
+ * <br/>
+ * The resource is stored as if it came with
+ * <code>Cache-Control: public, max-age</code> (the given window) and with its
+ * update date as <code>Last-Modified</code>: it is fresh for the window
+ * and then revalidated with If-Modified-Since. A resource is not stored
+ * if the one already stored was modified later (webhooks might be
+ * delivered out of order).
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class ReceivedResources {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        ReceivedResources.class
+    );
+
+    /**
+     * Json storage.
+     */
+    private final JsonStorage jsonStorage;
+
+    /**
+     * How long the received resources are fresh.
+     */
+    private final Duration window;
+
+    /**
+     * Ctor. Received resources are fresh for one minute.
+     * @param jsonStorage Json storage.
+     */
+    public ReceivedResources(final JsonStorage jsonStorage) {
+        this(jsonStorage, Duration.ofMinutes(1));
+    }
+
+    /**
+     * Ctor.
+     * @param jsonStorage Json storage.
+     * @param window How long the received resources are fresh.
+     */
+    public ReceivedResources(
+        final JsonStorage jsonStorage,
+        final Duration window
+    ) {
+        this.jsonStorage = jsonStorage;
+        this.window = window;
+    }
+
+    /**
+     * Store a received resource.
+     * @param uri Canonical API URI of the resource (the one it is GET from).
+     * @param json The resource's JSON, as the GET would return it.
+     * @param updated When was the resource last updated.
+     * @return True if it was stored, false if a newer one is already stored.
+     */
+    public boolean store(
+        final URI uri,
+        final JsonObject json,
+        final Instant updated
+    ) {
+        final boolean newer = this.newer(uri, updated);
+        if (newer) {
+            LOG.debug("Storing received resource {}", uri);
+            this.jsonStorage.storeResource(
+                new CompactResource(
+                    CachedResource.fromResource(
+                        uri,
+                        new JsonResources.JsonResponse(
+                            HttpURLConnection.HTTP_OK,
+                            json,
+                            this.headers(updated)
+                        )
+                    )
+                )
+            );
+            final JsonStorage.Stats stats = this.jsonStorage.stats();
+            if (stats != null) {
+                stats.record(uri, Outcome.STORED);
+            }
+        } else {
+            LOG.debug(
+                "Received resource {} is older than the stored one", uri
+            );
+        }
+        return newer;
+    }
+
+    /**
+     * Response headers the received resource is stored with.
+     * @param updated When was the resource last updated.
+     * @return Headers.
+     */
+    private Map<String, List<String>> headers(final Instant updated) {
+        return Map.of(
+            "Cache-Control",
+            List.of("public, max-age=" + this.window.toSeconds()),
+            "Last-Modified",
+            List.of(
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    updated.atOffset(ZoneOffset.UTC)
+                )
+            )
+        );
+    }
+
+    /**
+     * Is the received resource newer than the stored one (if any)?
+     * @param uri URI.
+     * @param updated When was the received resource last updated.
+     * @return True or false.
+     */
+    private boolean newer(final URI uri, final Instant updated) {
+        final CachedResource stored = this.jsonStorage.getResource(uri);
+        boolean newer = true;
+        if (stored != null && stored.lastModified() != null) {
+            try {
+                newer = !Instant.from(
+                    DateTimeFormatter.RFC_1123_DATE_TIME.parse(
+                        stored.lastModified()
+                    )
+                ).isAfter(updated);
+            } catch (final DateTimeParseException ex) {
+                LOG.debug("Unparseable Last-Modified of {}", uri);
+            }
+        }
+        return newer;
+    }
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON Resources which record every request/response pair to an on-disk
+ * corpus, to be replayed later with {@link ReplayingJsonResources}.
+ * <br/>
+ * The corpus is a file with one JSON object per line:
+ * <pre>
+ * {"method":"GET","uri":"...","status":200,"latency":120,
+ *  "headers":{"ETag":["..."]},"body":"...","request":"..."}
+ * </pre>
+ * If the file name ends with .gz, each entry is appended as a gzip member
+ * (a multi-member gzip file is still one valid gzip file).
+ * Failed calls (no response) are not recorded.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class RecordingJsonResources implements JsonResources {
+
+    /**
+     * JsonResources delegate.
+     */
+    private final JsonResources delegate;
+
+    /**
+     * Corpus file.
+     */
+    private final Path corpus;
+
+    /**
+     * Lock for writing in the corpus, shared with the authenticated
+     * copies of this instance.
+     */
+    private final Object lock;
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param corpus Corpus file, created if missing.
+     */
+    public RecordingJsonResources(
+        final JsonResources delegate,
+        final Path corpus
+    ) {
+        this(delegate, corpus, new Object());
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param corpus Corpus file.
+     * @param lock Lock for writing in the corpus.
+     */
+    private RecordingJsonResources(
+        final JsonResources delegate,
+        final Path corpus,
+        final Object lock
+    ) {
+        this.delegate = delegate;
+        this.corpus = corpus;
+        this.lock = lock;
+    }
+
+    @Override
+    public JsonResources authenticated(final AccessToken accessToken) {
+        return new RecordingJsonResources(
+            this.delegate.authenticated(accessToken),
+            this.corpus,
+            this.lock
+        );
+    }
+
+    @Override
+    public Resource get(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        final long start = System.nanoTime();
+        return this.recorded(
+            "GET", uri, null, start, this.delegate.get(uri, headers)
+        );
+    }
+
+    @Override
+    public Resource post(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        final long start = System.nanoTime();
+        return this.recorded(
+            "POST", uri, body, start, this.delegate.post(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource patch(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        final long start = System.nanoTime();
+        return this.recorded(
+            "PATCH", uri, body, start,
+            this.delegate.patch(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource put(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        final long start = System.nanoTime();
+        return this.recorded(
+            "PUT", uri, body, start, this.delegate.put(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource delete(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        final long start = System.nanoTime();
+        return this.recorded(
+            "DELETE", uri, body, start,
+            this.delegate.delete(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        final long start = System.nanoTime();
+        return this.delegate.getAsync(uri, headers).thenApply(
+            resource -> this.recorded("GET", uri, null, start, resource)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        final long start = System.nanoTime();
+        return this.delegate.postAsync(uri, headers, body).thenApply(
+            resource -> this.recorded("POST", uri, body, start, resource)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        final long start = System.nanoTime();
+        return this.delegate.patchAsync(uri, headers, body).thenApply(
+            resource -> this.recorded("PATCH", uri, body, start, resource)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        final long start = System.nanoTime();
+        return this.delegate.putAsync(uri, headers, body).thenApply(
+            resource -> this.recorded("PUT", uri, body, start, resource)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        final long start = System.nanoTime();
+        return this.delegate.deleteAsync(uri, headers, body).thenApply(
+            resource -> this.recorded("DELETE", uri, body, start, resource)
+        );
+    }
+
+    /**
+     * Append the request/response pair to the corpus.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @param body Request body, null if none.
+     * @param start When the call started (System.nanoTime()).
+     * @param resource Response.
+     * @return The same Resource.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    private Resource recorded(
+        final String method,
+        final URI uri,
+        final JsonValue body,
+        final long start,
+        final Resource resource
+    ) {
+        final JsonObjectBuilder headers = Json.createObjectBuilder();
+        for (final Map.Entry<String, List<String>> header
+            : resource.headers().entrySet()) {
+            final JsonArrayBuilder values = Json.createArrayBuilder();
+            header.getValue().forEach(values::add);
+            headers.add(header.getKey(), values);
+        }
+        final JsonObjectBuilder entry = Json.createObjectBuilder()
+            .add("method", method)
+            .add("uri", uri.toString())
+            .add("status", resource.statusCode())
+            .add("latency", (System.nanoTime() - start) / 1_000_000)
+            .add("headers", headers)
+            .add("body", resource.toString());
+        if (body != null) {
+            entry.add("request", body.toString());
+        }
+        final byte[] line = (entry.build().toString() + "\n")
+            .getBytes(StandardCharsets.UTF_8);
+        synchronized (this.lock) {
+            try (
+                final OutputStream out = this.output()
+            ) {
+                out.write(line);
+            } catch (final IOException ex) {
+                throw new IllegalStateException(
+                    "Could not record " + method + " " + uri
+                    + " in " + this.corpus,
+                    ex
+                );
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Stream appending to the corpus.
+     * @return OutputStream.
+     * @throws IOException If the corpus cannot be opened.
+     */
+    private OutputStream output() throws IOException {
+        final OutputStream file = Files.newOutputStream(
+            this.corpus,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND
+        );
+        final OutputStream output;
+        if (this.corpus.toString().endsWith(".gz")) {
+            output = new GZIPOutputStream(file);
+        } else {
+            output = file;
+        }
+        return output;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide state of the JsonResources decorators (rate limit budgets,
+ * concurrency limits, latencies), by host and identity. The entries
+ * which were not used for a while are dropped, so the tokens which are
+ * gone (users who left, rotated tokens) do not pile up.
+ * @param <V> Type of the values.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+final class Registry<V> {
+
+    /**
+     * Entries, by key.
+     */
+    private final Map<String, Slot<V>> slots = new ConcurrentHashMap<>();
+
+    /**
+     * How long can an entry stay unused (millis).
+     */
+    private final long idle;
+
+    /**
+     * When were the idle entries last dropped (epoch millis).
+     */
+    private final AtomicLong swept;
+
+    /**
+     * Ctor.
+     * @param idle How long can an entry stay unused.
+     */
+    Registry(final Duration idle) {
+        this.idle = idle.toMillis();
+        this.swept = new AtomicLong(System.currentTimeMillis());
+    }
+
+    /**
+     * The value under the given key, created if there is none.
+     * @param key Key.
+     * @param created Value to store if there is none.
+     * @return Value.
+     */
+    V get(final String key, final Supplier<V> created) {
+        final long now = System.currentTimeMillis();
+        final long last = this.swept.get();
+        if (now - last > this.idle && this.swept.compareAndSet(last, now)) {
+            this.slots.values().removeIf(slot -> now - slot.used > this.idle);
+        }
+        final Slot<V> slot = this.slots.computeIfAbsent(
+            key, name -> new Slot<>(created.get())
+        );
+        slot.used = now;
+        return slot.value;
+    }
+
+    /**
+     * Number of entries.
+     * @return Integer.
+     */
+    int size() {
+        return this.slots.size();
+    }
+
+    /**
+     * A value and when it was last used.
+     * @param <V> Type of the value.
+     */
+    private static final class Slot<V> {
+
+        /**
+         * Value.
+         */
+        private final V value;
+
+        /**
+         * When was the value last used (epoch millis).
+         */
+        private volatile long used;
+
+        /**
+         * Ctor.
+         * @param value Value.
+         */
+        Slot(final V value) {
+            this.value = value;
+            this.used = System.currentTimeMillis();
+        }
+    }
+}
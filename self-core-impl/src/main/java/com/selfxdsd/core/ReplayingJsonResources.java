@@ -0,0 +1,398 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * JSON Resources which serve the responses recorded by
+ * {@link RecordingJsonResources}, without making any HTTP call.
+ * <br/>
+ * The responses of the same method and URI are served in the order
+ * in which they were recorded; after the last one, it is served again.
+ * A request which was never recorded fails with IllegalStateException.
+ * <br/>
+ * The recorded latency can be simulated, scaled by a factor (0 means
+ * no latency, 1 means the recorded latency).
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class ReplayingJsonResources implements JsonResources {
+
+    /**
+     * Recorded responses, by "method uri".
+     */
+    private final Map<String, Recorded> recordings;
+
+    /**
+     * Latency factor.
+     */
+    private final double latency;
+
+    /**
+     * Ctor. No latency is simulated.
+     * @param corpus Corpus file.
+     */
+    public ReplayingJsonResources(final Path corpus) {
+        this(corpus, 0);
+    }
+
+    /**
+     * Ctor.
+     * @param corpus Corpus file.
+     * @param latency Latency factor: 0 means no latency, 1 means the
+     *  recorded latency, 2 means twice the recorded latency etc.
+     */
+    public ReplayingJsonResources(final Path corpus, final double latency) {
+        this(ReplayingJsonResources.read(corpus), latency);
+    }
+
+    /**
+     * Ctor.
+     * @param recordings Recorded responses, by "method uri".
+     * @param latency Latency factor.
+     */
+    private ReplayingJsonResources(
+        final Map<String, Recorded> recordings,
+        final double latency
+    ) {
+        this.recordings = recordings;
+        this.latency = latency;
+    }
+
+    @Override
+    public JsonResources authenticated(final AccessToken accessToken) {
+        return this;
+    }
+
+    @Override
+    public Resource get(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.replayed("GET", uri);
+    }
+
+    @Override
+    public Resource post(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.replayed("POST", uri);
+    }
+
+    @Override
+    public Resource patch(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.replayed("PATCH", uri);
+    }
+
+    @Override
+    public Resource put(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.replayed("PUT", uri);
+    }
+
+    @Override
+    public Resource delete(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.replayed("DELETE", uri);
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.replayedAsync("GET", uri);
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.replayedAsync("POST", uri);
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.replayedAsync("PATCH", uri);
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.replayedAsync("PUT", uri);
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.replayedAsync("DELETE", uri);
+    }
+
+    /**
+     * Serve the next recorded response, after the simulated latency.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @return Resource.
+     */
+    private Resource replayed(final String method, final URI uri) {
+        final JsonObject entry = this.next(method, uri);
+        final long delay = this.delay(entry);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                    "Interrupted while replaying " + method + " " + uri,
+                    ex
+                );
+            }
+        }
+        return ReplayingJsonResources.resource(entry);
+    }
+
+    /**
+     * Serve the next recorded response asynchronously, after the
+     * simulated latency, without blocking the caller.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @return Future Resource.
+     */
+    private CompletableFuture<Resource> replayedAsync(
+        final String method,
+        final URI uri
+    ) {
+        final JsonObject entry = this.next(method, uri);
+        final long delay = this.delay(entry);
+        final CompletableFuture<Resource> resource;
+        if (delay > 0) {
+            resource = CompletableFuture.supplyAsync(
+                () -> ReplayingJsonResources.resource(entry),
+                CompletableFuture.delayedExecutor(
+                    delay, TimeUnit.MILLISECONDS
+                )
+            );
+        } else {
+            resource = CompletableFuture.completedFuture(
+                ReplayingJsonResources.resource(entry)
+            );
+        }
+        return resource;
+    }
+
+    /**
+     * The next recorded entry for the request.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @return JsonObject.
+     */
+    private JsonObject next(final String method, final URI uri) {
+        final Recorded recorded = this.recordings.get(method + " " + uri);
+        if (recorded == null) {
+            throw new IllegalStateException(
+                "No recorded response for " + method + " " + uri
+            );
+        }
+        return recorded.next();
+    }
+
+    /**
+     * Simulated latency of the entry.
+     * @param entry Recorded entry.
+     * @return Milliseconds.
+     */
+    private long delay(final JsonObject entry) {
+        return (long) (entry.getJsonNumber("latency").longValue()
+            * this.latency);
+    }
+
+    /**
+     * Build the Resource from a recorded entry.
+     * @param entry Recorded entry.
+     * @return Resource.
+     */
+    private static Resource resource(final JsonObject entry) {
+        final Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (final Map.Entry<String, JsonValue> header
+            : entry.getJsonObject("headers").entrySet()) {
+            final List<String> values = new ArrayList<>();
+            header.getValue().asJsonArray().forEach(
+                value -> values.add(((JsonString) value).getString())
+            );
+            headers.put(header.getKey(), values);
+        }
+        return new JsonResources.JsonResponse(
+            entry.getInt("status"),
+            entry.getString("body"),
+            headers
+        );
+    }
+
+    /**
+     * Read the corpus.
+     * @param corpus Corpus file.
+     * @return Recorded responses, by "method uri".
+     */
+    private static Map<String, Recorded> read(final Path corpus) {
+        final Map<String, List<JsonObject>> entries = new HashMap<>();
+        try (
+            final BufferedReader lines = new BufferedReader(
+                new InputStreamReader(
+                    ReplayingJsonResources.input(corpus),
+                    StandardCharsets.UTF_8
+                )
+            )
+        ) {
+            String line = lines.readLine();
+            while (line != null) {
+                if (!line.isBlank()) {
+                    try (
+                        final JsonReader reader = Json.createReader(
+                            new StringReader(line)
+                        )
+                    ) {
+                        final JsonObject entry = reader.readObject();
+                        entries.computeIfAbsent(
+                            entry.getString("method") + " "
+                            + entry.getString("uri"),
+                            key -> new ArrayList<>()
+                        ).add(entry);
+                    }
+                }
+                line = lines.readLine();
+            }
+        } catch (final IOException ex) {
+            throw new IllegalStateException(
+                "Could not read the corpus " + corpus, ex
+            );
+        }
+        final Map<String, Recorded> recordings = new HashMap<>();
+        entries.forEach(
+            (key, recorded) -> recordings.put(key, new Recorded(recorded))
+        );
+        return recordings;
+    }
+
+    /**
+     * Stream reading the corpus.
+     * @param corpus Corpus file.
+     * @return InputStream.
+     * @throws IOException If the corpus cannot be opened.
+     */
+    private static InputStream input(final Path corpus) throws IOException {
+        final InputStream file = Files.newInputStream(corpus);
+        final InputStream input;
+        if (corpus.toString().endsWith(".gz")) {
+            input = new GZIPInputStream(file);
+        } else {
+            input = file;
+        }
+        return input;
+    }
+
+    /**
+     * Recorded responses of one request, served in order.
+     */
+    private static final class Recorded {
+
+        /**
+         * Recorded entries.
+         */
+        private final List<JsonObject> entries;
+
+        /**
+         * Index of the next entry.
+         */
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        /**
+         * Ctor.
+         * @param entries Recorded entries.
+         */
+        Recorded(final List<JsonObject> entries) {
+            this.entries = entries;
+        }
+
+        /**
+         * The next entry; the last one, once all were served.
+         * @return JsonObject.
+         */
+        JsonObject next() {
+            final int index = this.cursor.getAndUpdate(
+                idx -> Math.min(idx + 1, this.entries.size() - 1)
+            );
+            return this.entries.get(index);
+        }
+    }
+}
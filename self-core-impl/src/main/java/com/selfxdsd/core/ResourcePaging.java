@@ -76,6 +76,12 @@ import java.util.stream.StreamSupport;
  * <pre>
  *    res.get(https://api.github.com/users/john/repos)
  * </pre>
+ * Pages are requested with <code>Cache-Control: max-age=0</code>: with
+ * {@link ConditionalJsonResources}, each page is stored together with its
+ * ETag and "Link" header, and on the next iteration it is revalidated
+ * (If-None-Match), never served without asking. If a page was not
+ * modified, its stored body and next link are used, so an unchanged
+ * listing costs one 304 per page instead of a full download.
  * @author criske
  * @version $Id$
  * @since 0.0.84
@@ -170,7 +176,7 @@ interface ResourcePaging extends Iterable<Resource> {
                 LOG.debug("Fetching page from: {}", link);
                 final Resource resource = resources.get(
                     link,
-                    () -> Map.of("Cache-Control", List.of("no-cache"))
+                    () -> Map.of("Cache-Control", List.of("max-age=0"))
                 );
                 if (resource.statusCode() != HttpURLConnection.HTTP_OK) {
                     throw new IllegalStateException(
@@ -182,7 +188,9 @@ interface ResourcePaging extends Iterable<Resource> {
                         )
                     );
                 }
-                next = this.nextLink(resource.headers());
+                next = this.nextLink(
+                    new ResponseHeaders(resource.headers())
+                );
                 LOG.debug("Next page is: {}", next);
                 started = true;
                 return resource;
@@ -193,29 +201,17 @@ interface ResourcePaging extends Iterable<Resource> {
              * @param headers Headers.
              * @return Uri or null if link was not found.
              */
-            private URI nextLink(
-                final Map<String, List<String>> headers
-            ) {
-                List<String> links = headers.getOrDefault(
-                    "Link",
-                    headers.get("link")
-                );
-                final URI next;
-                if (links == null) {
-                    next = null;
-                } else {
-                    next = links
-                        .stream()
-                        .filter(value -> value.contains("rel=\"next\""))
-                        .map(value -> {
-                            final int start = value.indexOf('<') + 1;
-                            final int end = value.indexOf('>');
-                            return URI.create(value.substring(start, end));
-                        })
-                        .findFirst()
-                        .orElse(null);
-                }
-                return next;
+            private URI nextLink(final ResponseHeaders headers) {
+                return headers.links()
+                    .stream()
+                    .filter(value -> value.contains("rel=\"next\""))
+                    .map(value -> {
+                        final int start = value.indexOf('<') + 1;
+                        final int end = value.indexOf('>');
+                        return URI.create(value.substring(start, end));
+                    })
+                    .findFirst()
+                    .orElse(null);
             }
         }
     }
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sink for the measurements of the HTTP calls made by
+ * {@link MeteredJsonResources}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public interface ResourcesMeter {
+
+    /**
+     * Record an HTTP call.
+     * @param host Host.
+     * @param method HTTP method.
+     * @param template URI template (e.g. /repos/{owner}/{repo}/issues/{n}).
+     * @param status Status code, 0 if the call failed without a response.
+     * @param latency How long the call took.
+     * @param bytesIn Bytes received (Content-Length), -1 if unknown.
+     * @param bytesOut Bytes sent.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    void record(
+        String host,
+        String method,
+        String template,
+        int status,
+        Duration latency,
+        long bytesIn,
+        long bytesOut
+    );
+
+    /**
+     * Meter which ignores everything. This is the default.
+     */
+    final class NoOp implements ResourcesMeter {
+
+        @Override
+        public void record(
+            final String host,
+            final String method,
+            final String template,
+            final int status,
+            final Duration latency,
+            final long bytesIn,
+            final long bytesOut
+        ) {
+            //nothing to record.
+        }
+    }
+
+    /**
+     * Meter which aggregates the calls in memory, per host, method
+     * and URI template. Recording a call does not lock and does not
+     * allocate, except for the first call of an endpoint.
+     */
+    final class InMemory implements ResourcesMeter {
+
+        /**
+         * Endpoints, by "host method template".
+         */
+        private final Map<String, Endpoint> endpoints =
+            new ConcurrentHashMap<>();
+
+        @Override
+        public void record(
+            final String host,
+            final String method,
+            final String template,
+            final int status,
+            final Duration latency,
+            final long bytesIn,
+            final long bytesOut
+        ) {
+            this.endpoints.computeIfAbsent(
+                host + " " + method + " " + template,
+                key -> new Endpoint()
+            ).record(status, latency, bytesIn, bytesOut);
+        }
+
+        /**
+         * Measurements so far, by "host method template".
+         * @return Unmodifiable map.
+         */
+        public Map<String, Endpoint> endpoints() {
+            return Collections.unmodifiableMap(this.endpoints);
+        }
+    }
+
+    /**
+     * Aggregated measurements of one endpoint.
+     */
+    final class Endpoint {
+
+        /**
+         * Upper bounds (millis) of the latency histogram buckets.
+         * The last bucket holds everything above the last bound.
+         */
+        private static final long[] BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500,
+            1000, 2000, 5000, 10_000, 30_000,
+        };
+
+        /**
+         * Latency histogram.
+         */
+        private final AtomicLongArray histogram = new AtomicLongArray(
+            BOUNDS.length + 1
+        );
+
+        /**
+         * Counts by status code.
+         */
+        private final Map<Integer, LongAdder> statuses =
+            new ConcurrentHashMap<>();
+
+        /**
+         * Bytes received.
+         */
+        private final LongAdder received = new LongAdder();
+
+        /**
+         * Bytes sent.
+         */
+        private final LongAdder sent = new LongAdder();
+
+        /**
+         * Record a call.
+         * @param status Status code.
+         * @param latency Latency.
+         * @param bytesIn Bytes received, -1 if unknown.
+         * @param bytesOut Bytes sent.
+         */
+        void record(
+            final int status,
+            final Duration latency,
+            final long bytesIn,
+            final long bytesOut
+        ) {
+            int bucket = Arrays.binarySearch(BOUNDS, latency.toMillis());
+            if (bucket < 0) {
+                bucket = -bucket - 1;
+            }
+            this.histogram.incrementAndGet(bucket);
+            this.statuses.computeIfAbsent(status, key -> new LongAdder())
+                .increment();
+            if (bytesIn > 0) {
+                this.received.add(bytesIn);
+            }
+            this.sent.add(bytesOut);
+        }
+
+        /**
+         * Number of calls.
+         * @return Long.
+         */
+        public long calls() {
+            long calls = 0;
+            for (int idx = 0; idx < this.histogram.length(); ++idx) {
+                calls = calls + this.histogram.get(idx);
+            }
+            return calls;
+        }
+
+        /**
+         * Number of calls answered with the given status.
+         * @param status Status code (0 for failed calls).
+         * @return Long.
+         */
+        public long calls(final int status) {
+            final LongAdder count = this.statuses.get(status);
+            long calls = 0;
+            if (count != null) {
+                calls = count.sum();
+            }
+            return calls;
+        }
+
+        /**
+         * Number of calls answered with 304 Not Modified, meaning the
+         * cached resource was still good.
+         * @return Long.
+         */
+        public long notModified() {
+            return this.calls(304);
+        }
+
+        /**
+         * Bytes received.
+         * @return Long.
+         */
+        public long bytesIn() {
+            return this.received.sum();
+        }
+
+        /**
+         * Bytes sent.
+         * @return Long.
+         */
+        public long bytesOut() {
+            return this.sent.sum();
+        }
+
+        /**
+         * Latency histogram: calls per bucket, by the bucket's upper bound
+         * in milliseconds (Long.MAX_VALUE for the last bucket).
+         * @return Map, ordered by bound.
+         */
+        public Map<Long, Long> histogram() {
+            final Map<Long, Long> histogram = new LinkedHashMap<>();
+            for (int idx = 0; idx < this.histogram.length(); ++idx) {
+                final long bound;
+                if (idx < BOUNDS.length) {
+                    bound = BOUNDS[idx];
+                } else {
+                    bound = Long.MAX_VALUE;
+                }
+                histogram.put(bound, this.histogram.get(idx));
+            }
+            return histogram;
+        }
+
+        /**
+         * Latency percentile, as the upper bound of the histogram bucket
+         * in which it falls.
+         * @param percentile Percentile, between 0 and 100.
+         * @return Latency; Duration.ZERO if there were no calls.
+         */
+        public Duration percentile(final double percentile) {
+            final long rank = (long) Math.ceil(this.calls() * percentile / 100);
+            long seen = 0;
+            long bound = 0;
+            for (int idx = 0; idx < this.histogram.length() && seen < rank;
+                ++idx) {
+                seen = seen + this.histogram.get(idx);
+                if (idx < BOUNDS.length) {
+                    bound = BOUNDS[idx];
+                } else {
+                    bound = Long.MAX_VALUE;
+                }
+            }
+            return Duration.ofMillis(bound);
+        }
+    }
+}
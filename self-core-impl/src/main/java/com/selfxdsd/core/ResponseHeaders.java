@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import java.net.http.HttpHeaders;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Read-only, case-insensitive view over the headers of an HTTP response.
+ * <br/>
+ * The values of the headers which are comma-separated lists (Link, Vary,
+ * Cache-Control etc.) are split by comma (HttpHeaders.map() does not do
+ * that) only when the header is read, so we do not copy and split every
+ * header of every response. The other headers, especially the dates
+ * (Last-Modified, Date, Expires, Retry-After), are returned as they came.
+ * It also offers accessors for the headers that
+ * we actually use: ETag, Link and the rate limit headers of Github
+ * (X-RateLimit-*) and Gitlab (RateLimit-*).
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ * @checkstyle LineLength (100 lines)
+ * @see <a href="https://docs.oracle.com/en/java/javase/11/docs/api/java.net.http/java/net/http/HttpHeaders.html">HttpHeaders.map() JavaDoc.</a>
+ */
+final class ResponseHeaders extends AbstractMap<String, List<String>> {
+
+    /**
+     * Headers whose values are comma-separated lists.
+     */
+    private static final Set<String> LISTS = ResponseHeaders.lists(
+        "Link", "Vary", "Cache-Control", "Pragma", "Allow", "Accept",
+        "Accept-Encoding", "Accept-Ranges", "Content-Encoding",
+        "Transfer-Encoding", "Connection", "Via",
+        "Access-Control-Allow-Headers", "Access-Control-Allow-Methods",
+        "Access-Control-Expose-Headers", "X-OAuth-Scopes",
+        "X-Accepted-OAuth-Scopes"
+    );
+
+    /**
+     * Original headers, with their values not split.
+     */
+    private final Map<String, List<String>> original;
+
+    /**
+     * Ctor.
+     * @param headers Headers of a JDK HttpResponse.
+     */
+    ResponseHeaders(final HttpHeaders headers) {
+        this(headers.map());
+    }
+
+    /**
+     * Ctor.
+     * @param original Original headers. Lookup is fast if this map is
+     *  already case-insensitive (as HttpHeaders.map() is), otherwise we
+     *  fall back to scanning its keys.
+     */
+    ResponseHeaders(final Map<String, List<String>> original) {
+        this.original = original;
+    }
+
+    @Override
+    public List<String> get(final Object name) {
+        List<String> values = null;
+        if (name instanceof String) {
+            values = this.original.get(name);
+            if (values == null) {
+                for (final Map.Entry<String, List<String>> header
+                    : this.original.entrySet()) {
+                    if (header.getKey().equalsIgnoreCase((String) name)) {
+                        values = header.getValue();
+                        break;
+                    }
+                }
+            }
+        }
+        final List<String> split;
+        if (values == null) {
+            split = null;
+        } else {
+            split = ResponseHeaders.split((String) name, values);
+        }
+        return split;
+    }
+
+    @Override
+    public boolean containsKey(final Object name) {
+        return this.get(name) != null;
+    }
+
+    @Override
+    public Set<Map.Entry<String, List<String>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, List<String>>> iterator() {
+                final Iterator<Map.Entry<String, List<String>>> entries =
+                    ResponseHeaders.this.original.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, List<String>> next() {
+                        final Map.Entry<String, List<String>> next =
+                            entries.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(
+                            next.getKey(),
+                            ResponseHeaders.split(
+                                next.getKey(), next.getValue()
+                            )
+                        );
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ResponseHeaders.this.original.size();
+            }
+        };
+    }
+
+    /**
+     * The ETag header.
+     * @return ETag or null if it is missing.
+     */
+    String etag() {
+        return this.first("ETag");
+    }
+
+    /**
+     * Values of the Link header (used for pagination).
+     * @return List of links, empty if the header is missing.
+     */
+    List<String> links() {
+        final List<String> links = this.get("Link");
+        final List<String> result;
+        if (links == null) {
+            result = Collections.emptyList();
+        } else {
+            result = links;
+        }
+        return result;
+    }
+
+    /**
+     * How many requests are left in the current rate limit window.
+     * Github sends X-RateLimit-Remaining, Gitlab sends RateLimit-Remaining.
+     * @return Remaining requests or empty, if the header is missing.
+     */
+    OptionalLong rateLimitRemaining() {
+        return this.number("X-RateLimit-Remaining", "RateLimit-Remaining");
+    }
+
+    /**
+     * When the current rate limit window resets (UTC epoch seconds).
+     * Github sends X-RateLimit-Reset, Gitlab sends RateLimit-Reset.
+     * @return Reset time or empty, if the header is missing.
+     */
+    OptionalLong rateLimitReset() {
+        return this.number("X-RateLimit-Reset", "RateLimit-Reset");
+    }
+
+    /**
+     * The size of the current rate limit window.
+     * Github sends X-RateLimit-Limit, Gitlab sends RateLimit-Limit.
+     * @return Limit or empty, if the header is missing.
+     */
+    OptionalLong rateLimitLimit() {
+        return this.number("X-RateLimit-Limit", "RateLimit-Limit");
+    }
+
+    /**
+     * The rate limit resource ("core", "search" etc) to which the request
+     * counted. Only Github sends it.
+     * @return Resource or null if the header is missing.
+     */
+    String rateLimitResource() {
+        return this.first("X-RateLimit-Resource");
+    }
+
+    /**
+     * First value of a header.
+     * @param name Header name.
+     * @return Value or null if the header is missing.
+     */
+    private String first(final String name) {
+        final List<String> values = this.get(name);
+        final String first;
+        if (values == null || values.isEmpty()) {
+            first = null;
+        } else {
+            first = values.get(0);
+        }
+        return first;
+    }
+
+    /**
+     * Numeric value of the first present header out of the given ones.
+     * @param names Header names, in order of preference.
+     * @return Number or empty if none is present or it's not a number.
+     */
+    private OptionalLong number(final String... names) {
+        OptionalLong number = OptionalLong.empty();
+        for (final String name : names) {
+            final String value = this.first(name);
+            if (value != null) {
+                try {
+                    number = OptionalLong.of(Long.parseLong(value));
+                } catch (final NumberFormatException ex) {
+                    number = OptionalLong.empty();
+                }
+                break;
+            }
+        }
+        return number;
+    }
+
+    /**
+     * Split the values of a header by comma, if it is a list.
+     * @param name Header name.
+     * @param values Values as they came in the response.
+     * @return Split values or the same values, if it is not a list.
+     */
+    private static List<String> split(
+        final String name,
+        final List<String> values
+    ) {
+        final List<String> split;
+        if (LISTS.contains(name)) {
+            split = new ArrayList<>(values.size());
+            for (final String value : values) {
+                for (final String part : value.split(",")) {
+                    split.add(part.trim());
+                }
+            }
+        } else {
+            split = values;
+        }
+        return split;
+    }
+
+    /**
+     * Case-insensitive set of header names.
+     * @param names Names.
+     * @return Set.
+     */
+    private static Set<String> lists(final String... names) {
+        final Set<String> lists = new TreeSet<>(
+            String.CASE_INSENSITIVE_ORDER
+        );
+        lists.addAll(List.of(names));
+        return Collections.unmodifiableSet(lists);
+    }
+}
@@ -0,0 +1,581 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * JSON Resources which retry the idempotent requests failed because of
+ * I/O errors, 5xx responses, 429 or a secondary rate limit (403 with
+ * Retry-After).
+ * <br/>
+ * The retries are delayed with jittered exponential backoff, or as
+ * long as the provider asks via the Retry-After header. Only GET
+ * requests are retried by default; PUT and DELETE are retried only if
+ * explicitly allowed. POST and PATCH are never retried. A retry which
+ * would have to wait past the current {@link Deadline} is not made: the
+ * last response (or error) is returned right away.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class RetryingJsonResources implements JsonResources {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        RetryingJsonResources.class
+    );
+
+    /**
+     * Statuses of responses which might be different if we try again.
+     */
+    private static final Set<Integer> TRANSIENT = Set.of(
+        429,
+        HttpURLConnection.HTTP_INTERNAL_ERROR,
+        HttpURLConnection.HTTP_BAD_GATEWAY,
+        HttpURLConnection.HTTP_UNAVAILABLE,
+        HttpURLConnection.HTTP_GATEWAY_TIMEOUT
+    );
+
+    /**
+     * Number of retries made so far by all the instances created with
+     * the public ctors (the providers build a new chain for each call, so
+     * the counters have to outlive it).
+     */
+    private static final AtomicLong RETRIED = new AtomicLong();
+
+    /**
+     * Milliseconds spent waiting between retries so far by all the
+     * instances created with the public ctors.
+     */
+    private static final AtomicLong WAITED = new AtomicLong();
+
+    /**
+     * JsonResources delegate.
+     */
+    private final JsonResources delegate;
+
+    /**
+     * Maximum number of retries for one call.
+     */
+    private final int retries;
+
+    /**
+     * Base delay of the exponential backoff.
+     */
+    private final Duration base;
+
+    /**
+     * Maximum delay between two attempts.
+     */
+    private final Duration max;
+
+    /**
+     * Should PUT and DELETE be retried as well?
+     */
+    private final boolean idempotentWrites;
+
+    /**
+     * Number of retries made so far.
+     */
+    private final AtomicLong retried;
+
+    /**
+     * Milliseconds spent waiting between retries so far.
+     */
+    private final AtomicLong waited;
+
+    /**
+     * Ctor. Up to 3 retries of GET requests, starting at 500ms and
+     * never waiting longer than 30s.
+     * @param delegate JsonResources delegate.
+     */
+    public RetryingJsonResources(final JsonResources delegate) {
+        this(
+            delegate, 3, Duration.ofMillis(500), Duration.ofSeconds(30), false
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param retries Maximum number of retries for one call.
+     * @param base Base delay of the exponential backoff.
+     * @param max Maximum delay between two attempts.
+     * @param idempotentWrites Should PUT and DELETE be retried as well?
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    public RetryingJsonResources(
+        final JsonResources delegate,
+        final int retries,
+        final Duration base,
+        final Duration max,
+        final boolean idempotentWrites
+    ) {
+        this(
+            delegate, retries, base, max, idempotentWrites,
+            RETRIED, WAITED
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param retries Maximum number of retries for one call.
+     * @param base Base delay of the exponential backoff.
+     * @param max Maximum delay between two attempts.
+     * @param idempotentWrites Should PUT and DELETE be retried as well?
+     * @param retried Number of retries made so far.
+     * @param waited Milliseconds spent waiting between retries so far.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    RetryingJsonResources(
+        final JsonResources delegate,
+        final int retries,
+        final Duration base,
+        final Duration max,
+        final boolean idempotentWrites,
+        final AtomicLong retried,
+        final AtomicLong waited
+    ) {
+        this.delegate = delegate;
+        this.retries = retries;
+        this.base = base;
+        this.max = max;
+        this.idempotentWrites = idempotentWrites;
+        this.retried = retried;
+        this.waited = waited;
+    }
+
+    @Override
+    public JsonResources authenticated(final AccessToken accessToken) {
+        return new RetryingJsonResources(
+            this.delegate.authenticated(accessToken),
+            this.retries,
+            this.base,
+            this.max,
+            this.idempotentWrites,
+            this.retried,
+            this.waited
+        );
+    }
+
+    /**
+     * Number of retries made so far, by all the instances created with
+     * the public ctors (and the ones obtained from them via
+     * authenticated(...)).
+     * @return Number of retries.
+     */
+    public long retries() {
+        return this.retried.get();
+    }
+
+    /**
+     * Time spent waiting between retries so far, by all the instances
+     * created with the public ctors (and the ones obtained from them via
+     * authenticated(...)).
+     * @return Duration.
+     */
+    public Duration waited() {
+        return Duration.ofMillis(this.waited.get());
+    }
+
+    @Override
+    public Resource get(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.retried(
+            "GET", uri, () -> this.delegate.get(uri, headers)
+        );
+    }
+
+    @Override
+    public Resource post(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.post(uri, headers, body);
+    }
+
+    @Override
+    public Resource patch(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.patch(uri, headers, body);
+    }
+
+    @Override
+    public Resource put(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.retried(
+            "PUT", uri, () -> this.delegate.put(uri, headers, body)
+        );
+    }
+
+    @Override
+    public Resource delete(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.retried(
+            "DELETE", uri, () -> this.delegate.delete(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return this.retriedAsync(
+            "GET",
+            uri,
+            () -> this.delegate.getAsync(uri, headers),
+            0,
+            Deadline.current()
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.postAsync(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.patchAsync(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.retriedAsync(
+            "PUT",
+            uri,
+            () -> this.delegate.putAsync(uri, headers, body),
+            0,
+            Deadline.current()
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.retriedAsync(
+            "DELETE",
+            uri,
+            () -> this.delegate.deleteAsync(uri, headers, body),
+            0,
+            Deadline.current()
+        );
+    }
+
+    /**
+     * Make the request, retrying it if needed.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @param request Request to the delegate.
+     * @return Resource.
+     */
+    private Resource retried(
+        final String method,
+        final URI uri,
+        final Supplier<Resource> request
+    ) {
+        Resource resource = null;
+        int attempt = 0;
+        while (resource == null) {
+            long delay;
+            try {
+                final Resource response = request.get();
+                delay = this.delay(
+                    method, response, null, attempt, Deadline.current()
+                );
+                if (delay < 0) {
+                    resource = response;
+                }
+            } catch (final IllegalStateException ex) {
+                delay = this.delay(
+                    method, null, ex, attempt, Deadline.current()
+                );
+                if (delay < 0) {
+                    throw ex;
+                }
+            }
+            if (resource == null) {
+                this.count(method, uri, delay, attempt);
+                try {
+                    Thread.sleep(delay);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(
+                        "Interrupted while retrying " + method
+                        + " " + uri,
+                        ex
+                    );
+                }
+                attempt = attempt + 1;
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Make the async request, retrying it if needed, without blocking
+     * between the attempts.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @param request Request to the delegate.
+     * @param attempt Number of the attempt, starting at 0.
+     * @param deadline Deadline of the caller (the attempts complete on
+     *  other threads, which do not see it).
+     * @return Future Resource.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    private CompletableFuture<Resource> retriedAsync(
+        final String method,
+        final URI uri,
+        final Supplier<CompletableFuture<Resource>> request,
+        final int attempt,
+        final Deadline deadline
+    ) {
+        return request.get().handle(
+            (response, error) -> {
+                Throwable cause = error;
+                if (cause instanceof CompletionException
+                    && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                final long delay = this.delay(
+                    method, response, cause, attempt, deadline
+                );
+                final CompletableFuture<Resource> next;
+                if (delay < 0 && cause == null) {
+                    next = CompletableFuture.completedFuture(response);
+                } else if (delay < 0) {
+                    next = CompletableFuture.failedFuture(cause);
+                } else {
+                    this.count(method, uri, delay, attempt);
+                    next = CompletableFuture
+                        .runAsync(
+                            () -> { },
+                            CompletableFuture.delayedExecutor(
+                                delay, TimeUnit.MILLISECONDS
+                            )
+                        )
+                        .thenCompose(
+                            nothing -> this.retriedAsync(
+                                method, uri, request, attempt + 1, deadline
+                            )
+                        );
+                }
+                return next;
+            }
+        ).thenCompose(Function.identity());
+    }
+
+    /**
+     * Record a retry.
+     * @param method HTTP method.
+     * @param uri URI.
+     * @param delay Delay before the retry (millis).
+     * @param attempt Number of the failed attempt, starting at 0.
+     */
+    private void count(
+        final String method,
+        final URI uri,
+        final long delay,
+        final int attempt
+    ) {
+        this.retried.incrementAndGet();
+        this.waited.addAndGet(delay);
+        LOG.warn(
+            "Retrying {} {} in {}ms (retry {} of {}).",
+            method, uri, delay, attempt + 1, this.retries
+        );
+    }
+
+    /**
+     * How long to wait before retrying.
+     * @param method HTTP method.
+     * @param response Response, null if the request failed.
+     * @param error Error, null if we have a response.
+     * @param attempt Number of the failed attempt, starting at 0.
+     * @param deadline Deadline of the call.
+     * @return Milliseconds, or -1 if the request should not be retried.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    private long delay(
+        final String method,
+        final Resource response,
+        final Throwable error,
+        final int attempt,
+        final Deadline deadline
+    ) {
+        long delay = -1;
+        final boolean allowed = "GET".equals(method)
+            || this.idempotentWrites;
+        if (allowed && attempt < this.retries) {
+            if (response != null) {
+                delay = this.delay(response, attempt);
+            } else if (RetryingJsonResources.transientError(error)) {
+                delay = this.backoff(attempt);
+            }
+        }
+        if (delay >= 0
+            && Duration.ofMillis(delay).compareTo(deadline.remaining()) >= 0) {
+            LOG.warn(
+                "Not retrying {} in {}ms, it would go past the deadline {}.",
+                method, delay, deadline.instant()
+            );
+            delay = -1;
+        }
+        return delay;
+    }
+
+    /**
+     * How long to wait before retrying, judging by the response.
+     * @param response Response.
+     * @param attempt Number of the failed attempt, starting at 0.
+     * @return Milliseconds, or -1 if it should not be retried.
+     */
+    private long delay(final Resource response, final int attempt) {
+        final int status = response.statusCode();
+        final long after = RetryingJsonResources.retryAfter(response);
+        final boolean retry = TRANSIENT.contains(status)
+            || status == HttpURLConnection.HTTP_FORBIDDEN && after >= 0;
+        long delay = -1;
+        if (retry && after < 0) {
+            delay = this.backoff(attempt);
+        } else if (retry && after <= this.max.toMillis()) {
+            delay = after;
+        }
+        return delay;
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half of the delay is fixed,
+     * the other half is random.
+     * @param attempt Number of the failed attempt, starting at 0.
+     * @return Milliseconds.
+     */
+    private long backoff(final int attempt) {
+        final long exp = Math.min(
+            this.max.toMillis(),
+            this.base.toMillis() << Math.min(attempt, 20)
+        );
+        final long half = exp / 2;
+        return half + ThreadLocalRandom.current().nextLong(exp - half + 1);
+    }
+
+    /**
+     * Is it an error which might go away if we try again?
+     * @param error Error.
+     * @return True or false.
+     */
+    private static boolean transientError(final Throwable error) {
+        boolean found = false;
+        Throwable cause = error;
+        while (cause != null && !found) {
+            found = cause instanceof IOException;
+            cause = cause.getCause();
+        }
+        return found;
+    }
+
+    /**
+     * Value of the Retry-After header (seconds or HTTP date).
+     * @param response Response.
+     * @return Milliseconds, or -1 if missing or unparsable.
+     */
+    private static long retryAfter(final Resource response) {
+        final List<String> values = response.header("Retry-After");
+        long after = -1;
+        if (!values.isEmpty()) {
+            final String value = values.get(0).trim();
+            try {
+                after = Math.max(0, Long.parseLong(value) * 1000);
+            } catch (final NumberFormatException ex) {
+                try {
+                    after = Math.max(
+                        0,
+                        Duration.between(
+                            ZonedDateTime.now(),
+                            ZonedDateTime.parse(
+                                value, DateTimeFormatter.RFC_1123_DATE_TIME
+                            )
+                        ).toMillis()
+                    );
+                } catch (final DateTimeParseException dex) {
+                    LOG.debug("Unparsable Retry-After: {}", value);
+                }
+            }
+        }
+        return after;
+    }
+}
@@ -24,6 +24,8 @@ package com.selfxdsd.core;
 
 import com.selfxdsd.api.storage.Storage;
 
+import java.time.Duration;
+
 /**
  * Self core implementation.
  * @author Mihai Andronache (amihaiemil@gmail.com)
@@ -41,4 +43,14 @@ public final class SelfCore extends BaseSelf {
         super(storage);
     }
 
+    /**
+     * Warm up the connections to the providers' APIs (Github, Gitlab
+     * and Bitbucket). Call it on startup, so the first events after
+     * a deploy don't pay for DNS, TCP and TLS setup.
+     * @return How long the warm-up took.
+     */
+    public Duration warmUp() {
+        return new WarmUp().perform();
+    }
+
 }
@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * JSON Resources which coalesce concurrent, identical GET requests:
+ * while a GET is in flight, the same GET (same URI, same headers, same
+ * access token) does not reach the delegate again, it waits for and
+ * receives the same Resource.
+ * <br/>
+ * Only GET is coalesced, all the other methods go straight to the
+ * delegate.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class SingleFlightJsonResources implements JsonResources {
+
+    /**
+     * GETs in flight, shared by all the instances created with the
+     * public ctor.
+     */
+    private static final Map<String, CompletableFuture<Resource>> SHARED =
+        new ConcurrentHashMap<>();
+
+    /**
+     * JsonResources delegate.
+     */
+    private final JsonResources delegate;
+
+    /**
+     * Identity of the access token (its digest).
+     */
+    private final String identity;
+
+    /**
+     * GETs in flight, by identity, URI and headers.
+     */
+    private final Map<String, CompletableFuture<Resource>> inflight;
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     */
+    public SingleFlightJsonResources(final JsonResources delegate) {
+        this(delegate, "anonymous", SHARED);
+    }
+
+    /**
+     * Ctor.
+     * @param delegate JsonResources delegate.
+     * @param identity Identity of the access token (its digest).
+     * @param inflight GETs in flight, by identity, URI and headers.
+     */
+    SingleFlightJsonResources(
+        final JsonResources delegate,
+        final String identity,
+        final Map<String, CompletableFuture<Resource>> inflight
+    ) {
+        this.delegate = delegate;
+        this.identity = identity;
+        this.inflight = inflight;
+    }
+
+    @Override
+    public JsonResources authenticated(final AccessToken accessToken) {
+        return new SingleFlightJsonResources(
+            this.delegate.authenticated(accessToken),
+            AccessToken.digest(accessToken),
+            this.inflight
+        );
+    }
+
+    @Override
+    public Resource get(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        final Map<String, List<String>> values = headers.get();
+        final String key = this.key(uri, values);
+        final CompletableFuture<Resource> flight = new CompletableFuture<>();
+        final CompletableFuture<Resource> existing = this.inflight
+            .putIfAbsent(key, flight);
+        final Resource resource;
+        if (existing == null) {
+            try {
+                resource = this.delegate.get(uri, () -> values);
+                flight.complete(resource);
+            } catch (final IllegalStateException ex) {
+                flight.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                this.inflight.remove(key, flight);
+                flight.completeExceptionally(
+                    new IllegalStateException(
+                        "Coalesced GET " + uri + " failed."
+                    )
+                );
+            }
+        } else {
+            resource = JsonResources.join(existing);
+        }
+        return resource;
+    }
+
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        final Map<String, List<String>> values = headers.get();
+        final String key = this.key(uri, values);
+        final CompletableFuture<Resource> flight = new CompletableFuture<>();
+        final CompletableFuture<Resource> existing = this.inflight
+            .putIfAbsent(key, flight);
+        if (existing == null) {
+            this.sent(uri, values, key, flight).whenComplete(
+                (resource, error) -> {
+                    this.inflight.remove(key, flight);
+                    if (error == null) {
+                        flight.complete(resource);
+                    } else {
+                        flight.completeExceptionally(error);
+                    }
+                }
+            );
+        }
+        final CompletableFuture<Resource> shared;
+        if (existing == null) {
+            shared = flight;
+        } else {
+            shared = existing;
+        }
+        return shared.thenApply(Function.identity());
+    }
+
+    @Override
+    public Resource post(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.post(uri, headers, body);
+    }
+
+    @Override
+    public Resource patch(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.patch(uri, headers, body);
+    }
+
+    @Override
+    public Resource put(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.put(uri, headers, body);
+    }
+
+    @Override
+    public Resource delete(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.delete(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.postAsync(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.patchAsync(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.putAsync(uri, headers, body);
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return this.delegate.deleteAsync(uri, headers, body);
+    }
+
+    /**
+     * Send the GET of a new flight. If the delegate throws instead of
+     * returning a future, the flight is failed and forgotten, so the
+     * next GETs do not wait on it forever.
+     * @param uri URI.
+     * @param values Request headers.
+     * @param key Key of the flight.
+     * @param flight The flight.
+     * @return Future Resource, failed if the delegate threw.
+     */
+    private CompletableFuture<Resource> sent(
+        final URI uri,
+        final Map<String, List<String>> values,
+        final String key,
+        final CompletableFuture<Resource> flight
+    ) {
+        CompletableFuture<Resource> call = null;
+        try {
+            call = this.delegate.getAsync(uri, () -> values);
+        } catch (final IllegalStateException ex) {
+            call = CompletableFuture.failedFuture(ex);
+        } finally {
+            if (call == null) {
+                this.inflight.remove(key, flight);
+                flight.completeExceptionally(
+                    new IllegalStateException(
+                        "Coalesced GET " + uri + " failed."
+                    )
+                );
+            }
+        }
+        return call;
+    }
+
+    /**
+     * Key of a GET request.
+     * @param uri URI.
+     * @param headers Request headers.
+     * @return String.
+     */
+    private String key(
+        final URI uri,
+        final Map<String, List<String>> headers
+    ) {
+        return this.identity + " " + uri + " " + headers;
+    }
+}
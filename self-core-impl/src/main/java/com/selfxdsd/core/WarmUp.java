@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm-up of the connections to the providers' APIs. One GET is sent to
+ * each base URI, in parallel, so DNS lookup, TCP and TLS handshakes
+ * happen before the first real event. The connections are then kept and
+ * reused by the client behind the given JsonResources (the shared client
+ * of {@link JsonResources.JdkHttp}, by default). The status of the
+ * responses does not matter and failures are only logged.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class WarmUp {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(WarmUp.class);
+
+    /**
+     * Resources to warm up.
+     */
+    private final JsonResources resources;
+
+    /**
+     * Base URIs of the APIs.
+     */
+    private final List<URI> uris;
+
+    /**
+     * How long to wait for the connections.
+     */
+    private final Duration timeout;
+
+    /**
+     * Ctor. Warms up the shared JDK client for Github, Gitlab and Bitbucket.
+     */
+    public WarmUp() {
+        this(
+            new JsonResources.JdkHttp(),
+            List.of(Github.BASE_URI, Gitlab.BASE_URI, Bitbucket.BASE_URI),
+            Duration.ofSeconds(10)
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param resources Resources to warm up.
+     * @param uris Base URIs of the APIs.
+     * @param timeout How long to wait for the connections.
+     */
+    public WarmUp(
+        final JsonResources resources,
+        final List<URI> uris,
+        final Duration timeout
+    ) {
+        this.resources = resources;
+        this.uris = uris;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Open the connections.
+     * @return How long the warm-up took.
+     */
+    public Duration perform() {
+        final long start = System.nanoTime();
+        final CompletableFuture<?>[] calls = this.uris.stream()
+            .map(this::open)
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(calls)
+            .completeOnTimeout(
+                null, this.timeout.toMillis(), TimeUnit.MILLISECONDS
+            )
+            .join();
+        final Duration took = Duration.ofNanos(System.nanoTime() - start);
+        final long completed = Arrays.stream(calls)
+            .filter(CompletableFuture::isDone)
+            .count();
+        if (completed == calls.length) {
+            LOG.info(
+                "Warmed up connections to {} in {}ms.",
+                this.uris, took.toMillis()
+            );
+        } else {
+            LOG.warn(
+                "Warm-up timed out after {}ms: {} of {} requests to {}"
+                + " completed.",
+                took.toMillis(), completed, calls.length, this.uris
+            );
+        }
+        return took;
+    }
+
+    /**
+     * Open the connection to a base URI.
+     * @param uri Base URI.
+     * @return Call, which never completes exceptionally.
+     */
+    private CompletableFuture<Void> open(final URI uri) {
+        final long start = System.nanoTime();
+        return CompletableFuture.completedFuture(uri).thenCompose(
+            base -> this.resources.getAsync(base, Map::of)
+        ).handle(
+            (resource, error) -> {
+                final long took = TimeUnit.NANOSECONDS.toMillis(
+                    System.nanoTime() - start
+                );
+                if (error == null) {
+                    LOG.debug(
+                        "Connected to {} in {}ms (HTTP {}).",
+                        uri, took, resource.statusCode()
+                    );
+                } else {
+                    LOG.warn(
+                        "Could not warm up the connection to {} after {}ms: "
+                        + "{}",
+                        uri, took, error.getMessage()
+                    );
+                }
+                return null;
+            }
+        );
+    }
+}
@@ -26,6 +26,8 @@ import com.selfxdsd.api.*;
 import com.selfxdsd.api.pm.Conversation;
 import com.selfxdsd.api.pm.Step;
 
+import java.time.Instant;
+
 /**
  * Conversation where the PM tries to understand the
  * received command.
@@ -79,6 +81,11 @@ public final class Understand implements Conversation {
                 public Project project() {
                     return event.project();
                 }
+
+                @Override
+                public Instant deadline() {
+                    return event.deadline();
+                }
             }
         );
     }
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core.projects;
+
+import com.selfxdsd.api.Comment;
+import com.selfxdsd.api.Commit;
+import com.selfxdsd.api.Event;
+import com.selfxdsd.api.Issue;
+import com.selfxdsd.api.Project;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Event which has to be resolved before a deadline.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class DeadlineEvent implements Event {
+
+    /**
+     * Original event.
+     */
+    private final Event origin;
+
+    /**
+     * Deadline.
+     */
+    private final Instant deadline;
+
+    /**
+     * Ctor.
+     * @param origin Original event.
+     * @param budget How much time is left, from now, to resolve it.
+     */
+    public DeadlineEvent(final Event origin, final Duration budget) {
+        this(origin, Instant.now().plus(budget));
+    }
+
+    /**
+     * Ctor.
+     * @param origin Original event.
+     * @param deadline Deadline.
+     */
+    public DeadlineEvent(final Event origin, final Instant deadline) {
+        this.origin = origin;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public String type() {
+        return this.origin.type();
+    }
+
+    @Override
+    public Issue issue() {
+        return this.origin.issue();
+    }
+
+    @Override
+    public Comment comment() {
+        return this.origin.comment();
+    }
+
+    @Override
+    public Commit commit() {
+        return this.origin.commit();
+    }
+
+    @Override
+    public Project project() {
+        return this.origin.project();
+    }
+
+    @Override
+    public Instant deadline() {
+        return this.deadline;
+    }
+}
@@ -23,10 +23,18 @@
 package com.selfxdsd.core.projects;
 
 import com.selfxdsd.api.*;
+import com.selfxdsd.core.ReceivedResources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.json.Json;
 import javax.json.JsonObject;
+import javax.json.JsonValue;
 import java.io.StringReader;
+import java.net.URI;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 
 /**
  * Webhook event coming from Github. This is the event which triggers
@@ -37,6 +45,13 @@ import java.io.StringReader;
  */
 final class GithubWebhookEvent implements Event {
 
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        GithubWebhookEvent.class
+    );
+
     /**
      * Project where the event happened.
      */
@@ -134,4 +149,40 @@ final class GithubWebhookEvent implements Event {
         return project;
     }
 
+    /**
+     * Store the issue and pull request objects embedded in the payload
+     * (they are current), under their API URI, so the GETs which follow
+     * are served from the cache. Only the objects of public repositories
+     * are stored, since they are shared by all the identities.
+     * @param received Received resources.
+     */
+    void store(final ReceivedResources received) {
+        final JsonValue repository = this.event.get("repository");
+        final boolean pub = repository instanceof JsonObject
+            && !((JsonObject) repository).getBoolean("private", true);
+        final List<String> names;
+        if (pub) {
+            names = List.of("issue", "pull_request");
+        } else {
+            names = List.of();
+        }
+        for (final String name : names) {
+            final JsonValue value = this.event.get(name);
+            if (value instanceof JsonObject) {
+                final JsonObject json = (JsonObject) value;
+                final String url = json.getString("url", "");
+                final String updated = json.getString("updated_at", "");
+                if (!url.isEmpty() && !updated.isEmpty()) {
+                    try {
+                        received.store(
+                            URI.create(url), json, Instant.parse(updated)
+                        );
+                    } catch (final DateTimeParseException ex) {
+                        LOG.warn("Unexpected updated_at of {}", url);
+                    }
+                }
+            }
+        }
+    }
+
 }
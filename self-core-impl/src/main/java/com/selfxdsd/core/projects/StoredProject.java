@@ -25,6 +25,7 @@ package com.selfxdsd.core.projects;
 import com.selfxdsd.api.*;
 import com.selfxdsd.api.exceptions.WalletAlreadyExistsException;
 import com.selfxdsd.api.storage.Storage;
+import com.selfxdsd.core.Deadline;
 import com.selfxdsd.core.Env;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
@@ -173,28 +174,16 @@ public final class StoredProject implements Project {
 
     @Override
     public void resolve(final Event event) {
-        final String type = event.type();
-        switch (type) {
-            case Event.Type.ACTIVATE:
-                this.projectManager.newProject(event);
-                break;
-            case Event.Type.NEW_ISSUE:
-                this.projectManager.newIssue(event);
-                break;
-            case Event.Type.REOPENED_ISSUE:
-                this.projectManager.reopenedIssue(event);
-                break;
-            case Event.Type.UNASSIGNED_TASKS:
-                this.projectManager.unassignedTasks(event);
-                break;
-            case Event.Type.ASSIGNED_TASKS:
-                this.projectManager.assignedTasks(event);
-                break;
-            case Event.Type.ISSUE_COMMENT:
-                this.projectManager.comment(event);
-                break;
-            default:
-                break;
+        final Deadline deadline = new Deadline(event.deadline());
+        if (deadline.passed()) {
+            LOG.warn(
+                "Event {} of project {} at {} missed its deadline {}."
+                + " Abandoning it.",
+                event.type(), this.repoFullName, this.provider(),
+                deadline.instant()
+            );
+        } else {
+            deadline.run(() -> this.dispatch(event));
         }
     }
 
@@ -368,4 +357,34 @@ public final class StoredProject implements Project {
         return this.repoFullName.equalsIgnoreCase(other.repoFullName())
             && this.provider().equalsIgnoreCase(other.provider());
     }
+
+    /**
+     * Send the Event to the right method of the PM.
+     * @param event Event.
+     */
+    private void dispatch(final Event event) {
+        final String type = event.type();
+        switch (type) {
+            case Event.Type.ACTIVATE:
+                this.projectManager.newProject(event);
+                break;
+            case Event.Type.NEW_ISSUE:
+                this.projectManager.newIssue(event);
+                break;
+            case Event.Type.REOPENED_ISSUE:
+                this.projectManager.reopenedIssue(event);
+                break;
+            case Event.Type.UNASSIGNED_TASKS:
+                this.projectManager.unassignedTasks(event);
+                break;
+            case Event.Type.ASSIGNED_TASKS:
+                this.projectManager.assignedTasks(event);
+                break;
+            case Event.Type.ISSUE_COMMENT:
+                this.projectManager.comment(event);
+                break;
+            default:
+                break;
+        }
+    }
 }
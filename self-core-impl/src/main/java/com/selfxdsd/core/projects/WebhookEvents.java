@@ -25,6 +25,10 @@ package com.selfxdsd.core.projects;
 import com.selfxdsd.api.Event;
 import com.selfxdsd.api.Project;
 import com.selfxdsd.api.Provider;
+import com.selfxdsd.api.storage.Storage;
+import com.selfxdsd.core.ReceivedResources;
+
+import java.time.Duration;
 
 /**
  * Webhook events factory. This class is used by self-pm and self-todos,
@@ -42,7 +46,12 @@ public final class WebhookEvents {
     private WebhookEvents(){}
 
     /**
-     * Create the appropriate webhook event.
+     * Create the appropriate webhook event. The issues and pull requests
+     * embedded in a Github payload of a public repository are stored in
+     * the project's JsonStorage, so they are not fetched again right
+     * away. Gitlab
+     * payloads are not stored: their objects do not have the shape of
+     * the API's responses.
      * @param project Project where the event took place.
      * @param type Type of the event.
      * @param payload Payload in JSON.
@@ -56,11 +65,16 @@ public final class WebhookEvents {
         final String provider = project.provider();
         final Event event;
         if(Provider.Names.GITHUB.equalsIgnoreCase(provider)) {
-            event = new GithubWebhookEvent(
+            final GithubWebhookEvent github = new GithubWebhookEvent(
                 project,
                 type,
                 payload
             );
+            final Storage storage = project.storage();
+            if (storage != null && storage.jsonStorage() != null) {
+                github.store(new ReceivedResources(storage.jsonStorage()));
+            }
+            event = github;
         } else if(Provider.Names.GITLAB.equalsIgnoreCase(provider)) {
             event = new GitlabWebhookEvent(
                 project,
@@ -75,4 +89,25 @@ public final class WebhookEvents {
         }
         return event;
     }
+
+    /**
+     * Create the appropriate webhook event, which has to be resolved
+     * within the given time.
+     * @param project Project where the event took place.
+     * @param type Type of the event.
+     * @param payload Payload in JSON.
+     * @param budget How much time is left, from now, to resolve it.
+     * @return Event.
+     */
+    public static Event create(
+        final Project project,
+        final String type,
+        final String payload,
+        final Duration budget
+    ){
+        return new DeadlineEvent(
+            WebhookEvents.create(project, type, payload),
+            budget
+        );
+    }
 }
@@ -48,4 +48,25 @@ public final class AccessTokenTestCase {
         MatcherAssert.assertThat(token.value(),
             Matchers.equalTo("Bearer bitbucket123"));
     }
+
+    /**
+     * The digest tells the tokens apart without revealing them.
+     */
+    @Test
+    public void digestsAccessToken(){
+        final String digest = AccessToken.digest(
+            new AccessToken.Github("github123")
+        );
+        MatcherAssert.assertThat(
+            digest.matches("[0-9a-f]{16}"), Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            AccessToken.digest(new AccessToken.Github("github123")),
+            Matchers.equalTo(digest)
+        );
+        MatcherAssert.assertThat(
+            AccessToken.digest(new AccessToken.Gitlab("github123")),
+            Matchers.not(Matchers.equalTo(digest))
+        );
+    }
 }
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import com.selfxdsd.core.mock.MockJsonResources;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for {@link AdaptiveJsonResources}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class AdaptiveJsonResourcesTestCase {
+
+    /**
+     * Github URI.
+     */
+    private static final URI URL = URI.create("https://api.github.com/user");
+
+    /**
+     * The limit grows while the calls are fast and successful.
+     */
+    @Test
+    public void increasesLimitWhileHealthy() {
+        final AdaptiveJsonResources.Limit limit =
+            new AdaptiveJsonResources.Limit(2, 10);
+        for (int idx = 0; idx < 20; ++idx) {
+            limit.acquire();
+            limit.acquire();
+            limit.release(TimeUnit.MILLISECONDS.toNanos(100), false);
+            limit.release(TimeUnit.MILLISECONDS.toNanos(100), false);
+        }
+        MatcherAssert.assertThat(
+            limit.current(), Matchers.greaterThan(2)
+        );
+        MatcherAssert.assertThat(
+            limit.current(), Matchers.lessThanOrEqualTo(10)
+        );
+        MatcherAssert.assertThat(limit.inflight(), Matchers.is(0));
+    }
+
+    /**
+     * The limit is halved when the provider pushes back or the calls
+     * get much slower, but never goes under 1.
+     */
+    @Test
+    public void decreasesLimitOnPushBack() {
+        final AdaptiveJsonResources.Limit limit =
+            new AdaptiveJsonResources.Limit(8, 10);
+        limit.acquire();
+        limit.release(TimeUnit.MILLISECONDS.toNanos(100), false);
+        limit.acquire();
+        limit.release(TimeUnit.MILLISECONDS.toNanos(100), true);
+        MatcherAssert.assertThat(limit.current(), Matchers.is(4));
+        limit.acquire();
+        limit.release(TimeUnit.MILLISECONDS.toNanos(1000), false);
+        MatcherAssert.assertThat(limit.current(), Matchers.is(2));
+        for (int idx = 0; idx < 5; ++idx) {
+            limit.acquire();
+            limit.release(TimeUnit.MILLISECONDS.toNanos(100), true);
+        }
+        MatcherAssert.assertThat(limit.current(), Matchers.is(1));
+    }
+
+    /**
+     * A 429 response cuts the limit of that access token.
+     */
+    @Test
+    public void cutsLimitOnTooManyRequests() {
+        final AdaptiveJsonResources resources = new AdaptiveJsonResources(
+            new MockJsonResources(
+                req -> new MockResource(429, JsonValue.NULL)
+            ),
+            "anonymous", 4, 10, Duration.ofSeconds(1),
+            new Registry<>(Duration.ofHours(1))
+        );
+        resources.get(URL);
+        MatcherAssert.assertThat(resources.limit(URL), Matchers.is(2));
+    }
+
+    /**
+     * Async calls over the limit wait, without blocking, for a slot.
+     */
+    @Test
+    public void queuesAsyncCallsOverLimit() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final CompletableFuture<Resource> first = new CompletableFuture<>();
+        Mockito.when(
+            delegate.getAsync(Mockito.any(URI.class), Mockito.any())
+        ).thenReturn(
+            first,
+            CompletableFuture.completedFuture(
+                new MockResource(200, JsonValue.NULL)
+            )
+        );
+        final JsonResources resources = new AdaptiveJsonResources(
+            delegate, "anonymous", 1, 1, Duration.ofSeconds(1),
+            new Registry<>(Duration.ofHours(1))
+        );
+        final CompletableFuture<Resource> one = resources.getAsync(URL);
+        final CompletableFuture<Resource> two = resources.getAsync(URL);
+        Mockito.verify(delegate, Mockito.times(1))
+            .getAsync(Mockito.any(URI.class), Mockito.any());
+        MatcherAssert.assertThat(two.isDone(), Matchers.is(false));
+        first.complete(new MockResource(200, JsonValue.NULL));
+        MatcherAssert.assertThat(one.join().statusCode(), Matchers.is(200));
+        MatcherAssert.assertThat(two.join().statusCode(), Matchers.is(200));
+        Mockito.verify(delegate, Mockito.times(2))
+            .getAsync(Mockito.any(URI.class), Mockito.any());
+    }
+
+    /**
+     * A sync call which gets no slot in time fails, and gives up its place.
+     */
+    @Test
+    public void syncCallTimesOutWaitingForSlot() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        Mockito.when(
+            delegate.getAsync(Mockito.any(URI.class), Mockito.any())
+        ).thenReturn(new CompletableFuture<>());
+        final AdaptiveJsonResources resources = new AdaptiveJsonResources(
+            delegate, "anonymous", 1, 1, Duration.ofMillis(50),
+            new Registry<>(Duration.ofHours(1))
+        );
+        resources.getAsync(URL);
+        try {
+            resources.get(URL);
+            MatcherAssert.assertThat("Expected exception", false);
+        } catch (final IllegalStateException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.startsWith("No free slot")
+            );
+        }
+        Mockito.verify(delegate, Mockito.never())
+            .get(Mockito.any(URI.class), Mockito.any());
+    }
+
+    /**
+     * Each access token has its own limit.
+     */
+    @Test
+    public void limitsPerAccessToken() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        Mockito.when(delegate.authenticated(Mockito.any())).thenReturn(
+            new MockJsonResources(
+                new AccessToken.Github("token123"),
+                req -> new MockResource(403, JsonValue.NULL)
+            )
+        );
+        final AdaptiveJsonResources resources = new AdaptiveJsonResources(
+            delegate, "anonymous", 4, 10, Duration.ofSeconds(1),
+            new Registry<>(Duration.ofHours(1))
+        );
+        final AdaptiveJsonResources authenticated =
+            (AdaptiveJsonResources) resources.authenticated(
+                new AccessToken.Github("token123")
+            );
+        authenticated.get(URL);
+        MatcherAssert.assertThat(authenticated.limit(URL), Matchers.is(2));
+        MatcherAssert.assertThat(resources.limit(URL), Matchers.is(4));
+    }
+
+    /**
+     * A sync call which throws still gives its slot back.
+     */
+    @Test
+    public void releasesSlotWhenDelegateThrows() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        Mockito.when(
+            delegate.get(Mockito.any(URI.class), Mockito.any())
+        ).thenThrow(new IllegalArgumentException("boom")).thenReturn(
+            new MockResource(200, JsonValue.NULL)
+        );
+        final AdaptiveJsonResources resources = new AdaptiveJsonResources(
+            delegate, "anonymous", 1, 1, Duration.ofMillis(50),
+            new Registry<>(Duration.ofHours(1))
+        );
+        try {
+            resources.get(URL);
+            MatcherAssert.assertThat("Expected exception", false);
+        } catch (final IllegalArgumentException ex) {
+            MatcherAssert.assertThat(ex.getMessage(), Matchers.is("boom"));
+        }
+        MatcherAssert.assertThat(
+            resources.get(URL).statusCode(), Matchers.is(200)
+        );
+    }
+
+    /**
+     * A queued async call is made within the deadline of its caller,
+     * even if another thread frees its slot.
+     */
+    @Test
+    public void queuedAsyncCallKeepsDeadline() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final CompletableFuture<Resource> first = new CompletableFuture<>();
+        final AtomicReference<Instant> seen = new AtomicReference<>();
+        Mockito.when(
+            delegate.getAsync(Mockito.any(URI.class), Mockito.any())
+        ).thenReturn(first).thenAnswer(
+            invocation -> {
+                seen.set(Deadline.current().instant());
+                return CompletableFuture.completedFuture(
+                    new MockResource(200, JsonValue.NULL)
+                );
+            }
+        );
+        final JsonResources resources = new AdaptiveJsonResources(
+            delegate, "anonymous", 1, 1, Duration.ofSeconds(1),
+            new Registry<>(Duration.ofHours(1))
+        );
+        resources.getAsync(URL);
+        final Deadline deadline = new Deadline(Duration.ofMinutes(5));
+        final AtomicReference<CompletableFuture<Resource>> queued =
+            new AtomicReference<>();
+        deadline.run(() -> queued.set(resources.getAsync(URL)));
+        CompletableFuture.runAsync(
+            () -> first.complete(new MockResource(200, JsonValue.NULL))
+        ).join();
+        MatcherAssert.assertThat(
+            queued.get().join().statusCode(), Matchers.is(200)
+        );
+        MatcherAssert.assertThat(seen.get(), Matchers.is(deadline.instant()));
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import javax.json.Json;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link BoundedJsonStorage}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class BoundedJsonStorageTestCase {
+
+    /**
+     * Stores and returns resources.
+     */
+    @Test
+    public void storesAndReadsResources() {
+        final BoundedJsonStorage storage = new BoundedJsonStorage();
+        final CachedResource stored = this.resource("/a", 10);
+        MatcherAssert.assertThat(
+            storage.storeResource(stored), Matchers.sameInstance(stored)
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/a")),
+            Matchers.sameInstance(stored)
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/b")), Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(storage.size(), Matchers.is(1));
+        MatcherAssert.assertThat(storage.stats().entries(), Matchers.is(1L));
+        MatcherAssert.assertThat(
+            storage.weight(), Matchers.greaterThan(10L)
+        );
+    }
+
+    /**
+     * Replacing a resource does not count its weight twice.
+     */
+    @Test
+    public void replacesResource() {
+        final BoundedJsonStorage storage = new BoundedJsonStorage();
+        storage.storeResource(this.resource("/a", 10));
+        final long weight = storage.weight();
+        final CachedResource newer = this.resource("/a", 10);
+        storage.storeResource(newer);
+        MatcherAssert.assertThat(storage.weight(), Matchers.is(weight));
+        MatcherAssert.assertThat(storage.size(), Matchers.is(1));
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/a")),
+            Matchers.sameInstance(newer)
+        );
+    }
+
+    /**
+     * The total weight never goes over the capacity, and resources which
+     * are read again survive a flood of one-off resources.
+     */
+    @Test
+    public void evictsOneOffResourcesFirst() {
+        final BoundedJsonStorage storage = new BoundedJsonStorage(10_000);
+        storage.storeResource(this.resource("/popular", 500));
+        storage.getResource(URI.create("/popular"));
+        for (int idx = 0; idx < 100; ++idx) {
+            storage.storeResource(this.resource("/search?q=" + idx, 500));
+        }
+        MatcherAssert.assertThat(
+            storage.weight(), Matchers.lessThanOrEqualTo(10_000L)
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/popular")),
+            Matchers.notNullValue()
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/search?q=0")),
+            Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(
+            storage.evictions(), Matchers.greaterThan(80L)
+        );
+        MatcherAssert.assertThat(
+            storage.evictedWeight(), Matchers.greaterThan(80L * 500)
+        );
+    }
+
+    /**
+     * Removes resources from any segment.
+     */
+    @Test
+    public void removesResources() {
+        final BoundedJsonStorage storage = new BoundedJsonStorage();
+        storage.storeResource(this.resource("/a", 10));
+        storage.storeResource(this.resource("/b", 10));
+        storage.getResource(URI.create("/b"));
+        storage.removeResource(URI.create("/a"));
+        storage.removeResource(URI.create("/b"));
+        storage.removeResource(URI.create("/c"));
+        MatcherAssert.assertThat(storage.size(), Matchers.is(0));
+        MatcherAssert.assertThat(storage.weight(), Matchers.is(0L));
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/b")), Matchers.nullValue()
+        );
+    }
+
+    /**
+     * Removing a resource also removes its variants, whatever their query
+     * or fragment, but not the other resources.
+     */
+    @Test
+    public void removesVariants() {
+        final BoundedJsonStorage storage = new BoundedJsonStorage();
+        storage.storeResource(this.resource("/issues", 10));
+        storage.storeResource(this.resource("/issues?state=open", 10));
+        storage.storeResource(this.resource("/issues?page=2#abc", 10));
+        storage.storeResource(this.resource("/issues/1", 10));
+        storage.getResource(URI.create("/issues?state=open"));
+        storage.removeResource(URI.create("/issues"));
+        MatcherAssert.assertThat(storage.size(), Matchers.is(1));
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/issues/1")),
+            Matchers.notNullValue()
+        );
+    }
+
+    /**
+     * A resource bigger than the whole capacity is not stored.
+     */
+    @Test
+    public void rejectsHugeResource() {
+        final BoundedJsonStorage storage = new BoundedJsonStorage(1000);
+        storage.storeResource(this.resource("/small", 10));
+        storage.storeResource(this.resource("/huge", 5000));
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/huge")), Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/small")),
+            Matchers.notNullValue()
+        );
+    }
+
+    /**
+     * A protected resource replaced by one bigger than the whole capacity
+     * is dropped, without evicting the others.
+     */
+    @Test
+    public void dropsHugeReplacementOfProtected() {
+        final BoundedJsonStorage storage = new BoundedJsonStorage(4000);
+        for (int idx = 0; idx < 5; idx = idx + 1) {
+            final String uri = "/protected/" + idx;
+            storage.storeResource(this.resource(uri, 300));
+            storage.getResource(URI.create(uri));
+        }
+        storage.storeResource(this.resource("/protected/0", 10_000));
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/protected/0")),
+            Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(storage.size(), Matchers.is(4));
+        MatcherAssert.assertThat(storage.evictions(), Matchers.is(0L));
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/protected/4")),
+            Matchers.notNullValue()
+        );
+    }
+
+    /**
+     * Cached resource with a body of the given length.
+     * @param uri URI.
+     * @param length Length of the body.
+     * @return CachedResource.
+     */
+    private CachedResource resource(final String uri, final int length) {
+        return CachedResource.fromResource(
+            URI.create(uri),
+            new MockResource(
+                200,
+                Json.createValue("x".repeat(length)),
+                Map.of("ETag", List.of("etag"))
+            )
+        );
+    }
+}
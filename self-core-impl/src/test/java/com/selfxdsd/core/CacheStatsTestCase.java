@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.storage.JsonStorage.Stats.Outcome;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link CacheStats}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class CacheStatsTestCase {
+
+    /**
+     * Outcomes are counted overall and by URI pattern.
+     */
+    @Test
+    public void countsByPattern() {
+        final CacheStats stats = new CacheStats(() -> 2, () -> 1024, () -> 3);
+        stats.record(
+            URI.create("https://api.github.com/repos/o/r/issues/1"),
+            Outcome.REVALIDATED
+        );
+        stats.record(
+            URI.create("https://api.github.com/repos/a/b/issues/2"),
+            Outcome.REVALIDATED
+        );
+        stats.record(
+            URI.create("https://api.github.com/repos/a/b/issues/2"),
+            Outcome.HIT
+        );
+        stats.record(
+            URI.create("https://api.github.com/repos/a/b/labels"),
+            Outcome.MISS
+        );
+        MatcherAssert.assertThat(
+            stats.count(Outcome.REVALIDATED), Matchers.is(2L)
+        );
+        MatcherAssert.assertThat(stats.count(Outcome.HIT), Matchers.is(1L));
+        MatcherAssert.assertThat(
+            stats.count(Outcome.STORED), Matchers.is(0L)
+        );
+        final Map<String, Map<Outcome, Long>> patterns = stats.byPattern();
+        MatcherAssert.assertThat(
+            patterns.keySet(),
+            Matchers.contains(
+                "/repos/{owner}/{repo}/issues/{n}",
+                "/repos/{owner}/{repo}/labels"
+            )
+        );
+        MatcherAssert.assertThat(
+            patterns.get("/repos/{owner}/{repo}/issues/{n}")
+                .get(Outcome.REVALIDATED),
+            Matchers.is(2L)
+        );
+        MatcherAssert.assertThat(
+            patterns.get("/repos/{owner}/{repo}/labels").get(Outcome.MISS),
+            Matchers.is(1L)
+        );
+    }
+
+    /**
+     * The size of the storage is read from the storage.
+     */
+    @Test
+    public void readsStorageSize() {
+        final CacheStats stats = new CacheStats(() -> 2, () -> 1024, () -> 3);
+        MatcherAssert.assertThat(stats.entries(), Matchers.is(2L));
+        MatcherAssert.assertThat(stats.bytes(), Matchers.is(1024L));
+        MatcherAssert.assertThat(stats.evictions(), Matchers.is(3L));
+        MatcherAssert.assertThat(
+            stats.toString(),
+            Matchers.startsWith("entries=2, bytes=1024, evictions=3, hit=0")
+        );
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import com.selfxdsd.core.mock.MockJsonResources;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Unit tests for {@link CircuitBreakerJsonResources}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class CircuitBreakerJsonResourcesTestCase {
+
+    /**
+     * Gitlab URI.
+     */
+    private static final URI GITLAB = URI.create(
+        "https://gitlab.com/api/v4/user"
+    );
+
+    /**
+     * Github URI.
+     */
+    private static final URI GITHUB = URI.create(
+        "https://api.github.com/user"
+    );
+
+    /**
+     * After the failures threshold, the calls to that host fail fast,
+     * while the other hosts are not affected.
+     */
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        final AtomicInteger sent = new AtomicInteger();
+        final CircuitBreakerJsonResources resources = this.breaker(
+            req -> {
+                sent.incrementAndGet();
+                final MockResource resource;
+                if ("gitlab.com".equals(req.getUri().getHost())) {
+                    resource = new MockResource(503, JsonValue.NULL);
+                } else {
+                    resource = new MockResource(200, JsonValue.NULL);
+                }
+                return resource;
+            },
+            Duration.ofMinutes(1)
+        );
+        resources.get(GITLAB);
+        resources.get(GITLAB);
+        MatcherAssert.assertThat(
+            resources.state("gitlab.com"),
+            Matchers.is(CircuitBreakerJsonResources.State.CLOSED)
+        );
+        resources.get(GITLAB);
+        MatcherAssert.assertThat(
+            resources.state("gitlab.com"),
+            Matchers.is(CircuitBreakerJsonResources.State.OPEN)
+        );
+        try {
+            resources.get(GITLAB);
+            MatcherAssert.assertThat("Expected exception", false);
+        } catch (final IllegalStateException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.startsWith("Circuit open")
+            );
+        }
+        MatcherAssert.assertThat(sent.get(), Matchers.is(3));
+        MatcherAssert.assertThat(
+            resources.get(GITHUB).statusCode(), Matchers.is(200)
+        );
+        MatcherAssert.assertThat(
+            resources.state("api.github.com"),
+            Matchers.is(CircuitBreakerJsonResources.State.CLOSED)
+        );
+    }
+
+    /**
+     * I/O errors count as failures too, 4xx responses don't.
+     */
+    @Test
+    public void countsIoErrorsButNotClientErrors() {
+        final AtomicInteger sent = new AtomicInteger();
+        final CircuitBreakerJsonResources resources = this.breaker(
+            req -> {
+                if (sent.incrementAndGet() % 2 == 0) {
+                    throw new IllegalStateException(
+                        "Couldn't GET", new IOException("timeout")
+                    );
+                }
+                return new MockResource(404, JsonValue.NULL);
+            },
+            Duration.ofMinutes(1)
+        );
+        for (int idx = 0; idx < 4; ++idx) {
+            try {
+                resources.get(GITLAB);
+            } catch (final IllegalStateException ex) {
+                MatcherAssert.assertThat(
+                    ex.getMessage(), Matchers.equalTo("Couldn't GET")
+                );
+            }
+        }
+        MatcherAssert.assertThat(
+            resources.state("gitlab.com"),
+            Matchers.is(CircuitBreakerJsonResources.State.CLOSED)
+        );
+    }
+
+    /**
+     * After the cooldown, a successful probe closes the circuit.
+     */
+    @Test
+    public void closesAfterSuccessfulProbe() {
+        final AtomicInteger sent = new AtomicInteger();
+        final CircuitBreakerJsonResources resources = this.breaker(
+            req -> {
+                final MockResource resource;
+                if (sent.incrementAndGet() <= 3) {
+                    resource = new MockResource(500, JsonValue.NULL);
+                } else {
+                    resource = new MockResource(200, JsonValue.NULL);
+                }
+                return resource;
+            },
+            Duration.ZERO
+        );
+        resources.get(GITLAB);
+        resources.get(GITLAB);
+        resources.get(GITLAB);
+        MatcherAssert.assertThat(
+            resources.state("gitlab.com"),
+            Matchers.is(CircuitBreakerJsonResources.State.OPEN)
+        );
+        MatcherAssert.assertThat(
+            resources.get(GITLAB).statusCode(), Matchers.is(200)
+        );
+        MatcherAssert.assertThat(
+            resources.state("gitlab.com"),
+            Matchers.is(CircuitBreakerJsonResources.State.CLOSED)
+        );
+    }
+
+    /**
+     * A failed probe opens the circuit again.
+     */
+    @Test
+    public void reopensAfterFailedProbe() {
+        final CircuitBreakerJsonResources resources = this.breaker(
+            req -> new MockResource(502, JsonValue.NULL),
+            Duration.ZERO
+        );
+        resources.get(GITLAB);
+        resources.get(GITLAB);
+        resources.get(GITLAB);
+        resources.get(GITLAB);
+        MatcherAssert.assertThat(
+            resources.state("gitlab.com"),
+            Matchers.is(CircuitBreakerJsonResources.State.OPEN)
+        );
+    }
+
+    /**
+     * Only one probe at a time is let through while half-open.
+     */
+    @Test
+    public void letsOneProbeAtATime() {
+        final CircuitBreakerJsonResources.Circuit circuit =
+            new CircuitBreakerJsonResources.Circuit(1);
+        circuit.failure(0, 1);
+        MatcherAssert.assertThat(
+            circuit.allow(10, Duration.ofMillis(100)), Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            circuit.allow(200, Duration.ofMillis(100)), Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            circuit.allow(200, Duration.ofMillis(100)), Matchers.is(false)
+        );
+        circuit.neutral();
+        MatcherAssert.assertThat(
+            circuit.allow(200, Duration.ofMillis(100)), Matchers.is(true)
+        );
+    }
+
+    /**
+     * When the host's concurrency limit is reached, the calls to it
+     * are rejected (with a failed future, the async ones), but the calls
+     * to other hosts go through.
+     */
+    @Test
+    public void limitsConcurrencyPerHost() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final CompletableFuture<Resource> pending = new CompletableFuture<>();
+        Mockito.when(
+            delegate.getAsync(Mockito.eq(GITLAB), Mockito.any())
+        ).thenReturn(pending);
+        Mockito.when(
+            delegate.getAsync(Mockito.eq(GITHUB), Mockito.any())
+        ).thenReturn(
+            CompletableFuture.completedFuture(
+                new MockResource(200, JsonValue.NULL)
+            )
+        );
+        final JsonResources resources = new CircuitBreakerJsonResources(
+            delegate, 3, Duration.ofMinutes(1), 1, Duration.ZERO,
+            new ConcurrentHashMap<>()
+        );
+        final CompletableFuture<Resource> first = resources.getAsync(GITLAB);
+        try {
+            JsonResources.join(resources.getAsync(GITLAB));
+            MatcherAssert.assertThat("Expected exception", false);
+        } catch (final IllegalStateException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.startsWith("Too many concurrent")
+            );
+        }
+        MatcherAssert.assertThat(
+            resources.getAsync(GITHUB).join().statusCode(), Matchers.is(200)
+        );
+        pending.complete(new MockResource(200, JsonValue.NULL));
+        MatcherAssert.assertThat(first.join().statusCode(), Matchers.is(200));
+        resources.getAsync(GITLAB);
+        Mockito.verify(delegate, Mockito.times(2))
+            .getAsync(Mockito.eq(GITLAB), Mockito.any());
+    }
+
+    /**
+     * A sync call waits for a bulkhead permit only until the current
+     * deadline, not for the whole maximum wait.
+     */
+    @Test
+    public void waitsForPermitUntilDeadline() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        Mockito.when(
+            delegate.getAsync(Mockito.eq(GITLAB), Mockito.any())
+        ).thenReturn(new CompletableFuture<>());
+        final JsonResources resources = new CircuitBreakerJsonResources(
+            delegate, 3, Duration.ofMinutes(1), 1, Duration.ofSeconds(10),
+            new ConcurrentHashMap<>()
+        );
+        resources.getAsync(GITLAB);
+        final long start = System.currentTimeMillis();
+        try {
+            new Deadline(Duration.ofMillis(200)).run(
+                () -> resources.get(GITLAB)
+            );
+            MatcherAssert.assertThat("Expected exception", false);
+        } catch (final IllegalStateException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.startsWith("Too many concurrent")
+            );
+        }
+        MatcherAssert.assertThat(
+            System.currentTimeMillis() - start, Matchers.lessThan(5000L)
+        );
+        Mockito.verify(delegate, Mockito.never())
+            .get(Mockito.eq(GITLAB), Mockito.any());
+    }
+
+    /**
+     * An async call to a host with an open circuit returns a failed
+     * future, it does not throw.
+     */
+    @Test
+    public void failsAsyncCallsWithFuture() {
+        final CircuitBreakerJsonResources resources = this.breaker(
+            req -> new MockResource(503, JsonValue.NULL),
+            Duration.ofMinutes(1)
+        );
+        for (int idx = 0; idx < 3; ++idx) {
+            resources.get(GITLAB);
+        }
+        final CompletableFuture<Resource> future = resources.getAsync(GITLAB);
+        MatcherAssert.assertThat(
+            future.isCompletedExceptionally(), Matchers.is(true)
+        );
+        try {
+            JsonResources.join(future);
+            MatcherAssert.assertThat("Expected exception", false);
+        } catch (final IllegalStateException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.startsWith("Circuit open")
+            );
+        }
+    }
+
+    /**
+     * Breaker opening after 3 failures, with its own circuits.
+     * @param onRequest Mock responses.
+     * @param cooldown Cooldown.
+     * @return CircuitBreakerJsonResources.
+     */
+    private CircuitBreakerJsonResources breaker(
+        final Function<MockJsonResources.MockRequest, MockResource> onRequest,
+        final Duration cooldown
+    ) {
+        return new CircuitBreakerJsonResources(
+            new MockJsonResources(onRequest),
+            3, cooldown, 4, Duration.ofSeconds(1),
+            new ConcurrentHashMap<>()
+        );
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+import com.selfxdsd.api.Resource;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link CompactResource}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class CompactResourceTestCase {
+
+    /**
+     * Github URI.
+     */
+    private static final URI URL = URI.create(
+        "https://api.github.com/repos/o/r/labels"
+    );
+
+    /**
+     * A big body is deflated, but it is read just like the original.
+     */
+    @Test
+    public void deflatesBigBody() {
+        final JsonArrayBuilder labels = Json.createArrayBuilder();
+        for (int idx = 0; idx < 100; ++idx) {
+            labels.add(
+                Json.createObjectBuilder()
+                    .add("name", "label-" + idx)
+                    .add("color", "ffffff")
+                    .add("description", "Some label, ăîș.")
+            );
+        }
+        final CachedResource original = this.cached(labels.build());
+        final CompactResource compact = new CompactResource(original);
+        MatcherAssert.assertThat(
+            compact.bodySize(),
+            Matchers.lessThan(original.toString().length() / 4)
+        );
+        MatcherAssert.assertThat(
+            compact.asJsonArray(), Matchers.equalTo(original.asJsonArray())
+        );
+        MatcherAssert.assertThat(
+            compact.toString(), Matchers.equalTo(original.toString())
+        );
+        MatcherAssert.assertThat(compact.etag(), Matchers.equalTo("etag"));
+        MatcherAssert.assertThat(compact.uri(), Matchers.equalTo(URL));
+        MatcherAssert.assertThat(
+            compact.creationDate(),
+            Matchers.equalTo(original.creationDate())
+        );
+        MatcherAssert.assertThat(compact.statusCode(), Matchers.is(200));
+    }
+
+    /**
+     * A small body is kept as it is.
+     */
+    @Test
+    public void keepsSmallBody() {
+        final JsonObject body = Json.createObjectBuilder()
+            .add("login", "amihaiemil")
+            .build();
+        final CompactResource compact = new CompactResource(
+            this.cached(body)
+        );
+        MatcherAssert.assertThat(
+            compact.bodySize(), Matchers.is(body.toString().length())
+        );
+        MatcherAssert.assertThat(
+            compact.asJsonObject(), Matchers.equalTo(body)
+        );
+    }
+
+    /**
+     * Only the headers needed by the core are kept.
+     */
+    @Test
+    public void trimsHeaders() {
+        final CompactResource compact = new CompactResource(
+            this.cached(JsonValue.EMPTY_JSON_OBJECT)
+        );
+        MatcherAssert.assertThat(
+            compact.headers().keySet(),
+            Matchers.containsInAnyOrder("ETag", "Link")
+        );
+    }
+
+    /**
+     * The built resource is compact too, with a new creation date.
+     */
+    @Test
+    public void buildsCompactResource() {
+        final CompactResource compact = new CompactResource(
+            this.cached(JsonValue.EMPTY_JSON_OBJECT)
+        );
+        final Resource built = compact.newBuilder().status(201).build();
+        MatcherAssert.assertThat(
+            built, Matchers.instanceOf(CompactResource.class)
+        );
+        MatcherAssert.assertThat(built.statusCode(), Matchers.is(201));
+        MatcherAssert.assertThat(
+            ((CachedResource) built).etag(), Matchers.equalTo("etag")
+        );
+        MatcherAssert.assertThat(
+            ((CachedResource) built).creationDate(),
+            Matchers.greaterThanOrEqualTo(compact.creationDate())
+        );
+    }
+
+    /**
+     * The refreshed resource is created later and shares the body (and
+     * the decoded value) of the original.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void refreshesWithoutEncoding() throws Exception {
+        final CompactResource compact = new CompactResource(
+            this.cached(Json.createObjectBuilder().add("a", 1).build())
+        );
+        final JsonObject json = compact.asJsonObject();
+        Thread.sleep(10);
+        final CompactResource refreshed = compact.refreshed();
+        MatcherAssert.assertThat(
+            refreshed.creationDate(),
+            Matchers.greaterThan(compact.creationDate())
+        );
+        MatcherAssert.assertThat(
+            refreshed.bodySize(), Matchers.is(compact.bodySize())
+        );
+        MatcherAssert.assertThat(
+            refreshed.etag(), Matchers.equalTo(compact.etag())
+        );
+        MatcherAssert.assertThat(
+            refreshed.headers(), Matchers.sameInstance(compact.headers())
+        );
+        MatcherAssert.assertThat(
+            refreshed.asJsonObject(), Matchers.sameInstance(json)
+        );
+    }
+
+    /**
+     * The decoded body is kept, so reading it again does not decode it
+     * again.
+     */
+    @Test
+    public void keepsDecodedBody() {
+        final CompactResource compact = new CompactResource(
+            this.cached(Json.createObjectBuilder().add("a", 1).build())
+        );
+        MatcherAssert.assertThat(
+            compact.asJsonObject(),
+            Matchers.sameInstance(compact.asJsonObject())
+        );
+    }
+
+    /**
+     * A resource built without ETag nor Last-Modified can't be cached, so
+     * the builder returns it as it is.
+     */
+    @Test
+    public void buildsPlainResourceWithoutValidators() {
+        final CompactResource compact = new CompactResource(
+            CachedResource.fromResource(
+                URL,
+                new MockResource(
+                    200,
+                    JsonValue.EMPTY_JSON_OBJECT,
+                    Map.of(
+                        "Last-Modified",
+                        List.of("Wed, 21 Oct 2015 07:28:00 GMT")
+                    )
+                )
+            )
+        );
+        final Resource built = compact.newBuilder()
+            .status(201)
+            .headers(headers -> Map.of())
+            .build();
+        MatcherAssert.assertThat(
+            built, Matchers.not(Matchers.instanceOf(CachedResource.class))
+        );
+        MatcherAssert.assertThat(built.statusCode(), Matchers.is(201));
+        MatcherAssert.assertThat(
+            built.asJsonObject(), Matchers.equalTo(JsonValue.EMPTY_JSON_OBJECT)
+        );
+    }
+
+    /**
+     * Cached resource with the given body.
+     * @param body Body.
+     * @return CachedResource.
+     */
+    private CachedResource cached(final JsonValue body) {
+        return CachedResource.fromResource(
+            URL,
+            new MockResource(
+                200,
+                body,
+                Map.of(
+                    "ETag", List.of("etag"),
+                    "Link", List.of("<https://api.github.com/x?page=2>"),
+                    "X-GitHub-Request-Id", List.of("AB:CD"),
+                    "X-RateLimit-Remaining", List.of("4999")
+                )
+            )
+        );
+    }
+}
@@ -32,15 +32,22 @@ import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
 
 import javax.json.Json;
 import javax.json.JsonValue;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import static com.selfxdsd.core.mock.MockJsonResources.MockRequest;
@@ -200,6 +207,124 @@ public final class ConditionalJsonResourcesTestCase {
         ));
     }
 
+    /**
+     * Should store a resource which only has a Last-Modified header and
+     * revalidate it with If-Modified-Since.
+     */
+    @Test
+    public void shouldRevalidateWithLastModified() {
+        final JsonStorage storage = new JsonStorage.InMemory();
+        final URI uri = URI.create("/");
+        final JsonValue body = Json.createObjectBuilder()
+            .add("hello", "world")
+            .build();
+        final String date = "Wed, 21 Oct 2015 07:28:00 GMT";
+        final MockJsonResources resources = new MockJsonResources(
+            req -> {
+                final MockResource response;
+                if (req.getHeaders().containsKey("If-Modified-Since")) {
+                    response = new MockResource(
+                        HttpURLConnection.HTTP_NOT_MODIFIED,
+                        JsonValue.NULL
+                    );
+                } else {
+                    response = new MockResource(
+                        HttpURLConnection.HTTP_OK,
+                        body,
+                        Map.of("Last-Modified", List.of(date))
+                    );
+                }
+                return response;
+            }
+        );
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            resources, storage
+        );
+
+        cacheResources.get(uri);
+        final CachedResource stored = storage.getResource(uri);
+        MatcherAssert.assertThat(stored, Matchers.notNullValue());
+        MatcherAssert.assertThat(stored.etag(), Matchers.nullValue());
+        MatcherAssert.assertThat(stored.lastModified(), Matchers.is(date));
+
+        final Resource result = cacheResources.get(uri);
+        final MockRequest req = resources.requests().atIndex(1);
+        MatcherAssert.assertThat(
+            req.getHeaders().get("If-Modified-Since").get(0),
+            Matchers.equalTo(date)
+        );
+        MatcherAssert.assertThat(
+            req.getHeaders().containsKey("If-None-Match"),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(result.statusCode(), Matchers.is(
+            HttpURLConnection.HTTP_OK
+        ));
+        MatcherAssert.assertThat(result.toString(), Matchers.equalTo(
+            body.toString()
+        ));
+    }
+
+    /**
+     * The Last-Modified date of a real response (ResponseHeaders), stored
+     * as a CompactResource, is sent back unchanged in If-Modified-Since.
+     */
+    @Test
+    public void shouldSendBackExactLastModified() {
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        final String date = "Wed, 21 Oct 2015 07:28:00 GMT";
+        final List<Map<String, List<String>>> sent = new ArrayList<>();
+        final JsonResources remote = Mockito.mock(JsonResources.class);
+        Mockito.when(
+            remote.get(Mockito.eq(uri), Mockito.any())
+        ).thenAnswer(
+            invocation -> {
+                final Map<String, List<String>> headers =
+                    ((Supplier<Map<String, List<String>>>) invocation
+                        .getArguments()[1]).get();
+                sent.add(headers);
+                final Resource response;
+                if (headers.containsKey("If-Modified-Since")) {
+                    response = new JsonResources.JsonResponse(
+                        HttpURLConnection.HTTP_NOT_MODIFIED,
+                        "",
+                        new ResponseHeaders(Map.of())
+                    );
+                } else {
+                    response = new JsonResources.JsonResponse(
+                        HttpURLConnection.HTTP_OK,
+                        "{\"name\":\"b\"}",
+                        new ResponseHeaders(
+                            Map.of("last-modified", List.of(date))
+                        )
+                    );
+                }
+                return response;
+            }
+        );
+        final JsonStorage storage = new BoundedJsonStorage();
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            remote, storage
+        );
+
+        cacheResources.get(uri);
+        MatcherAssert.assertThat(
+            storage.getResource(uri),
+            Matchers.instanceOf(CompactResource.class)
+        );
+        final Resource result = cacheResources.get(uri);
+
+        MatcherAssert.assertThat(sent, Matchers.iterableWithSize(2));
+        MatcherAssert.assertThat(
+            sent.get(1).get("If-Modified-Since"),
+            Matchers.contains(date)
+        );
+        MatcherAssert.assertThat(
+            result.asJsonObject().getString("name"),
+            Matchers.equalTo("b")
+        );
+    }
+
     /**
      * Should get Resource from remote if the remote resource has
      * changed.
@@ -322,7 +447,7 @@ public final class ConditionalJsonResourcesTestCase {
     @Test
     public void shouldDelegatePostHttpMethodWithHeaders() {
         final URI uri = URI.create("/");
-        final JsonResources resources = Mockito.mock(JsonResources.class);
+        final JsonResources resources = this.mutations();
         final JsonResources cacheResources = new ConditionalJsonResources(
             resources, Mockito.mock(JsonStorage.class)
         );
@@ -339,7 +464,7 @@ public final class ConditionalJsonResourcesTestCase {
     @Test
     public void shouldDelegatePostHttpMethod() {
         final URI uri = URI.create("/");
-        final JsonResources resources = Mockito.mock(JsonResources.class);
+        final JsonResources resources = this.mutations();
         final JsonResources cacheResources = new ConditionalJsonResources(
             resources, Mockito.mock(JsonStorage.class)
         );
@@ -358,7 +483,7 @@ public final class ConditionalJsonResourcesTestCase {
     @Test
     public void shouldDelegatePatchHttpMethod() {
         final URI uri = URI.create("/");
-        final JsonResources resources = Mockito.mock(JsonResources.class);
+        final JsonResources resources = this.mutations();
         final JsonResources cacheResources = new ConditionalJsonResources(
             resources, Mockito.mock(JsonStorage.class)
         );
@@ -377,7 +502,7 @@ public final class ConditionalJsonResourcesTestCase {
     @Test
     public void shouldDelegatePutHttpMethod() {
         final URI uri = URI.create("/");
-        final JsonResources resources = Mockito.mock(JsonResources.class);
+        final JsonResources resources = this.mutations();
         final JsonResources cacheResources = new ConditionalJsonResources(
             resources, Mockito.mock(JsonStorage.class)
         );
@@ -397,7 +522,7 @@ public final class ConditionalJsonResourcesTestCase {
     @Test
     public void shouldDelegateDeleteHttpMethod() {
         final URI uri = URI.create("/");
-        final JsonResources resources = Mockito.mock(JsonResources.class);
+        final JsonResources resources = this.mutations();
         final JsonResources cacheResources = new ConditionalJsonResources(
             resources, Mockito.mock(JsonStorage.class)
         );
@@ -409,6 +534,410 @@ public final class ConditionalJsonResourcesTestCase {
             org.mockito.Matchers.eq(JsonValue.NULL));
     }
 
+    /**
+     * Should store the resource fetched asynchronously, if Etag header
+     * is present.
+     */
+    @Test
+    public void shouldStoreAsyncResourceWhenEntriesNotFound() {
+        final JsonStorage storage = new JsonStorage.InMemory();
+        final URI uri = URI.create("/");
+        final JsonValue body = Json.createObjectBuilder()
+            .add("hello", "world")
+            .build();
+        final MockResource resource = new MockResource(200, body,
+            Map.of("ETag", List.of("etag-123"))
+        );
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            new MockJsonResources(req -> resource), storage
+        );
+
+        final Resource result = cacheResources.getAsync(uri).join();
+        MatcherAssert.assertThat(result, Matchers.equalTo(resource));
+        MatcherAssert.assertThat(
+            storage.getResource(uri).etag(),
+            Matchers.equalTo("etag-123")
+        );
+    }
+
+    /**
+     * Should get the Resource asynchronously from json storage if
+     * the remote resource is not changed.
+     */
+    @Test
+    public void shouldGetAsyncFromCacheIfRemoteNotChanged() {
+        final URI uri = URI.create("/");
+        final JsonValue body = Json.createObjectBuilder()
+            .add("hello", "world")
+            .build();
+        final JsonStorage storage = new JsonStorage.InMemory();
+        storage.storeResource(
+            CachedResource.fromResource(
+                uri,
+                new MockResource(
+                    HttpURLConnection.HTTP_OK,
+                    body,
+                    Map.of("ETag", List.of("etag-123"))
+                )
+            )
+        );
+        final MockJsonResources resources = new MockJsonResources(
+            req -> new MockResource(
+                HttpURLConnection.HTTP_NOT_MODIFIED,
+                JsonValue.NULL
+            )
+        );
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            resources, storage
+        );
+
+        final Resource result = cacheResources.getAsync(uri).join();
+        MatcherAssert.assertThat(
+            resources.requests().first()
+                .getHeaders().get("If-None-Match").get(0),
+            Matchers.equalTo("etag-123")
+        );
+        MatcherAssert.assertThat(
+            result.statusCode(),
+            Matchers.is(HttpURLConnection.HTTP_OK)
+        );
+        MatcherAssert.assertThat(
+            result.asJsonObject(),
+            Matchers.equalTo(body)
+        );
+    }
+
+    /**
+     * Should return (and store) the new Resource if the remote resource
+     * was modified, not the previously stored one.
+     */
+    @Test
+    public void shouldReturnModifiedResource() {
+        final URI uri = URI.create("/");
+        final JsonStorage storage = new JsonStorage.InMemory();
+        storage.storeResource(
+            CachedResource.fromResource(
+                uri,
+                new MockResource(
+                    HttpURLConnection.HTTP_OK,
+                    Json.createObjectBuilder().add("v", 1).build(),
+                    Map.of("ETag", List.of("etag-1"))
+                )
+            )
+        );
+        final JsonValue modified = Json.createObjectBuilder()
+            .add("v", 2)
+            .build();
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            new MockJsonResources(
+                req -> new MockResource(
+                    HttpURLConnection.HTTP_OK,
+                    modified,
+                    Map.of("ETag", List.of("etag-2"))
+                )
+            ),
+            storage
+        );
+        final Resource result = cacheResources.get(uri);
+        MatcherAssert.assertThat(
+            result.asJsonObject(), Matchers.equalTo(modified)
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(uri).etag(), Matchers.equalTo("etag-2")
+        );
+    }
+
+    /**
+     * Should serve a fresh stored Resource without any request, unless the
+     * request says no-cache.
+     */
+    @Test
+    public void shouldServeFreshResourceWithoutRequest() {
+        final URI uri = URI.create("/repos/a/b/labels");
+        final JsonStorage storage = new JsonStorage.InMemory();
+        final CachedResource stored = CachedResource.fromResource(
+            uri,
+            new MockResource(
+                HttpURLConnection.HTTP_OK,
+                JsonValue.EMPTY_JSON_ARRAY,
+                Map.of(
+                    "ETag", List.of("etag-1"),
+                    "Cache-Control", List.of("private, max-age=60")
+                )
+            )
+        );
+        storage.storeResource(stored);
+        final MockJsonResources resources = new MockJsonResources(
+            req -> new MockResource(
+                HttpURLConnection.HTTP_NOT_MODIFIED, JsonValue.NULL
+            )
+        );
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            resources, storage
+        );
+        MatcherAssert.assertThat(
+            cacheResources.get(uri), Matchers.sameInstance(stored)
+        );
+        MatcherAssert.assertThat(
+            cacheResources.getAsync(uri).join(), Matchers.sameInstance(stored)
+        );
+        MatcherAssert.assertThat(
+            resources.requests(), Matchers.emptyIterable()
+        );
+        cacheResources.get(
+            uri, () -> Map.of("Cache-Control", List.of("no-cache"))
+        );
+        MatcherAssert.assertThat(
+            resources.requests().first()
+                .getHeaders().get("If-None-Match").get(0),
+            Matchers.equalTo("etag-1")
+        );
+    }
+
+    /**
+     * A configured freshness window makes a revalidated Resource fresh
+     * again.
+     */
+    @Test
+    public void shouldRefreshRevalidatedResource() {
+        final URI uri = URI.create("/repos/a/b");
+        final JsonStorage storage = Mockito.mock(JsonStorage.class);
+        final CachedResource stale = Mockito.mock(CachedResource.class);
+        Mockito.when(stale.uri()).thenReturn(uri);
+        Mockito.when(stale.etag()).thenReturn("etag-1");
+        Mockito.when(stale.creationDate())
+            .thenReturn(LocalDateTime.now().minusHours(1));
+        Mockito.when(stale.headers()).thenReturn(Map.of());
+        final CachedResource refreshed = CachedResource.fromResource(
+            uri,
+            new MockResource(
+                HttpURLConnection.HTTP_OK,
+                JsonValue.EMPTY_JSON_OBJECT,
+                Map.of("ETag", List.of("etag-1"))
+            )
+        );
+        final Resource.Builder builder = new Resource.Builder(
+            stale,
+            JsonValue.EMPTY_JSON_OBJECT,
+            (status, body, headers) -> refreshed
+        );
+        Mockito.when(stale.newBuilder()).thenReturn(builder);
+        Mockito.when(storage.getResource(uri)).thenReturn(stale);
+        Mockito.when(storage.storeResource(Mockito.any(CachedResource.class)))
+            .thenAnswer(invocation -> invocation.getArguments()[0]);
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            new MockJsonResources(
+                req -> new MockResource(
+                    HttpURLConnection.HTTP_NOT_MODIFIED, JsonValue.NULL
+                )
+            ),
+            storage,
+            new Freshness().with("/repos/.+", Duration.ofMinutes(5))
+        );
+        final CachedResource result = (CachedResource) cacheResources.get(uri);
+        MatcherAssert.assertThat(result.etag(), Matchers.equalTo("etag-1"));
+        MatcherAssert.assertThat(
+            result.creationDate(),
+            Matchers.equalTo(refreshed.creationDate())
+        );
+        Mockito.verify(storage).storeResource(result);
+    }
+
+    /**
+     * A successful mutation removes the stored resources it affected,
+     * while a PATCH response is stored as the new state of the resource.
+     */
+    @Test
+    public void shouldInvalidateOnMutation() {
+        final String issue = "https://api.github.com/repos/o/r/issues/1";
+        final JsonStorage storage = new JsonStorage.InMemory();
+        for (final String uri : List.of(issue, issue + "/labels")) {
+            storage.storeResource(
+                CachedResource.fromResource(
+                    URI.create(uri),
+                    new MockResource(
+                        HttpURLConnection.HTTP_OK,
+                        JsonValue.EMPTY_JSON_OBJECT,
+                        Map.of("ETag", List.of("old"))
+                    )
+                )
+            );
+        }
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            new MockJsonResources(
+                req -> {
+                    final MockResource resource;
+                    if ("PATCH".equals(req.getMethod())) {
+                        resource = new MockResource(
+                            HttpURLConnection.HTTP_OK,
+                            Json.createObjectBuilder()
+                                .add("state", "closed").build(),
+                            Map.of("ETag", List.of("new"))
+                        );
+                    } else {
+                        resource = new MockResource(
+                            HttpURLConnection.HTTP_NO_CONTENT,
+                            JsonValue.NULL
+                        );
+                    }
+                    return resource;
+                }
+            ),
+            storage
+        );
+        cacheResources.delete(URI.create(issue + "/labels/bug"), null);
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create(issue + "/labels")),
+            Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create(issue)), Matchers.nullValue()
+        );
+        cacheResources.patchAsync(
+            URI.create(issue), JsonValue.EMPTY_JSON_OBJECT
+        ).join();
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create(issue)).etag(),
+            Matchers.equalTo("new")
+        );
+    }
+
+    /**
+     * A mutation also removes the cached listings of the parent, whatever
+     * their query (filters, pages).
+     */
+    @Test
+    public void shouldInvalidateListingsWithQuery() {
+        final String issues = "https://api.github.com/repos/o/r/issues";
+        final JsonStorage storage = new JsonStorage.InMemory();
+        for (final String uri : List.of(
+            issues + "?state=open", issues + "?state=open&page=2"
+        )) {
+            storage.storeResource(
+                CachedResource.fromResource(
+                    URI.create(uri),
+                    new MockResource(
+                        HttpURLConnection.HTTP_OK,
+                        JsonValue.EMPTY_JSON_ARRAY,
+                        Map.of("ETag", List.of("old"))
+                    )
+                )
+            );
+        }
+        new ConditionalJsonResources(this.mutations(), storage).patch(
+            URI.create(issues + "/1"), JsonValue.EMPTY_JSON_OBJECT
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create(issues + "?state=open")),
+            Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create(issues + "?state=open&page=2")),
+            Matchers.nullValue()
+        );
+    }
+
+    /**
+     * A failed mutation changes nothing, so nothing is removed.
+     */
+    @Test
+    public void shouldNotInvalidateOnFailedMutation() {
+        final URI issue = URI.create(
+            "https://api.github.com/repos/o/r/issues/1"
+        );
+        final JsonStorage storage = new JsonStorage.InMemory();
+        storage.storeResource(
+            CachedResource.fromResource(
+                issue,
+                new MockResource(
+                    HttpURLConnection.HTTP_OK,
+                    JsonValue.EMPTY_JSON_OBJECT,
+                    Map.of("ETag", List.of("old"))
+                )
+            )
+        );
+        new ConditionalJsonResources(
+            new MockJsonResources(
+                req -> new MockResource(
+                    HttpURLConnection.HTTP_FORBIDDEN, JsonValue.NULL
+                )
+            ),
+            storage
+        ).patch(issue, JsonValue.EMPTY_JSON_OBJECT);
+        MatcherAssert.assertThat(
+            storage.getResource(issue).etag(), Matchers.equalTo("old")
+        );
+    }
+
+    /**
+     * The outcomes of the GETs are recorded in the stats of the storage.
+     */
+    @Test
+    public void shouldRecordStats() {
+        final URI uri = URI.create("https://api.github.com/repos/o/r");
+        final BoundedJsonStorage storage = new BoundedJsonStorage();
+        final AtomicInteger calls = new AtomicInteger();
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            new MockJsonResources(
+                req -> {
+                    final MockResource resource;
+                    if (calls.getAndIncrement() == 0) {
+                        resource = new MockResource(
+                            HttpURLConnection.HTTP_OK,
+                            JsonValue.EMPTY_JSON_OBJECT,
+                            Map.of("ETag", List.of("etag-1"))
+                        );
+                    } else {
+                        resource = new MockResource(
+                            HttpURLConnection.HTTP_NOT_MODIFIED,
+                            JsonValue.NULL
+                        );
+                    }
+                    return resource;
+                }
+            ),
+            storage
+        );
+        cacheResources.get(uri);
+        cacheResources.get(uri);
+        cacheResources.getAsync(uri).join();
+        final JsonStorage.Stats stats = storage.stats();
+        MatcherAssert.assertThat(
+            stats.count(JsonStorage.Stats.Outcome.MISS), Matchers.is(1L)
+        );
+        MatcherAssert.assertThat(
+            stats.count(JsonStorage.Stats.Outcome.STORED), Matchers.is(1L)
+        );
+        MatcherAssert.assertThat(
+            stats.count(JsonStorage.Stats.Outcome.REVALIDATED),
+            Matchers.is(2L)
+        );
+        MatcherAssert.assertThat(stats.entries(), Matchers.is(1L));
+        MatcherAssert.assertThat(
+            stats.byPattern().keySet(),
+            Matchers.contains("/repos/{owner}/{repo}")
+        );
+    }
+
+    /**
+     * CachingJsonResources should delegate async POST http method.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldDelegatePostAsyncHttpMethod() {
+        final URI uri = URI.create("/");
+        final JsonResources resources = this.mutations();
+        final JsonResources cacheResources = new ConditionalJsonResources(
+            resources, Mockito.mock(JsonStorage.class)
+        );
+        cacheResources.postAsync(uri, JsonValue.NULL);
+
+        Mockito.verify(resources).postAsync(
+            org.mockito.Matchers.eq(uri),
+            org.mockito.Matchers.any(Supplier.class),
+            org.mockito.Matchers.eq(JsonValue.NULL));
+    }
+
     /**
      * CachingJsonResources should create new instance when authenticated.
      */
@@ -428,4 +957,270 @@ public final class ConditionalJsonResourcesTestCase {
             Matchers.not(Matchers.equalTo(cacheResources))
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Responses to authenticated requests are stored in the identity's
+     * partition: another identity does not see them, but a mutation made
+     * by it removes them.
+     */
+    @Test
+    public void shouldPartitionByIdentity() {
+        final JsonStorage storage = new JsonStorage.InMemory();
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        final JsonValue body = Json.createObjectBuilder()
+            .add("private", true)
+            .build();
+        final MockJsonResources remote = new MockJsonResources(
+            req -> {
+                final MockResource response;
+                if ("GET".equals(req.getMethod())) {
+                    response = new MockResource(
+                        HttpURLConnection.HTTP_OK,
+                        body,
+                        Map.of(
+                            "ETag", List.of("etag-123"),
+                            "Cache-Control", List.of("private, max-age=60")
+                        )
+                    );
+                } else {
+                    response = new MockResource(
+                        HttpURLConnection.HTTP_NO_CONTENT, JsonValue.NULL
+                    );
+                }
+                return response;
+            }
+        );
+        final JsonResources cache = this.authenticating(remote, storage);
+        final JsonResources first = cache.authenticated(
+            new AccessToken.Github("first")
+        );
+        final JsonResources second = cache.authenticated(
+            new AccessToken.Github("second")
+        );
+
+        first.get(uri);
+        first.get(uri);
+        MatcherAssert.assertThat(
+            remote.requests(), Matchers.iterableWithSize(1)
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(uri), Matchers.nullValue()
+        );
+        second.get(uri);
+        MatcherAssert.assertThat(
+            remote.requests(), Matchers.iterableWithSize(2)
+        );
+        MatcherAssert.assertThat(
+            remote.requests().last().getHeaders()
+                .containsKey("If-None-Match"),
+            Matchers.is(false)
+        );
+        second.delete(uri, JsonValue.NULL);
+        first.get(uri);
+        MatcherAssert.assertThat(
+            remote.requests(), Matchers.iterableWithSize(4)
+        );
+        MatcherAssert.assertThat(
+            remote.requests().last().getHeaders()
+                .containsKey("If-None-Match"),
+            Matchers.is(false)
+        );
+    }
+
+    /**
+     * A mutation removes the copies of all identities, even if they were
+     * stored through another chain (the providers build a new chain for
+     * every call).
+     */
+    @Test
+    public void shouldInvalidateAllPartitions() {
+        final BoundedJsonStorage storage = new BoundedJsonStorage();
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        final MockJsonResources remote = new MockJsonResources(
+            req -> {
+                final MockResource response;
+                if ("GET".equals(req.getMethod())) {
+                    response = new MockResource(
+                        HttpURLConnection.HTTP_OK,
+                        JsonValue.EMPTY_JSON_OBJECT,
+                        Map.of(
+                            "ETag", List.of("etag-123"),
+                            "Cache-Control", List.of("private, max-age=60")
+                        )
+                    );
+                } else {
+                    response = new MockResource(
+                        HttpURLConnection.HTTP_NO_CONTENT, JsonValue.NULL
+                    );
+                }
+                return response;
+            }
+        );
+        this.authenticating(remote, storage)
+            .authenticated(new AccessToken.Github("first")).get(uri);
+        this.authenticating(remote, storage)
+            .authenticated(new AccessToken.Github("second")).get(uri);
+        MatcherAssert.assertThat(storage.size(), Matchers.is(2));
+        this.authenticating(remote, storage)
+            .authenticated(new AccessToken.Github("third"))
+            .delete(uri, JsonValue.NULL);
+        MatcherAssert.assertThat(storage.size(), Matchers.is(0));
+    }
+
+    /**
+     * If both the identity's own resource and a shared one are stored,
+     * the newer one is served.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void shouldServeNewerOfOwnAndShared() throws Exception {
+        final JsonStorage storage = new JsonStorage.InMemory();
+        final URI uri = URI.create("https://api.github.com/repos/a/b/issues/1");
+        final MockJsonResources remote = new MockJsonResources(
+            req -> new MockResource(
+                HttpURLConnection.HTTP_OK,
+                Json.createObjectBuilder().add("state", "open").build(),
+                Map.of(
+                    "ETag", List.of("etag-123"),
+                    "Cache-Control", List.of("private, max-age=60")
+                )
+            )
+        );
+        final JsonResources first = this.authenticating(remote, storage)
+            .authenticated(new AccessToken.Github("first"));
+        first.get(uri);
+        Thread.sleep(10);
+        new ReceivedResources(storage).store(
+            uri,
+            Json.createObjectBuilder().add("state", "closed").build(),
+            Instant.now()
+        );
+        MatcherAssert.assertThat(
+            first.get(uri).asJsonObject().getString("state"),
+            Matchers.equalTo("closed")
+        );
+        MatcherAssert.assertThat(
+            remote.requests(), Matchers.iterableWithSize(1)
+        );
+    }
+
+    /**
+     * Provably public responses (Cache-Control: public, no
+     * Vary: Authorization) are shared by all identities.
+     */
+    @Test
+    public void shouldSharePublicResources() {
+        final JsonStorage storage = new JsonStorage.InMemory();
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        final MockJsonResources remote = new MockJsonResources(
+            req -> new MockResource(
+                HttpURLConnection.HTTP_OK,
+                Json.createObjectBuilder().add("private", false).build(),
+                Map.of(
+                    "ETag", List.of("etag-123"),
+                    "Cache-Control", List.of("public, max-age=60")
+                )
+            )
+        );
+        final JsonResources cache = this.authenticating(remote, storage);
+
+        cache.authenticated(new AccessToken.Github("first")).get(uri);
+        final Resource shared = cache.authenticated(
+            new AccessToken.Github("second")
+        ).get(uri);
+
+        MatcherAssert.assertThat(
+            remote.requests(), Matchers.iterableWithSize(1)
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(uri), Matchers.notNullValue()
+        );
+        MatcherAssert.assertThat(
+            shared.asJsonObject().getBoolean("private"),
+            Matchers.is(false)
+        );
+    }
+
+    /**
+     * Shared responses which vary by Authorization are not served to
+     * an authenticated identity.
+     */
+    @Test
+    public void shouldHonorVaryAuthorization() {
+        final JsonStorage storage = new JsonStorage.InMemory();
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        final MockJsonResources remote = new MockJsonResources(
+            req -> new MockResource(
+                HttpURLConnection.HTTP_OK,
+                Json.createObjectBuilder().add("private", false).build(),
+                Map.of(
+                    "ETag", List.of("etag-123"),
+                    "Vary", List.of("Accept, Authorization")
+                )
+            )
+        );
+        final JsonResources cache = this.authenticating(remote, storage);
+
+        cache.get(uri);
+        MatcherAssert.assertThat(
+            storage.getResource(uri), Matchers.notNullValue()
+        );
+        cache.authenticated(new AccessToken.Github("first")).get(uri);
+
+        MatcherAssert.assertThat(
+            remote.requests(), Matchers.iterableWithSize(2)
+        );
+        MatcherAssert.assertThat(
+            remote.requests().last().getHeaders()
+                .containsKey("If-None-Match"),
+            Matchers.is(false)
+        );
+    }
+
+    /**
+     * ConditionalJsonResources over the given remote, which is also
+     * the authenticated delegate of every identity.
+     * @param remote Remote resources.
+     * @param storage Storage.
+     * @return JsonResources.
+     */
+    private JsonResources authenticating(
+        final MockJsonResources remote,
+        final JsonStorage storage
+    ) {
+        final JsonResources delegate = Mockito.mock(
+            JsonResources.class,
+            (Answer<Object>) invocation -> invocation.getMethod()
+                .invoke(remote, invocation.getArguments())
+        );
+        Mockito.doReturn(remote).when(delegate)
+            .authenticated(Mockito.any(AccessToken.class));
+        return new ConditionalJsonResources(delegate, storage);
+    }
+
+    /**
+     * Mock JsonResources answering every mutation with 204 No Content.
+     * @return JsonResources.
+     */
+    private JsonResources mutations() {
+        final Resource noContent = new MockResource(
+            HttpURLConnection.HTTP_NO_CONTENT, JsonValue.NULL
+        );
+        return Mockito.mock(
+            JsonResources.class,
+            (Answer<Object>) invocation -> {
+                final Object answer;
+                if (invocation.getMethod().getReturnType()
+                    == CompletableFuture.class) {
+                    answer = CompletableFuture.completedFuture(noContent);
+                } else if (invocation.getMethod().getReturnType()
+                    == Resource.class) {
+                    answer = noContent;
+                } else {
+                    answer = null;
+                }
+                return answer;
+            }
+        );
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Unit tests for {@link Deadline}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class DeadlineTestCase {
+
+    /**
+     * Outside of any deadline, the current one never passes.
+     */
+    @Test
+    public void noDeadlineByDefault() {
+        final Deadline current = Deadline.current();
+        MatcherAssert.assertThat(current.instant(), Matchers.is(Instant.MAX));
+        MatcherAssert.assertThat(current.passed(), Matchers.is(false));
+        MatcherAssert.assertThat(
+            current.timeout(Duration.ofSeconds(60)),
+            Matchers.equalTo(Duration.ofSeconds(60))
+        );
+    }
+
+    /**
+     * Nested deadlines keep the earlier one and are restored after.
+     */
+    @Test
+    public void nestedKeepsEarlierDeadline() {
+        final Instant outer = Instant.now().plusSeconds(10);
+        final Instant inner = Instant.now().plusSeconds(100);
+        new Deadline(outer).run(
+            () -> {
+                new Deadline(inner).run(
+                    () -> MatcherAssert.assertThat(
+                        Deadline.current().instant(), Matchers.is(outer)
+                    )
+                );
+                MatcherAssert.assertThat(
+                    Deadline.current().instant(), Matchers.is(outer)
+                );
+            }
+        );
+        MatcherAssert.assertThat(
+            Deadline.current().instant(), Matchers.is(Instant.MAX)
+        );
+    }
+
+    /**
+     * The timeout is shortened to the time left.
+     */
+    @Test
+    public void shortensTimeout() {
+        new Deadline(Duration.ofSeconds(5)).run(
+            () -> MatcherAssert.assertThat(
+                Deadline.current().timeout(Duration.ofSeconds(60)),
+                Matchers.lessThanOrEqualTo(Duration.ofSeconds(5))
+            )
+        );
+    }
+
+    /**
+     * Once the deadline passed, no timeout is given anymore.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void noTimeoutAfterDeadline() {
+        final Deadline passed = new Deadline(Instant.now().minusMillis(1));
+        MatcherAssert.assertThat(passed.passed(), Matchers.is(true));
+        MatcherAssert.assertThat(
+            passed.remaining(), Matchers.equalTo(Duration.ZERO)
+        );
+        passed.timeout(Duration.ofSeconds(1));
+    }
+}
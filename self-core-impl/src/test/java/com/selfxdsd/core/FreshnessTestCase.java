@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link Freshness}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class FreshnessTestCase {
+
+    /**
+     * Without patterns or max-age, resources are never fresh.
+     */
+    @Test
+    public void neverFreshByDefault() {
+        final CachedResource resource = this.resource("/repos/a/b", null);
+        MatcherAssert.assertThat(
+            new Freshness().window(resource), Matchers.is(Duration.ZERO)
+        );
+        MatcherAssert.assertThat(
+            new Freshness().fresh(resource), Matchers.is(false)
+        );
+    }
+
+    /**
+     * The upstream max-age is honored, unless caching is forbidden.
+     */
+    @Test
+    public void honorsMaxAge() {
+        MatcherAssert.assertThat(
+            new Freshness().window(
+                this.resource("/user", "private, max-age=60, s-maxage=60")
+            ),
+            Matchers.is(Duration.ofSeconds(60))
+        );
+        MatcherAssert.assertThat(
+            new Freshness().fresh(
+                this.resource("/user", "private, max-age=60")
+            ),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            new Freshness().window(
+                this.resource("/user", "no-cache, max-age=60")
+            ),
+            Matchers.is(Duration.ZERO)
+        );
+        MatcherAssert.assertThat(
+            new Freshness().window(this.resource("/user", "max-age=abc")),
+            Matchers.is(Duration.ZERO)
+        );
+    }
+
+    /**
+     * The first matching pattern wins over the max-age.
+     */
+    @Test
+    public void patternsComeFirst() {
+        final Freshness freshness = new Freshness()
+            .with(".+/labels", Duration.ofMinutes(10))
+            .with("/repos/[^/]+/[^/]+(/.*)?", Duration.ofMinutes(1))
+            .with("/repos/[^/]+/[^/]+/hooks", Duration.ZERO);
+        MatcherAssert.assertThat(
+            freshness.window(
+                this.resource("/repos/a/b/labels", "max-age=60")
+            ),
+            Matchers.is(Duration.ofMinutes(10))
+        );
+        MatcherAssert.assertThat(
+            freshness.window(this.resource("/repos/a/b", null)),
+            Matchers.is(Duration.ofMinutes(1))
+        );
+        MatcherAssert.assertThat(
+            freshness.window(this.resource("/user", "max-age=5")),
+            Matchers.is(Duration.ofSeconds(5))
+        );
+    }
+
+    /**
+     * Cached resource.
+     * @param path URI path.
+     * @param cacheControl Cache-Control header or null.
+     * @return CachedResource.
+     */
+    private CachedResource resource(
+        final String path, final String cacheControl
+    ) {
+        final Map<String, List<String>> headers = new HashMap<>();
+        headers.put("ETag", List.of("etag"));
+        if (cacheControl != null) {
+            headers.put("Cache-Control", List.of(cacheControl));
+        }
+        return CachedResource.fromResource(
+            URI.create("https://api.github.com" + path),
+            new MockResource(200, JsonValue.EMPTY_JSON_OBJECT, headers)
+        );
+    }
+}
@@ -119,6 +119,45 @@ public final class GitlabRepoLabelsTestCase {
         );
     }
 
+    /**
+     * GitlabRepoLabels can add more labels at once. It returns false
+     * if one of them could not be added.
+     */
+    @Test
+    public void addsMoreLabels() {
+        final MockJsonResources resources =
+            new MockJsonResources(
+                req -> {
+                    final int status;
+                    if ("dup".equals(
+                        ((JsonObject) req.getBody()).getString("name")
+                    )) {
+                        status = HttpURLConnection.HTTP_CONFLICT;
+                    } else {
+                        status = HttpURLConnection.HTTP_CREATED;
+                    }
+                    return new MockJsonResources.MockResource(
+                        status, JsonValue.NULL
+                    );
+                }
+            );
+        final Labels repoLabels = new GitlabRepoLabels(
+            URI.create(
+                "https://gitlab.com/api/v4/projects/"
+                + "/amihaiemil%2Ftestrepo/labels"
+            ),
+            resources
+        );
+        MatcherAssert.assertThat(
+            repoLabels.add("bug", "dup", "enhancement"),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            resources.requests(),
+            Matchers.iterableWithSize(3)
+        );
+    }
+
     /**
      * GitlabRepoLabels can remove a label. Here, we expect
      * 2 API calls to be made: 1 for fetching all labels and 1 for
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for {@link HedgedJsonResources}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class HedgedJsonResourcesTestCase {
+
+    /**
+     * Github URI.
+     */
+    private static final URI URL = URI.create("https://api.github.com/user");
+
+    /**
+     * Latencies computes the percentile only after enough samples.
+     */
+    @Test
+    public void computesPercentile() {
+        final HedgedJsonResources.Latencies latencies =
+            new HedgedJsonResources.Latencies();
+        final Resource ok = new MockResource(200, JsonValue.NULL);
+        for (int idx = 1; idx < 20; ++idx) {
+            latencies.record(idx, ok);
+        }
+        MatcherAssert.assertThat(
+            latencies.percentile(95).isPresent(), Matchers.is(false)
+        );
+        latencies.record(100, ok);
+        MatcherAssert.assertThat(
+            latencies.percentile(95).getAsLong(), Matchers.is(19L)
+        );
+        MatcherAssert.assertThat(
+            latencies.percentile(100).getAsLong(), Matchers.is(100L)
+        );
+    }
+
+    /**
+     * A slow GET is hedged and the hedge's answer is returned, while the
+     * primary call is cancelled.
+     */
+    @Test
+    public void hedgesSlowGet() throws Exception {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final CompletableFuture<Resource> primary = new CompletableFuture<>();
+        final Resource fast = new MockResource(200, JsonValue.NULL);
+        Mockito.when(delegate.getAsync(Mockito.any(), Mockito.any()))
+            .thenReturn(primary)
+            .thenReturn(CompletableFuture.completedFuture(fast));
+        final HedgedJsonResources resources = new HedgedJsonResources(
+            delegate, "anonymous", 95,
+            this.observed(new MockResource(200, JsonValue.NULL)),
+            new AtomicLong()
+        );
+        MatcherAssert.assertThat(
+            resources.get(URL, Map::of), Matchers.sameInstance(fast)
+        );
+        MatcherAssert.assertThat(resources.hedges(), Matchers.is(1L));
+        primary.handle((resource, error) -> error).get(1, TimeUnit.SECONDS);
+        MatcherAssert.assertThat(primary.isCancelled(), Matchers.is(true));
+        Mockito.verify(delegate, Mockito.times(2))
+            .getAsync(Mockito.any(), Mockito.any());
+    }
+
+    /**
+     * Through RateLimitedJsonResources, both the primary GET and the hedge
+     * count against the rate limit, even though the loser is cancelled.
+     */
+    @Test
+    public void hedgesCountAgainstRateLimit() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final Resource fast = new MockResource(200, JsonValue.NULL);
+        Mockito.when(delegate.getAsync(Mockito.any(), Mockito.any()))
+            .thenReturn(new CompletableFuture<>())
+            .thenReturn(CompletableFuture.completedFuture(fast));
+        final Registry<RateLimitedJsonResources.Budget> budgets =
+            new Registry<>(Duration.ofHours(1));
+        budgets.get(
+            "api.github.com|anonymous|core",
+            RateLimitedJsonResources.Budget::new
+        ).update(4000, 5000, Instant.now().getEpochSecond() + 3600);
+        final RateLimitedJsonResources limited = new RateLimitedJsonResources(
+            delegate, "anonymous", budgets, Duration.ofSeconds(1)
+        );
+        final HedgedJsonResources resources = new HedgedJsonResources(
+            limited, "anonymous", 95,
+            this.observed(new MockResource(200, JsonValue.NULL)),
+            new AtomicLong()
+        );
+        MatcherAssert.assertThat(
+            resources.get(URL, Map::of), Matchers.sameInstance(fast)
+        );
+        MatcherAssert.assertThat(resources.hedges(), Matchers.is(1L));
+        MatcherAssert.assertThat(
+            limited.remaining(URL), Matchers.equalTo(OptionalLong.of(3998))
+        );
+    }
+
+    /**
+     * A failed hedge does not fail the GET: the primary still wins if it
+     * succeeds afterwards.
+     */
+    @Test
+    public void primaryWinsAfterFailedHedge() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final CompletableFuture<Resource> primary = new CompletableFuture<>();
+        final Resource slow = new MockResource(200, JsonValue.NULL);
+        Mockito.when(delegate.getAsync(Mockito.any(), Mockito.any()))
+            .thenReturn(primary)
+            .thenReturn(
+                CompletableFuture.failedFuture(
+                    new IllegalStateException("hedge failed")
+                )
+            );
+        final HedgedJsonResources resources = new HedgedJsonResources(
+            delegate, "anonymous", 95,
+            this.observed(new MockResource(200, JsonValue.NULL)),
+            new AtomicLong()
+        );
+        final CompletableFuture<Resource> result =
+            resources.getAsync(URL, Map::of);
+        Mockito.verify(delegate, Mockito.timeout(1000).times(2))
+            .getAsync(Mockito.any(), Mockito.any());
+        MatcherAssert.assertThat(result.isDone(), Matchers.is(false));
+        primary.complete(slow);
+        MatcherAssert.assertThat(
+            result.join(), Matchers.sameInstance(slow)
+        );
+    }
+
+    /**
+     * The GET fails once both the primary and the hedge failed.
+     */
+    @Test
+    public void failsWhenPrimaryAndHedgeFail() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final CompletableFuture<Resource> primary = new CompletableFuture<>();
+        Mockito.when(delegate.getAsync(Mockito.any(), Mockito.any()))
+            .thenReturn(primary)
+            .thenReturn(
+                CompletableFuture.failedFuture(
+                    new IllegalStateException("hedge failed")
+                )
+            );
+        final HedgedJsonResources resources = new HedgedJsonResources(
+            delegate, "anonymous", 95,
+            this.observed(new MockResource(200, JsonValue.NULL)),
+            new AtomicLong()
+        );
+        final CompletableFuture<Resource> result =
+            resources.getAsync(URL, Map::of);
+        Mockito.verify(delegate, Mockito.timeout(1000).times(2))
+            .getAsync(Mockito.any(), Mockito.any());
+        primary.completeExceptionally(
+            new IllegalStateException("primary failed")
+        );
+        MatcherAssert.assertThat(
+            result.isCompletedExceptionally(), Matchers.is(true)
+        );
+    }
+
+    /**
+     * There are no hedges before enough latencies are known.
+     */
+    @Test
+    public void doesNotHedgeWithoutSamples() throws Exception {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        Mockito.when(delegate.getAsync(Mockito.any(), Mockito.any()))
+            .thenReturn(new CompletableFuture<>());
+        final HedgedJsonResources resources = new HedgedJsonResources(
+            delegate, "anonymous", 95,
+            new Registry<>(Duration.ofHours(1)), new AtomicLong()
+        );
+        final CompletableFuture<Resource> result = resources
+            .getAsync(URL, Map::of);
+        TimeUnit.MILLISECONDS.sleep(100);
+        MatcherAssert.assertThat(result.isDone(), Matchers.is(false));
+        MatcherAssert.assertThat(resources.hedges(), Matchers.is(0L));
+        Mockito.verify(delegate, Mockito.times(1))
+            .getAsync(Mockito.any(), Mockito.any());
+    }
+
+    /**
+     * There are no hedges when the rate limit is almost exhausted.
+     */
+    @Test
+    public void doesNotHedgeWithoutHeadroom() throws Exception {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        Mockito.when(delegate.getAsync(Mockito.any(), Mockito.any()))
+            .thenReturn(new CompletableFuture<>());
+        final HedgedJsonResources resources = new HedgedJsonResources(
+            delegate, "anonymous", 95,
+            this.observed(
+                new MockResource(
+                    200, JsonValue.NULL,
+                    Map.of(
+                        "X-RateLimit-Limit", List.of("5000"),
+                        "X-RateLimit-Remaining", List.of("100")
+                    )
+                )
+            ),
+            new AtomicLong()
+        );
+        final CompletableFuture<Resource> result = resources
+            .getAsync(URL, Map::of);
+        TimeUnit.MILLISECONDS.sleep(100);
+        MatcherAssert.assertThat(result.isDone(), Matchers.is(false));
+        MatcherAssert.assertThat(resources.hedges(), Matchers.is(0L));
+    }
+
+    /**
+     * Only GETs are hedged, the other methods go to the delegate.
+     */
+    @Test
+    public void delegatesWrites() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final Resource created = new MockResource(201, JsonValue.NULL);
+        Mockito.when(
+            delegate.post(Mockito.any(), Mockito.any(), Mockito.any())
+        ).thenReturn(created);
+        MatcherAssert.assertThat(
+            new HedgedJsonResources(delegate)
+                .post(URL, Map::of, JsonValue.EMPTY_JSON_OBJECT),
+            Matchers.sameInstance(created)
+        );
+    }
+
+    /**
+     * Latencies of 1ms observed on github, for anonymous.
+     * @param resource Observed response.
+     * @return Latencies by host and identity.
+     */
+    private Registry<HedgedJsonResources.Latencies> observed(
+        final Resource resource
+    ) {
+        final HedgedJsonResources.Latencies latencies =
+            new HedgedJsonResources.Latencies();
+        for (int idx = 0; idx < 20; ++idx) {
+            latencies.record(TimeUnit.MILLISECONDS.toNanos(1), resource);
+        }
+        final Registry<HedgedJsonResources.Latencies> registry =
+            new Registry<>(Duration.ofHours(1));
+        registry.get("api.github.com|anonymous", () -> latencies);
+        return registry;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.net.URI;
+
+/**
+ * Unit tests for {@link Invalidations}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class InvalidationsTestCase {
+
+    /**
+     * Github repo URI.
+     */
+    private static final String REPO = "https://api.github.com/repos/o/r";
+
+    /**
+     * Closing an issue affects the issue and the issues list.
+     */
+    @Test
+    public void patchedIssue() {
+        MatcherAssert.assertThat(
+            new Invalidations().affected(URI.create(REPO + "/issues/1")),
+            Matchers.contains(
+                URI.create(REPO + "/issues/1"),
+                URI.create(REPO + "/issues")
+            )
+        );
+    }
+
+    /**
+     * Removing a label affects the issue and its labels.
+     */
+    @Test
+    public void removedLabel() {
+        MatcherAssert.assertThat(
+            new Invalidations().affected(
+                URI.create(REPO + "/issues/1/labels/bug")
+            ),
+            Matchers.containsInAnyOrder(
+                URI.create(REPO + "/issues/1/labels/bug"),
+                URI.create(REPO + "/issues/1/labels"),
+                URI.create(REPO + "/issues/1")
+            )
+        );
+    }
+
+    /**
+     * Adding a comment affects the comments list and the issue.
+     */
+    @Test
+    public void postedComment() {
+        MatcherAssert.assertThat(
+            new Invalidations().affected(
+                URI.create(REPO + "/issues/1/comments")
+            ),
+            Matchers.containsInAnyOrder(
+                URI.create(REPO + "/issues/1/comments"),
+                URI.create(REPO + "/issues/1")
+            )
+        );
+    }
+
+    /**
+     * Custom rules are applied and encoded paths (Gitlab) are kept.
+     */
+    @Test
+    public void customRule() {
+        final String project = "https://gitlab.com/api/v4/projects/o%2Fr";
+        MatcherAssert.assertThat(
+            new Invalidations()
+                .with("(/api/v4/projects/[^/]+)/members/\\d+", "$1")
+                .affected(URI.create(project + "/members/7?x=1")),
+            Matchers.containsInAnyOrder(
+                URI.create(project + "/members/7"),
+                URI.create(project + "/members"),
+                URI.create(project)
+            )
+        );
+    }
+}
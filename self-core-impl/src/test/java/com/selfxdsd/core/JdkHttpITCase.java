@@ -33,11 +33,24 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonException;
 import javax.json.JsonObject;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Integration tests for {@link com.selfxdsd.core.JsonResources.JdkHttp}.
@@ -86,6 +99,237 @@ public final class JdkHttpITCase {
         }
     }
 
+    /**
+     * A JdkHttp with a dedicated client (own executor and connect timeout)
+     * can make authenticated GET requests, sharing the client
+     * with its authenticated copy.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void getJsonObjectWithDedicatedClient() throws IOException {
+        final JsonObject json = Json.createObjectBuilder()
+            .add("from", "server")
+            .build();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(
+                    HttpURLConnection.HTTP_OK,
+                    json.toString()
+                )
+            ).start(this.resource.port())
+        ) {
+            final JsonResources resources = new JsonResources.JdkHttp(
+                HttpClient.Version.HTTP_1_1,
+                Duration.ofSeconds(5),
+                executor
+            ).authenticated(new AccessToken.Github("123token456"));
+            final Resource response = resources.get(container.home());
+            MatcherAssert.assertThat(
+                response.asJsonObject(),
+                Matchers.equalTo(json)
+            );
+            MatcherAssert.assertThat(
+                container.take().headers().get("Authorization").get(0),
+                Matchers.equalTo("token 123token456")
+            );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A JSON body is parsed once and then reused, also when building a
+     * new Resource from the response.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void getJsonArrayParsedOnce() throws IOException {
+        final JsonArray json = Json.createArrayBuilder()
+            .add(Json.createObjectBuilder().add("from", "server"))
+            .build();
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(
+                    HttpURLConnection.HTTP_OK,
+                    json.toString()
+                ).withHeader("Content-Type", "application/json")
+            ).start(this.resource.port())
+        ) {
+            final Resource response = new JsonResources.JdkHttp(true)
+                .get(container.home());
+            MatcherAssert.assertThat(
+                response.asJsonArray(),
+                Matchers.sameInstance(response.asJsonArray())
+            );
+            MatcherAssert.assertThat(
+                response.toString(),
+                Matchers.equalTo(json.toString())
+            );
+            MatcherAssert.assertThat(
+                response.newBuilder()
+                    .status(HttpURLConnection.HTTP_CREATED)
+                    .build()
+                    .asJsonArray(),
+                Matchers.sameInstance(response.asJsonArray())
+            );
+        }
+    }
+
+    /**
+     * A body which is not JSON is kept as text.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void keepsNonJsonBodyAsText() throws IOException {
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(
+                    HttpURLConnection.HTTP_BAD_GATEWAY,
+                    "<html>Bad Gateway</html>"
+                ).withHeader("Content-Type", "text/html")
+            ).start(this.resource.port())
+        ) {
+            final Resource response = new JsonResources.JdkHttp(true)
+                .get(container.home());
+            MatcherAssert.assertThat(
+                response.statusCode(),
+                Matchers.equalTo(HttpURLConnection.HTTP_BAD_GATEWAY)
+            );
+            MatcherAssert.assertThat(
+                response.toString(),
+                Matchers.equalTo("<html>Bad Gateway</html>")
+            );
+        }
+    }
+
+    /**
+     * A malformed JSON body is kept as text and reading it as JSON fails
+     * with a message showing it.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void keepsMalformedJsonAsText() throws IOException {
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(
+                    HttpURLConnection.HTTP_OK,
+                    "{\"login\": "
+                ).withHeader("Content-Type", "application/json")
+            ).start(this.resource.port())
+        ) {
+            final Resource response = new JsonResources.JdkHttp(true)
+                .get(container.home());
+            MatcherAssert.assertThat(
+                response.toString(),
+                Matchers.equalTo("{\"login\": ")
+            );
+            try {
+                response.asJsonObject();
+                MatcherAssert.assertThat("Expected exception", false);
+            } catch (final JsonException ex) {
+                MatcherAssert.assertThat(
+                    ex.getMessage(),
+                    Matchers.endsWith("is not valid JSON: {\"login\": ")
+                );
+            }
+        }
+    }
+
+    /**
+     * We can GET a JsonObject asynchronously.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void getJsonObjectAsync() throws IOException {
+        final JsonObject json = Json.createObjectBuilder()
+            .add("from", "server")
+            .build();
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(
+                    HttpURLConnection.HTTP_OK,
+                    json.toString()
+                )
+            ).start(this.resource.port())
+        ) {
+            final JsonResources resources = new JsonResources.JdkHttp(true);
+            final Resource response = resources
+                .getAsync(container.home())
+                .join();
+            MatcherAssert.assertThat(
+                response.asJsonObject(),
+                Matchers.equalTo(json)
+            );
+            MatcherAssert.assertThat(
+                container.take().method(),
+                Matchers.equalTo("GET")
+            );
+        }
+    }
+
+    /**
+     * Cancelling an async GET only drops its response: the request still
+     * reaches the server and the client keeps working.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void cancelledAsyncRequestIsDropped() throws IOException {
+        final JsonObject json = Json.createObjectBuilder()
+            .add("from", "server")
+            .build();
+        try(
+            final MkContainer container = new MkGrizzlyContainer()
+                .next(
+                    new MkAnswer.Simple(
+                        HttpURLConnection.HTTP_OK, json.toString()
+                    )
+                )
+                .next(
+                    new MkAnswer.Simple(
+                        HttpURLConnection.HTTP_OK, json.toString()
+                    )
+                )
+                .start(this.resource.port())
+        ) {
+            final JsonResources resources = new JsonResources.JdkHttp(true);
+            final CompletableFuture<Resource> dropped = resources
+                .getAsync(container.home());
+            dropped.cancel(true);
+            MatcherAssert.assertThat(
+                resources.getAsync(container.home()).join().asJsonObject(),
+                Matchers.equalTo(json)
+            );
+            MatcherAssert.assertThat(
+                container.take().method(), Matchers.equalTo("GET")
+            );
+            MatcherAssert.assertThat(
+                container.take().method(), Matchers.equalTo("GET")
+            );
+        }
+    }
+
+    /**
+     * An async request which fails completes with IllegalStateException.
+     * @throws IOException If something goes wrong.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void failedAsyncRequestThrowsIse() throws IOException {
+        final URI home;
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK)
+            ).start(this.resource.port())
+        ) {
+            home = container.home();
+        }
+        JsonResources.join(
+            new JsonResources.JdkHttp(true).postAsync(
+                home, Json.createObjectBuilder().build()
+            )
+        );
+    }
+
     /**
      * We can GET a JsonObject from the server with no access token and
      * request having other headers.
@@ -519,4 +763,124 @@ public final class JdkHttpITCase {
             );
         }
     }
+
+    /**
+     * With compression on, it asks for gzip/deflate and decompresses
+     * a gzip body while parsing it.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void getsGzipCompressedJson() throws IOException {
+        final JsonObject json = Json.createObjectBuilder()
+            .add("from", "gzip")
+            .build();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK)
+                    .withBody(bytes.toByteArray())
+                    .withHeader("Content-Type", "application/json")
+                    .withHeader("Content-Encoding", "gzip")
+            ).start(this.resource.port())
+        ) {
+            final Resource response = new JsonResources.JdkHttp(true, true)
+                .get(container.home());
+            MatcherAssert.assertThat(
+                response.asJsonObject(),
+                Matchers.equalTo(json)
+            );
+            MatcherAssert.assertThat(
+                container.take().headers().get("Accept-Encoding").get(0),
+                Matchers.equalTo("gzip, deflate")
+            );
+        }
+    }
+
+    /**
+     * It decompresses a deflate body.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void getsDeflateCompressedJson() throws IOException {
+        final JsonObject json = Json.createObjectBuilder()
+            .add("from", "deflate")
+            .build();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (
+            final DeflaterOutputStream deflate = new DeflaterOutputStream(
+                bytes
+            )
+        ) {
+            deflate.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK)
+                    .withBody(bytes.toByteArray())
+                    .withHeader("Content-Type", "application/json")
+                    .withHeader("Content-Encoding", "deflate")
+            ).start(this.resource.port())
+        ) {
+            final Resource response = new JsonResources.JdkHttp(true, true)
+                .get(container.home());
+            MatcherAssert.assertThat(
+                response.asJsonObject(),
+                Matchers.equalTo(json)
+            );
+        }
+    }
+
+    /**
+     * Without compression, it does not send Accept-Encoding.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void noAcceptEncodingByDefault() throws IOException {
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "{}")
+            ).start(this.resource.port())
+        ) {
+            new JsonResources.JdkHttp(true).get(container.home());
+            MatcherAssert.assertThat(
+                container.take().headers().containsKey("Accept-Encoding"),
+                Matchers.is(false)
+            );
+        }
+    }
+
+    /**
+     * No request is sent after the current deadline passed.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void abandonsRequestAfterDeadline() throws IOException {
+        try(
+            final MkContainer container = new MkGrizzlyContainer().next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "{}")
+            ).start(this.resource.port())
+        ) {
+            final JsonResources resources = new JsonResources.JdkHttp(true);
+            new Deadline(Instant.now().minusSeconds(1)).run(
+                () -> {
+                    try {
+                        resources.get(container.home());
+                        MatcherAssert.assertThat("Expected exception", false);
+                    } catch (final IllegalStateException ex) {
+                        MatcherAssert.assertThat(
+                            ex.getMessage(), Matchers.startsWith("Deadline")
+                        );
+                    }
+                }
+            );
+            MatcherAssert.assertThat(
+                resources.get(container.home()).statusCode(),
+                Matchers.is(HttpURLConnection.HTTP_OK)
+            );
+            MatcherAssert.assertThat(container.queries(), Matchers.is(1));
+        }
+    }
 }
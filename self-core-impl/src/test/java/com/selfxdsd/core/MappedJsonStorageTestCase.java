@@ -0,0 +1,340 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.json.Json;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for {@link MappedJsonStorage}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class MappedJsonStorageTestCase {
+
+    /**
+     * Temporary folder for the segments.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Stored resources are still there after a restart.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void keepsResourcesAfterRestart() throws Exception {
+        final Path dir = this.folder.newFolder().toPath();
+        final MappedJsonStorage storage = new MappedJsonStorage(dir);
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/a")), Matchers.nullValue()
+        );
+        storage.storeResource(this.resource("/a", "first", "etag-1"));
+        storage.storeResource(this.resource("/b", "other", "etag-b"));
+        storage.storeResource(this.resource("/a", "second", "etag-2"));
+        final MappedJsonStorage restarted = new MappedJsonStorage(dir);
+        final CachedResource found = restarted.getResource(URI.create("/a"));
+        MatcherAssert.assertThat(found.etag(), Matchers.equalTo("etag-2"));
+        MatcherAssert.assertThat(found.statusCode(), Matchers.is(200));
+        MatcherAssert.assertThat(
+            found.asJsonObject().getString("value"),
+            Matchers.equalTo("second")
+        );
+        MatcherAssert.assertThat(
+            found.uri(), Matchers.equalTo(URI.create("/a"))
+        );
+        MatcherAssert.assertThat(restarted.size(), Matchers.is(2));
+        MatcherAssert.assertThat(
+            restarted.getResource(URI.create("/b")).creationDate(),
+            Matchers.equalTo(
+                storage.getResource(URI.create("/b")).creationDate()
+            )
+        );
+    }
+
+    /**
+     * A corrupted (torn) record is dropped on recovery, the ones before
+     * it are kept.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void recoversFromTornRecord() throws Exception {
+        final Path dir = this.folder.newFolder().toPath();
+        final MappedJsonStorage storage = new MappedJsonStorage(dir, 4096);
+        storage.storeResource(this.resource("/a", "intact", "etag-a"));
+        storage.storeResource(this.resource("/b", "torn", "etag-b"));
+        final Path segment = dir.resolve("segment-00000001.log");
+        final byte[] bytes = Files.readAllBytes(segment);
+        final int torn = new String(bytes, StandardCharsets.ISO_8859_1)
+            .indexOf("torn");
+        try (
+            final RandomAccessFile file = new RandomAccessFile(
+                segment.toFile(), "rw"
+            )
+        ) {
+            file.seek(torn);
+            file.write('X');
+        }
+        final MappedJsonStorage recovered = new MappedJsonStorage(dir, 4096);
+        MatcherAssert.assertThat(
+            recovered.getResource(URI.create("/a")).etag(),
+            Matchers.equalTo("etag-a")
+        );
+        MatcherAssert.assertThat(
+            recovered.getResource(URI.create("/b")), Matchers.nullValue()
+        );
+        recovered.storeResource(this.resource("/c", "after", "etag-c"));
+        MatcherAssert.assertThat(
+            new MappedJsonStorage(dir, 4096)
+                .getResource(URI.create("/c")).etag(),
+            Matchers.equalTo("etag-c")
+        );
+    }
+
+    /**
+     * Segments full of replaced records are compacted.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void compactsGarbage() throws Exception {
+        final Path dir = this.folder.newFolder().toPath();
+        final MappedJsonStorage storage = new MappedJsonStorage(dir, 4096);
+        storage.storeResource(this.resource("/keep", "kept", "etag-k"));
+        for (int idx = 0; idx < 100; ++idx) {
+            storage.storeResource(
+                this.resource("/a", "x".repeat(300) + idx, "etag-" + idx)
+            );
+        }
+        storage.compact();
+        MatcherAssert.assertThat(
+            storage.segments(), Matchers.lessThanOrEqualTo(2)
+        );
+        final MappedJsonStorage restarted = new MappedJsonStorage(dir, 4096);
+        MatcherAssert.assertThat(
+            restarted.getResource(URI.create("/a")).etag(),
+            Matchers.equalTo("etag-99")
+        );
+        MatcherAssert.assertThat(
+            restarted.getResource(URI.create("/keep")).etag(),
+            Matchers.equalTo("etag-k")
+        );
+    }
+
+    /**
+     * A sealed segment which is mostly garbage is compacted in the
+     * background, even if all the garbage is less than a segment.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void compactsMostlyGarbageSegmentInBackground() throws Exception {
+        final Path dir = this.folder.newFolder().toPath();
+        final MappedJsonStorage storage = new MappedJsonStorage(dir, 4096);
+        for (int idx = 0; idx < 10; ++idx) {
+            storage.storeResource(
+                this.resource("/r" + idx, "x".repeat(400), "etag-" + idx)
+            );
+        }
+        for (int idx = 0; idx < 10; ++idx) {
+            storage.removeResource(URI.create("/r" + idx));
+        }
+        storage.storeResource(this.resource("/new", "new", "etag-n"));
+        final Path first = dir.resolve("segment-00000001.log");
+        for (int idx = 0; idx < 50 && Files.exists(first); ++idx) {
+            Thread.sleep(100);
+        }
+        MatcherAssert.assertThat(Files.exists(first), Matchers.is(false));
+        final MappedJsonStorage restarted = new MappedJsonStorage(dir, 4096);
+        MatcherAssert.assertThat(
+            restarted.getResource(URI.create("/r0")), Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(
+            restarted.getResource(URI.create("/new")).etag(),
+            Matchers.equalTo("etag-n")
+        );
+    }
+
+    /**
+     * Removed resources stay removed after compaction and restart.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void keepsRemovalsAfterRestart() throws Exception {
+        final Path dir = this.folder.newFolder().toPath();
+        final MappedJsonStorage storage = new MappedJsonStorage(dir, 4096);
+        storage.storeResource(this.resource("/gone", "old", "etag-g"));
+        storage.removeResource(URI.create("/gone"));
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/gone")), Matchers.nullValue()
+        );
+        for (int idx = 0; idx < 50; ++idx) {
+            storage.storeResource(
+                this.resource("/a", "x".repeat(300) + idx, "etag-" + idx)
+            );
+        }
+        storage.compact();
+        final MappedJsonStorage restarted = new MappedJsonStorage(dir, 4096);
+        MatcherAssert.assertThat(
+            restarted.getResource(URI.create("/gone")), Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(restarted.size(), Matchers.is(1));
+    }
+
+    /**
+     * Removing a resource also removes its variants, whatever their query
+     * or fragment, and they stay removed after restart.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void removesVariants() throws Exception {
+        final Path dir = this.folder.newFolder().toPath();
+        final MappedJsonStorage storage = new MappedJsonStorage(dir, 4096);
+        storage.storeResource(this.resource("/issues", "all", "etag-a"));
+        storage.storeResource(
+            this.resource("/issues?state=open", "open", "etag-o")
+        );
+        storage.storeResource(
+            this.resource("/issues?page=2#abc", "page", "etag-p")
+        );
+        storage.storeResource(this.resource("/issues/1", "one", "etag-1"));
+        storage.removeResource(URI.create("/issues"));
+        MatcherAssert.assertThat(storage.size(), Matchers.is(1));
+        final MappedJsonStorage restarted = new MappedJsonStorage(dir, 4096);
+        MatcherAssert.assertThat(restarted.size(), Matchers.is(1));
+        MatcherAssert.assertThat(
+            restarted.getResource(URI.create("/issues/1")).etag(),
+            Matchers.equalTo("etag-1")
+        );
+    }
+
+    /**
+     * Beyond the capacity, the oldest segments are dropped, with the
+     * resources still in them.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void evictsOldestSegmentsOverCapacity() throws Exception {
+        final Path dir = this.folder.newFolder().toPath();
+        final MappedJsonStorage storage = new MappedJsonStorage(
+            dir, 4096, 3 * 4096
+        );
+        for (int idx = 0; idx < 40; ++idx) {
+            storage.storeResource(
+                this.resource("/r" + idx, "x".repeat(400), "etag-" + idx)
+            );
+        }
+        storage.evict();
+        MatcherAssert.assertThat(
+            storage.bytes(), Matchers.lessThanOrEqualTo(3L * 4096)
+        );
+        MatcherAssert.assertThat(
+            storage.evictions(), Matchers.greaterThan(0L)
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/r0")), Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(URI.create("/r39")).etag(),
+            Matchers.equalTo("etag-39")
+        );
+        final MappedJsonStorage restarted = new MappedJsonStorage(
+            dir, 4096, 3 * 4096
+        );
+        MatcherAssert.assertThat(
+            restarted.getResource(URI.create("/r0")), Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(
+            restarted.size(), Matchers.is(storage.size())
+        );
+    }
+
+    /**
+     * A tombstone is dropped by compaction when no older segment may hold
+     * a record of the removed resource.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void dropsTombstonesNoLongerNeeded() throws Exception {
+        final Path dir = this.folder.newFolder().toPath();
+        final MappedJsonStorage storage = new MappedJsonStorage(dir, 4096);
+        storage.storeResource(this.resource("/gone", "old", "etag-g"));
+        storage.removeResource(URI.create("/gone"));
+        for (int idx = 0; idx < 50; ++idx) {
+            storage.storeResource(
+                this.resource("/a", "x".repeat(300) + idx, "etag-" + idx)
+            );
+        }
+        storage.compact();
+        try (final Stream<Path> files = Files.list(dir)) {
+            for (final Path file : files.collect(Collectors.toList())) {
+                MatcherAssert.assertThat(
+                    new String(
+                        Files.readAllBytes(file), StandardCharsets.UTF_8
+                    ),
+                    Matchers.not(Matchers.containsString("\"removed\""))
+                );
+            }
+        }
+        final MappedJsonStorage restarted = new MappedJsonStorage(dir, 4096);
+        MatcherAssert.assertThat(
+            restarted.getResource(URI.create("/gone")), Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(restarted.size(), Matchers.is(1));
+    }
+
+    /**
+     * Resource with a JSON body.
+     * @param uri URI.
+     * @param value Value in the body.
+     * @param etag ETag.
+     * @return CachedResource.
+     */
+    private CachedResource resource(
+        final String uri, final String value, final String etag
+    ) {
+        return CachedResource.fromResource(
+            URI.create(uri),
+            new MockResource(
+                200,
+                Json.createObjectBuilder().add("value", value).build(),
+                Map.of("ETag", List.of(etag))
+            )
+        );
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.core.mock.MockJsonResources;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonValue;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link MeteredJsonResources} and
+ * {@link ResourcesMeter.InMemory}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class MeteredJsonResourcesTestCase {
+
+    /**
+     * It builds URI templates for the Github, Gitlab and Bitbucket URIs.
+     */
+    @Test
+    public void buildsUriTemplates() {
+        MatcherAssert.assertThat(
+            MeteredJsonResources.template(
+                URI.create(
+                    "https://api.github.com/repos/amihaiemil/docker-java-api"
+                    + "/issues/12?state=open"
+                )
+            ),
+            Matchers.equalTo("/repos/{owner}/{repo}/issues/{n}")
+        );
+        MatcherAssert.assertThat(
+            MeteredJsonResources.template(
+                URI.create("https://gitlab.com/api/v4/projects/john%2Frepo")
+            ),
+            Matchers.equalTo("/api/v4/projects/{project}")
+        );
+        MatcherAssert.assertThat(
+            MeteredJsonResources.template(
+                URI.create(
+                    "https://bitbucket.org/api/2.0/repositories/john/repo"
+                    + "/commit/0123456789abcdef0123456789abcdef01234567"
+                )
+            ),
+            Matchers.equalTo(
+                "/api/2.0/repositories/{owner}/{repo}/commit/{sha}"
+            )
+        );
+        MatcherAssert.assertThat(
+            MeteredJsonResources.template(
+                URI.create("https://api.github.com/users/john/repos")
+            ),
+            Matchers.equalTo("/users/{user}/repos")
+        );
+    }
+
+    /**
+     * It records the calls per host, method and URI template.
+     */
+    @Test
+    public void recordsCallsPerEndpoint() {
+        final ResourcesMeter.InMemory meter = new ResourcesMeter.InMemory();
+        final JsonResources resources = new MeteredJsonResources(
+            new MockJsonResources(
+                req -> {
+                    final MockResource resource;
+                    if (req.getUri().getPath().endsWith("/1")) {
+                        resource = new MockResource(304, JsonValue.NULL);
+                    } else {
+                        resource = new MockResource(
+                            200,
+                            JsonValue.NULL,
+                            Map.of("Content-Length", List.of("120"))
+                        );
+                    }
+                    return resource;
+                }
+            ),
+            meter
+        );
+        resources.get(URI.create("https://api.github.com/repos/a/b/issues/1"));
+        resources.get(URI.create("https://api.github.com/repos/c/d/issues/2"));
+        resources.getAsync(
+            URI.create("https://api.github.com/repos/e/f/issues/3")
+        ).join();
+        resources.post(
+            URI.create("https://api.github.com/repos/a/b/issues"),
+            Json.createObjectBuilder().add("title", "bug").build()
+        );
+        final ResourcesMeter.Endpoint issue = meter.endpoints().get(
+            "api.github.com GET /repos/{owner}/{repo}/issues/{n}"
+        );
+        MatcherAssert.assertThat(issue.calls(), Matchers.is(3L));
+        MatcherAssert.assertThat(issue.notModified(), Matchers.is(1L));
+        MatcherAssert.assertThat(issue.calls(200), Matchers.is(2L));
+        MatcherAssert.assertThat(issue.bytesIn(), Matchers.is(240L));
+        MatcherAssert.assertThat(issue.bytesOut(), Matchers.is(0L));
+        final ResourcesMeter.Endpoint post = meter.endpoints().get(
+            "api.github.com POST /repos/{owner}/{repo}/issues"
+        );
+        MatcherAssert.assertThat(post.calls(), Matchers.is(1L));
+        MatcherAssert.assertThat(
+            post.bytesOut(),
+            Matchers.is((long) "{\"title\":\"bug\"}".length())
+        );
+    }
+
+    /**
+     * Failed calls are recorded with status 0 and the error is rethrown.
+     */
+    @Test
+    public void recordsFailedCalls() {
+        final ResourcesMeter.InMemory meter = new ResourcesMeter.InMemory();
+        final JsonResources resources = new MeteredJsonResources(
+            new MockJsonResources(
+                req -> {
+                    throw new IllegalStateException("Couldn't GET");
+                }
+            ),
+            meter
+        );
+        try {
+            resources.get(URI.create("https://gitlab.com/api/v4/user"));
+            MatcherAssert.assertThat("Expected exception", false);
+        } catch (final IllegalStateException ex) {
+            MatcherAssert.assertThat(
+                meter.endpoints()
+                    .get("gitlab.com GET /api/v4/user")
+                    .calls(0),
+                Matchers.is(1L)
+            );
+        }
+    }
+
+    /**
+     * The histogram puts each latency in its bucket and the percentiles
+     * are read from it.
+     */
+    @Test
+    public void computesPercentiles() {
+        final ResourcesMeter.InMemory meter = new ResourcesMeter.InMemory();
+        for (int idx = 0; idx < 9; ++idx) {
+            meter.record(
+                "api.github.com", "GET", "/user", 200,
+                Duration.ofMillis(15), -1, 0
+            );
+        }
+        meter.record(
+            "api.github.com", "GET", "/user", 200,
+            Duration.ofMillis(1500), -1, 0
+        );
+        final ResourcesMeter.Endpoint user = meter.endpoints().get(
+            "api.github.com GET /user"
+        );
+        MatcherAssert.assertThat(
+            user.percentile(50), Matchers.equalTo(Duration.ofMillis(20))
+        );
+        MatcherAssert.assertThat(
+            user.percentile(99), Matchers.equalTo(Duration.ofMillis(2000))
+        );
+        MatcherAssert.assertThat(
+            user.histogram().get(20L), Matchers.is(9L)
+        );
+    }
+
+    /**
+     * The default meter ignores everything.
+     */
+    @Test
+    public void noOpByDefault() {
+        final JsonResources resources = new MeteredJsonResources(
+            new MockJsonResources(
+                req -> new MockResource(200, JsonValue.NULL)
+            )
+        );
+        MatcherAssert.assertThat(
+            resources.get(URI.create("https://api.github.com/user"))
+                .statusCode(),
+            Matchers.is(200)
+        );
+    }
+}
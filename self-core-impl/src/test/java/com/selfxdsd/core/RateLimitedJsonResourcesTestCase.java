@@ -0,0 +1,426 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.core.mock.MockJsonResources;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link RateLimitedJsonResources}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class RateLimitedJsonResourcesTestCase {
+
+    /**
+     * The remaining budget is unknown before the first response.
+     */
+    @Test
+    public void remainingIsUnknownAtFirst() {
+        final RateLimitedJsonResources resources = this.limited(
+            new MockJsonResources(
+                req -> new MockResource(200, JsonValue.NULL)
+            ),
+            new Registry<>(Duration.ofHours(1))
+        );
+        MatcherAssert.assertThat(
+            resources.remaining(URI.create("https://api.github.com/user")),
+            Matchers.equalTo(OptionalLong.empty())
+        );
+    }
+
+    /**
+     * It reads the Github rate limit headers, separately for the core
+     * and search resources.
+     */
+    @Test
+    public void tracksGithubCoreAndSearch() {
+        final long reset = Instant.now().getEpochSecond() + 3600;
+        final RateLimitedJsonResources resources = this.limited(
+            new MockJsonResources(
+                req -> {
+                    final String remaining;
+                    final String resource;
+                    if (req.getUri().getPath().startsWith("/search")) {
+                        remaining = "25";
+                        resource = "search";
+                    } else {
+                        remaining = "4000";
+                        resource = "core";
+                    }
+                    return new MockResource(
+                        200,
+                        JsonValue.NULL,
+                        Map.of(
+                            "X-RateLimit-Limit", List.of("5000"),
+                            "X-RateLimit-Remaining", List.of(remaining),
+                            "X-RateLimit-Reset", List.of(
+                                String.valueOf(reset)
+                            ),
+                            "X-RateLimit-Resource", List.of(resource)
+                        )
+                    );
+                }
+            ),
+            new Registry<>(Duration.ofHours(1))
+        );
+        final URI core = URI.create("https://api.github.com/repos/a/b");
+        final URI search = URI.create(
+            "https://api.github.com/search/issues?q=x"
+        );
+        resources.get(core);
+        resources.get(search);
+        MatcherAssert.assertThat(
+            resources.remaining(core),
+            Matchers.equalTo(OptionalLong.of(4000))
+        );
+        MatcherAssert.assertThat(
+            resources.remaining(search),
+            Matchers.equalTo(OptionalLong.of(25))
+        );
+    }
+
+    /**
+     * It reads the Gitlab rate limit headers.
+     */
+    @Test
+    public void tracksGitlab() {
+        final long reset = Instant.now().getEpochSecond() + 60;
+        final RateLimitedJsonResources resources = this.limited(
+            new MockJsonResources(
+                req -> new MockResource(
+                    200,
+                    JsonValue.NULL,
+                    Map.of(
+                        "RateLimit-Limit", List.of("600"),
+                        "RateLimit-Remaining", List.of("599"),
+                        "RateLimit-Reset", List.of(String.valueOf(reset))
+                    )
+                )
+            ),
+            new Registry<>(Duration.ofHours(1))
+        );
+        final URI uri = URI.create("https://gitlab.com/api/v4/projects/1");
+        resources.get(uri);
+        MatcherAssert.assertThat(
+            resources.remaining(uri),
+            Matchers.equalTo(OptionalLong.of(599))
+        );
+    }
+
+    /**
+     * Each access token has its own budget.
+     */
+    @Test
+    public void tracksBudgetPerAccessToken() {
+        final long reset = Instant.now().getEpochSecond() + 3600;
+        final Registry<RateLimitedJsonResources.Budget> budgets =
+            new Registry<>(Duration.ofHours(1));
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        Mockito.when(delegate.authenticated(Mockito.any())).thenReturn(
+            new MockJsonResources(
+                new AccessToken.Github("token123"),
+                req -> new MockResource(
+                    200,
+                    JsonValue.NULL,
+                    Map.of(
+                        "X-RateLimit-Limit", List.of("5000"),
+                        "X-RateLimit-Remaining", List.of("100"),
+                        "X-RateLimit-Reset", List.of(String.valueOf(reset))
+                    )
+                )
+            )
+        );
+        final RateLimitedJsonResources resources = this.limited(
+            delegate, budgets
+        );
+        final URI uri = URI.create("https://api.github.com/user");
+        final RateLimitedJsonResources authenticated =
+            (RateLimitedJsonResources) resources.authenticated(
+                new AccessToken.Github("token123")
+            );
+        authenticated.get(uri);
+        MatcherAssert.assertThat(
+            authenticated.remaining(uri),
+            Matchers.equalTo(OptionalLong.of(100))
+        );
+        MatcherAssert.assertThat(
+            resources.remaining(uri),
+            Matchers.equalTo(OptionalLong.empty())
+        );
+    }
+
+    /**
+     * The budget is decremented for each request sent.
+     */
+    @Test
+    public void reservesBudgetForEachRequest() {
+        final RateLimitedJsonResources.Budget budget =
+            new RateLimitedJsonResources.Budget();
+        final long now = System.currentTimeMillis();
+        budget.update(1000, 5000, now / 1000 + 3600);
+        MatcherAssert.assertThat(budget.acquire(now), Matchers.is(0L));
+        MatcherAssert.assertThat(budget.acquire(now), Matchers.is(0L));
+        MatcherAssert.assertThat(
+            budget.remaining(),
+            Matchers.equalTo(OptionalLong.of(998))
+        );
+    }
+
+    /**
+     * Under 10% of the limit, the requests are spread evenly until the
+     * window resets.
+     */
+    @Test
+    public void pacesRequestsWhenBudgetIsLow() {
+        final RateLimitedJsonResources.Budget budget =
+            new RateLimitedJsonResources.Budget();
+        final long now = 1_000_000L;
+        budget.update(10, 5000, now / 1000 + 100);
+        MatcherAssert.assertThat(budget.acquire(now), Matchers.is(0L));
+        MatcherAssert.assertThat(budget.acquire(now), Matchers.is(10_000L));
+        MatcherAssert.assertThat(
+            budget.acquire(now),
+            Matchers.greaterThan(10_000L)
+        );
+    }
+
+    /**
+     * A request which would wait longer than allowed does not reserve
+     * anything, so it does not push the next requests further out.
+     */
+    @Test
+    public void doesNotReserveRejectedRequest() {
+        final RateLimitedJsonResources.Budget budget =
+            new RateLimitedJsonResources.Budget();
+        final long now = 1_000_000L;
+        budget.update(10, 5000, now / 1000 + 100);
+        MatcherAssert.assertThat(budget.acquire(now, 0), Matchers.is(0L));
+        MatcherAssert.assertThat(
+            budget.acquire(now, 0), Matchers.is(10_000L)
+        );
+        MatcherAssert.assertThat(
+            budget.acquire(now, 0), Matchers.is(10_000L)
+        );
+        MatcherAssert.assertThat(
+            budget.remaining(), Matchers.equalTo(OptionalLong.of(9))
+        );
+    }
+
+    /**
+     * A new window forgets the pacing of the previous one.
+     */
+    @Test
+    public void resetsPacingWithNewWindow() {
+        final RateLimitedJsonResources.Budget budget =
+            new RateLimitedJsonResources.Budget();
+        final long now = 1_000_000L;
+        budget.update(10, 5000, now / 1000 + 100);
+        budget.acquire(now);
+        MatcherAssert.assertThat(
+            budget.acquire(now), Matchers.greaterThan(0L)
+        );
+        budget.update(10, 5000, now / 1000 + 200);
+        MatcherAssert.assertThat(budget.acquire(now), Matchers.is(0L));
+    }
+
+    /**
+     * A request rejected because of the deadline gives nothing from the
+     * budget, so the requests after it are not delayed any further.
+     */
+    @Test
+    public void rejectedRequestKeepsBudget() {
+        final long reset = Instant.now().getEpochSecond() + 100;
+        final MockJsonResources mock = new MockJsonResources(
+            req -> new MockResource(
+                200,
+                JsonValue.NULL,
+                Map.of(
+                    "X-RateLimit-Limit", List.of("5000"),
+                    "X-RateLimit-Remaining", List.of("10"),
+                    "X-RateLimit-Reset", List.of(String.valueOf(reset))
+                )
+            )
+        );
+        final RateLimitedJsonResources resources = new RateLimitedJsonResources(
+            mock,
+            "anonymous",
+            new Registry<>(Duration.ofHours(1)),
+            Duration.ofMinutes(1)
+        );
+        final URI uri = URI.create("https://api.github.com/user");
+        resources.get(uri);
+        resources.get(uri);
+        for (int idx = 0; idx < 3; ++idx) {
+            try {
+                new Deadline(Duration.ofMillis(500)).run(
+                    () -> resources.get(uri)
+                );
+                MatcherAssert.assertThat("Expected exception", false);
+            } catch (final IllegalStateException ex) {
+                MatcherAssert.assertThat(
+                    ex.getMessage(),
+                    Matchers.containsString("would go past the deadline")
+                );
+            }
+        }
+        MatcherAssert.assertThat(
+            resources.remaining(uri), Matchers.equalTo(OptionalLong.of(10))
+        );
+    }
+
+    /**
+     * When the budget is exhausted, it waits until the window resets.
+     */
+    @Test
+    public void waitsForResetWhenExhausted() {
+        final RateLimitedJsonResources.Budget budget =
+            new RateLimitedJsonResources.Budget();
+        final long now = 1_000_000L;
+        budget.update(0, 5000, now / 1000 + 30);
+        MatcherAssert.assertThat(budget.acquire(now), Matchers.is(30_000L));
+        MatcherAssert.assertThat(
+            budget.acquire(now + 31_000L),
+            Matchers.is(0L)
+        );
+        MatcherAssert.assertThat(
+            budget.remaining(),
+            Matchers.equalTo(OptionalLong.empty())
+        );
+    }
+
+    /**
+     * It fails fast, without sending the request, if the budget resets
+     * later than the maximum wait.
+     */
+    @Test
+    public void failsFastWhenResetIsTooFar() {
+        final long reset = Instant.now().getEpochSecond() + 3600;
+        final AtomicInteger sent = new AtomicInteger();
+        final MockJsonResources mock = new MockJsonResources(
+            req -> {
+                sent.incrementAndGet();
+                return new MockResource(
+                    403,
+                    JsonValue.NULL,
+                    Map.of(
+                        "X-RateLimit-Limit", List.of("5000"),
+                        "X-RateLimit-Remaining", List.of("0"),
+                        "X-RateLimit-Reset", List.of(String.valueOf(reset))
+                    )
+                );
+            }
+        );
+        final RateLimitedJsonResources resources = this.limited(
+            mock, new Registry<>(Duration.ofHours(1))
+        );
+        final URI uri = URI.create("https://api.github.com/user");
+        resources.get(uri);
+        try {
+            resources.getAsync(uri);
+            MatcherAssert.assertThat("Expected exception", false);
+        } catch (final IllegalStateException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(),
+                Matchers.startsWith("Rate limit exhausted")
+            );
+        }
+        MatcherAssert.assertThat(sent.get(), Matchers.is(1));
+    }
+
+    /**
+     * It fails fast, without sending the request, if waiting for the
+     * reset would go past the current deadline, even if the reset is
+     * within the maximum wait.
+     */
+    @Test
+    public void failsFastPastDeadline() {
+        final long reset = Instant.now().getEpochSecond() + 30;
+        final AtomicInteger sent = new AtomicInteger();
+        final MockJsonResources mock = new MockJsonResources(
+            req -> {
+                sent.incrementAndGet();
+                return new MockResource(
+                    403,
+                    JsonValue.NULL,
+                    Map.of(
+                        "X-RateLimit-Limit", List.of("5000"),
+                        "X-RateLimit-Remaining", List.of("0"),
+                        "X-RateLimit-Reset", List.of(String.valueOf(reset))
+                    )
+                );
+            }
+        );
+        final JsonResources resources = new RateLimitedJsonResources(
+            mock,
+            "anonymous",
+            new Registry<>(Duration.ofHours(1)),
+            Duration.ofMinutes(1)
+        );
+        final URI uri = URI.create("https://api.github.com/user");
+        resources.get(uri);
+        final long start = System.currentTimeMillis();
+        try {
+            new Deadline(Duration.ofMillis(500)).run(() -> resources.get(uri));
+            MatcherAssert.assertThat("Expected exception", false);
+        } catch (final IllegalStateException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(),
+                Matchers.containsString("would go past the deadline")
+            );
+        }
+        MatcherAssert.assertThat(
+            System.currentTimeMillis() - start, Matchers.lessThan(500L)
+        );
+        MatcherAssert.assertThat(sent.get(), Matchers.is(1));
+    }
+
+    /**
+     * Rate limited resources with the given budgets.
+     * @param delegate Delegate.
+     * @param budgets Budgets.
+     * @return RateLimitedJsonResources.
+     */
+    private RateLimitedJsonResources limited(
+        final JsonResources delegate,
+        final Registry<RateLimitedJsonResources.Budget> budgets
+    ) {
+        return new RateLimitedJsonResources(
+            delegate, "anonymous", budgets, Duration.ofSeconds(1)
+        );
+    }
+}
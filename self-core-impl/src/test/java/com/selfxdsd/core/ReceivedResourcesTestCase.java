@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.CachedResource;
+import com.selfxdsd.api.Resource;
+import com.selfxdsd.api.storage.JsonStorage;
+import com.selfxdsd.core.mock.MockJsonResources;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.net.URI;
+import java.time.Instant;
+
+/**
+ * Unit tests for {@link ReceivedResources}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class ReceivedResourcesTestCase {
+
+    /**
+     * A received resource is stored fresh, with its update date as
+     * Last-Modified, and served without any request.
+     */
+    @Test
+    public void storesFreshResource() {
+        final JsonStorage storage = new JsonStorage.InMemory();
+        final URI uri = URI.create("https://api.github.com/repos/a/b/issues/1");
+        final JsonObject issue = Json.createObjectBuilder()
+            .add("number", 1)
+            .add("title", "Received")
+            .build();
+        MatcherAssert.assertThat(
+            new ReceivedResources(storage).store(
+                uri, issue, Instant.parse("2021-03-01T10:15:30Z")
+            ),
+            Matchers.is(true)
+        );
+        final CachedResource stored = storage.getResource(uri);
+        MatcherAssert.assertThat(
+            stored.lastModified(),
+            Matchers.equalTo("Mon, 1 Mar 2021 10:15:30 GMT")
+        );
+        MatcherAssert.assertThat(
+            stored.header("Cache-Control"),
+            Matchers.contains("public, max-age=60")
+        );
+
+        final MockJsonResources remote = new MockJsonResources(
+            req -> {
+                throw new IllegalStateException("No request expected");
+            }
+        );
+        final Resource served = new ConditionalJsonResources(
+            remote, storage
+        ).get(uri);
+        MatcherAssert.assertThat(served.asJsonObject(), Matchers.is(issue));
+        MatcherAssert.assertThat(remote.requests(), Matchers.emptyIterable());
+    }
+
+    /**
+     * A received resource does not replace a stored one which was
+     * modified later.
+     */
+    @Test
+    public void keepsNewerStoredResource() {
+        final JsonStorage storage = new JsonStorage.InMemory();
+        final URI uri = URI.create("https://api.github.com/repos/a/b/issues/1");
+        final ReceivedResources received = new ReceivedResources(storage);
+        received.store(
+            uri,
+            Json.createObjectBuilder().add("title", "newer").build(),
+            Instant.parse("2021-03-01T10:15:30Z")
+        );
+        MatcherAssert.assertThat(
+            received.store(
+                uri,
+                Json.createObjectBuilder().add("title", "older").build(),
+                Instant.parse("2021-03-01T10:10:00Z")
+            ),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            storage.getResource(uri).asJsonObject().getString("title"),
+            Matchers.equalTo("newer")
+        );
+    }
+}
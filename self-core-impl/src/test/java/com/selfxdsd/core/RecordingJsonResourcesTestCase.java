@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import com.selfxdsd.core.mock.MockJsonResources;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.json.Json;
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link RecordingJsonResources} and
+ * {@link ReplayingJsonResources}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class RecordingJsonResourcesTestCase {
+
+    /**
+     * Temporary folder for the corpus.
+     * @checkstyle VisibilityModifierCheck (3 lines)
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The recorded responses are replayed in order, the last one
+     * being repeated.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void replaysRecordedResponses() throws IOException {
+        final Path corpus = this.folder.getRoot().toPath()
+            .resolve("corpus.jsonl");
+        this.record(corpus);
+        MatcherAssert.assertThat(
+            Files.readAllLines(corpus), Matchers.hasSize(4)
+        );
+        this.replay(new ReplayingJsonResources(corpus));
+    }
+
+    /**
+     * A gzip corpus can be recorded and replayed too.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void replaysGzipCorpus() throws IOException {
+        final Path corpus = this.folder.getRoot().toPath()
+            .resolve("corpus.jsonl.gz");
+        this.record(corpus);
+        this.replay(new ReplayingJsonResources(corpus, 0));
+    }
+
+    /**
+     * Requests which were not recorded fail.
+     * @throws IOException If something goes wrong.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void failsForUnrecordedRequest() throws IOException {
+        final Path corpus = this.folder.getRoot().toPath()
+            .resolve("corpus.jsonl");
+        this.record(corpus);
+        new ReplayingJsonResources(corpus).get(
+            URI.create("https://api.github.com/unknown")
+        );
+    }
+
+    /**
+     * Record 3 GETs and a POST.
+     * @param corpus Corpus file.
+     */
+    private void record(final Path corpus) {
+        final AtomicInteger count = new AtomicInteger();
+        final JsonResources resources = new RecordingJsonResources(
+            new MockJsonResources(
+                req -> {
+                    final MockResource resource;
+                    if ("POST".equals(req.getMethod())) {
+                        resource = new MockResource(
+                            201, Json.createObjectBuilder()
+                                .add("created", true).build()
+                        );
+                    } else {
+                        resource = new MockResource(
+                            200,
+                            Json.createObjectBuilder()
+                                .add("call", count.incrementAndGet())
+                                .build(),
+                            Map.of("ETag", List.of("etag"))
+                        );
+                    }
+                    return resource;
+                }
+            ),
+            corpus
+        );
+        final URI repo = URI.create("https://api.github.com/repos/a/b");
+        resources.get(repo);
+        resources.getAsync(repo).join();
+        resources.post(
+            URI.create("https://api.github.com/repos/a/b/issues"),
+            Json.createObjectBuilder().add("title", "bug").build()
+        );
+        resources.get(URI.create("https://api.github.com/user"));
+    }
+
+    /**
+     * Check the replayed responses.
+     * @param resources Replaying resources.
+     */
+    private void replay(final JsonResources resources) {
+        final URI repo = URI.create("https://api.github.com/repos/a/b");
+        final Resource first = resources.get(repo);
+        MatcherAssert.assertThat(first.statusCode(), Matchers.is(200));
+        MatcherAssert.assertThat(
+            first.asJsonObject().getInt("call"), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            first.headers().get("ETag"), Matchers.contains("etag")
+        );
+        MatcherAssert.assertThat(
+            resources.getAsync(repo).join().asJsonObject().getInt("call"),
+            Matchers.is(2)
+        );
+        MatcherAssert.assertThat(
+            resources.get(repo).asJsonObject().getInt("call"),
+            Matchers.is(2)
+        );
+        MatcherAssert.assertThat(
+            resources.get(URI.create("https://api.github.com/user"))
+                .asJsonObject().getInt("call"),
+            Matchers.is(3)
+        );
+        final Resource created = resources.post(
+            URI.create("https://api.github.com/repos/a/b/issues"),
+            JsonValue.EMPTY_JSON_OBJECT
+        );
+        MatcherAssert.assertThat(created.statusCode(), Matchers.is(201));
+        MatcherAssert.assertThat(
+            created.asJsonObject().getBoolean("created"), Matchers.is(true)
+        );
+    }
+}
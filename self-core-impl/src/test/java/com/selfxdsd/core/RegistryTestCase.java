@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link Registry}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class RegistryTestCase {
+
+    /**
+     * A value is created once and then returned for the same key.
+     */
+    @Test
+    public void createsValueOnce() {
+        final Registry<AtomicInteger> registry = new Registry<>(
+            Duration.ofHours(1)
+        );
+        final AtomicInteger value = registry.get("a", AtomicInteger::new);
+        MatcherAssert.assertThat(
+            registry.get("a", AtomicInteger::new), Matchers.sameInstance(value)
+        );
+        registry.get("b", AtomicInteger::new);
+        MatcherAssert.assertThat(registry.size(), Matchers.is(2));
+    }
+
+    /**
+     * The values unused for longer than allowed are dropped, the ones
+     * still in use are kept.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void dropsIdleValues() throws Exception {
+        final Registry<AtomicInteger> registry = new Registry<>(
+            Duration.ofMillis(200)
+        );
+        final AtomicInteger used = registry.get("used", AtomicInteger::new);
+        registry.get("idle", AtomicInteger::new);
+        Thread.sleep(120);
+        registry.get("used", AtomicInteger::new);
+        Thread.sleep(120);
+        MatcherAssert.assertThat(
+            registry.get("used", AtomicInteger::new),
+            Matchers.sameInstance(used)
+        );
+        MatcherAssert.assertThat(registry.size(), Matchers.is(1));
+    }
+}
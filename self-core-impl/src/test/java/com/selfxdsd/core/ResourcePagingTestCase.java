@@ -1,5 +1,6 @@
 package com.selfxdsd.core;
 
+import com.selfxdsd.api.storage.JsonStorage;
 import com.selfxdsd.api.Resource;
 import com.selfxdsd.core.mock.MockJsonResources;
 import org.hamcrest.MatcherAssert;
@@ -12,6 +13,7 @@ import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -83,12 +85,89 @@ public final class ResourcePagingTestCase {
         MatcherAssert.assertThat(
             StreamSupport.stream(res.requests().spliterator(), false)
                 .filter(req -> req.getHeaders().containsKey("Cache-Control")
-                    && req.getHeaders().containsValue(List.of("no-cache"))
+                    && req.getHeaders().containsValue(List.of("max-age=0"))
                 ).collect(Collectors.toList()),
             Matchers.iterableWithSize(3)
         );
     }
 
+    /**
+     * ResourcePaging.FromHeaders over ConditionalJsonResources stores
+     * each page and, on the next iteration, revalidates every page,
+     * following the stored next links when the pages were not modified.
+     */
+    @Test
+    public void fromHeadersRevalidatesStoredPages(){
+        final MockJsonResources res = new MockJsonResources(
+            req -> {
+                final MockJsonResources.MockResource response;
+                final String query = req.getUri().getQuery();
+                final int page;
+                if (query == null) {
+                    page = 1;
+                } else {
+                    page = Integer.parseInt(query.substring(5));
+                }
+                if (req.getHeaders().containsKey("If-None-Match")) {
+                    response = new MockJsonResources.MockResource(
+                        HttpURLConnection.HTTP_NOT_MODIFIED,
+                        JsonValue.NULL
+                    );
+                } else {
+                    final Map<String, List<String>> headers = new HashMap<>();
+                    headers.put("ETag", List.of("etag-" + page));
+                    headers.put(
+                        "Cache-Control", List.of("private, max-age=60")
+                    );
+                    if (page < 3) {
+                        headers.put(
+                            "Link",
+                            List.of(
+                                "<http://localhost?page=" + (page + 1)
+                                + "> rel=\"next\""
+                            )
+                        );
+                    }
+                    response = new MockJsonResources.MockResource(
+                        HttpURLConnection.HTTP_OK,
+                        Json.createObjectBuilder().add("page", page).build(),
+                        headers
+                    );
+                }
+                return response;
+            }
+        );
+        final ResourcePaging paging = new ResourcePaging.FromHeaders(
+            new ConditionalJsonResources(res, new JsonStorage.InMemory()),
+            URI.create("http://localhost")
+        );
+
+        final List<JsonObject> first = paging
+            .stream()
+            .map(Resource::asJsonObject)
+            .collect(Collectors.toList());
+        final List<JsonObject> second = paging
+            .stream()
+            .map(Resource::asJsonObject)
+            .collect(Collectors.toList());
+
+        MatcherAssert.assertThat(first, Matchers.iterableWithSize(3));
+        MatcherAssert.assertThat(second, Matchers.equalTo(first));
+        MatcherAssert.assertThat(
+            StreamSupport.stream(res.requests().spliterator(), false)
+                .map(req -> req.getHeaders().get("If-None-Match"))
+                .collect(Collectors.toList()),
+            Matchers.contains(
+                Matchers.nullValue(),
+                Matchers.nullValue(),
+                Matchers.nullValue(),
+                Matchers.equalTo(List.of("etag-1")),
+                Matchers.equalTo(List.of("etag-2")),
+                Matchers.equalTo(List.of("etag-3"))
+            )
+        );
+    }
+
     /**
      * ResourcePaging.FromHeaders throws {@link NoSuchElementException} when
      * calling next link without checking with hastNext.
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.net.http.HttpHeaders;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link ResponseHeaders}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class ResponseHeadersTestCase {
+
+    /**
+     * It looks up headers ignoring case and splits their values by comma.
+     */
+    @Test
+    public void getsSplitValuesIgnoringCase() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            HttpHeaders.of(
+                Map.of("vary", List.of("Accept, Authorization")),
+                (name, value) -> true
+            )
+        );
+        MatcherAssert.assertThat(
+            headers.get("Vary"),
+            Matchers.contains("Accept", "Authorization")
+        );
+        MatcherAssert.assertThat(
+            headers.containsKey("VARY"),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            headers.get("Missing"),
+            Matchers.nullValue()
+        );
+    }
+
+    /**
+     * It looks up headers ignoring case also when the original map is
+     * case-sensitive.
+     */
+    @Test
+    public void getsFromCaseSensitiveMap() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            Map.of("eTaG", List.of("etag-123"))
+        );
+        MatcherAssert.assertThat(
+            headers.etag(),
+            Matchers.equalTo("etag-123")
+        );
+    }
+
+    /**
+     * Iterating over the entries returns split values.
+     */
+    @Test
+    public void iteratesSplitEntries() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            Map.of("Allow", List.of("GET, POST"))
+        );
+        MatcherAssert.assertThat(
+            headers,
+            Matchers.hasEntry(
+                Matchers.equalTo("Allow"),
+                Matchers.contains("GET", "POST")
+            )
+        );
+        MatcherAssert.assertThat(headers.size(), Matchers.is(1));
+    }
+
+    /**
+     * The Last-Modified date is not a list, so it is not split by comma.
+     */
+    @Test
+    public void keepsLastModifiedUnsplit() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            Map.of("last-modified", List.of("Wed, 21 Oct 2015 07:28:00 GMT"))
+        );
+        MatcherAssert.assertThat(
+            headers.get("Last-Modified"),
+            Matchers.contains("Wed, 21 Oct 2015 07:28:00 GMT")
+        );
+        MatcherAssert.assertThat(
+            headers,
+            Matchers.hasEntry(
+                Matchers.equalTo("last-modified"),
+                Matchers.contains("Wed, 21 Oct 2015 07:28:00 GMT")
+            )
+        );
+    }
+
+    /**
+     * The Date date is not a list, so it is not split by comma.
+     */
+    @Test
+    public void keepsDateUnsplit() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            Map.of("date", List.of("Thu, 22 Oct 2015 08:00:00 GMT"))
+        );
+        MatcherAssert.assertThat(
+            headers.get("Date"),
+            Matchers.contains("Thu, 22 Oct 2015 08:00:00 GMT")
+        );
+        MatcherAssert.assertThat(
+            headers,
+            Matchers.hasEntry(
+                Matchers.equalTo("date"),
+                Matchers.contains("Thu, 22 Oct 2015 08:00:00 GMT")
+            )
+        );
+    }
+
+    /**
+     * The Expires date is not a list, so it is not split by comma.
+     */
+    @Test
+    public void keepsExpiresUnsplit() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            Map.of("expires", List.of("Fri, 23 Oct 2015 09:30:00 GMT"))
+        );
+        MatcherAssert.assertThat(
+            headers.get("Expires"),
+            Matchers.contains("Fri, 23 Oct 2015 09:30:00 GMT")
+        );
+        MatcherAssert.assertThat(
+            headers,
+            Matchers.hasEntry(
+                Matchers.equalTo("expires"),
+                Matchers.contains("Fri, 23 Oct 2015 09:30:00 GMT")
+            )
+        );
+    }
+
+    /**
+     * The Retry-After (as HTTP-date) date is not a list, so it is not split by comma.
+     */
+    @Test
+    public void keepsRetryAfterUnsplit() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            Map.of("retry-after", List.of("Sat, 24 Oct 2015 10:45:00 GMT"))
+        );
+        MatcherAssert.assertThat(
+            headers.get("Retry-After"),
+            Matchers.contains("Sat, 24 Oct 2015 10:45:00 GMT")
+        );
+        MatcherAssert.assertThat(
+            headers,
+            Matchers.hasEntry(
+                Matchers.equalTo("retry-after"),
+                Matchers.contains("Sat, 24 Oct 2015 10:45:00 GMT")
+            )
+        );
+    }
+
+    /**
+     * It returns the Link values, or an empty list if there is no Link.
+     */
+    @Test
+    public void returnsLinks() {
+        MatcherAssert.assertThat(
+            new ResponseHeaders(
+                Map.of(
+                    "link",
+                    List.of(
+                        "<https://api.github.com/user/repos?page=2>; "
+                        + "rel=\"next\", "
+                        + "<https://api.github.com/user/repos?page=3>; "
+                        + "rel=\"last\""
+                    )
+                )
+            ).links(),
+            Matchers.iterableWithSize(2)
+        );
+        MatcherAssert.assertThat(
+            new ResponseHeaders(Map.of()).links(),
+            Matchers.emptyIterable()
+        );
+    }
+
+    /**
+     * It reads the Github rate limit headers.
+     */
+    @Test
+    public void readsGithubRateLimit() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            Map.of(
+                "X-RateLimit-Limit", List.of("5000"),
+                "X-RateLimit-Remaining", List.of("4987"),
+                "X-RateLimit-Reset", List.of("1350085394"),
+                "X-RateLimit-Resource", List.of("core")
+            )
+        );
+        MatcherAssert.assertThat(
+            headers.rateLimitLimit().getAsLong(),
+            Matchers.is(5000L)
+        );
+        MatcherAssert.assertThat(
+            headers.rateLimitRemaining().getAsLong(),
+            Matchers.is(4987L)
+        );
+        MatcherAssert.assertThat(
+            headers.rateLimitReset().getAsLong(),
+            Matchers.is(1350085394L)
+        );
+        MatcherAssert.assertThat(
+            headers.rateLimitResource(),
+            Matchers.equalTo("core")
+        );
+    }
+
+    /**
+     * It reads the Gitlab rate limit headers.
+     */
+    @Test
+    public void readsGitlabRateLimit() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            Map.of(
+                "RateLimit-Remaining", List.of("599"),
+                "RateLimit-Reset", List.of("1609844400")
+            )
+        );
+        MatcherAssert.assertThat(
+            headers.rateLimitRemaining().getAsLong(),
+            Matchers.is(599L)
+        );
+        MatcherAssert.assertThat(
+            headers.rateLimitReset().getAsLong(),
+            Matchers.is(1609844400L)
+        );
+        MatcherAssert.assertThat(
+            headers.rateLimitResource(),
+            Matchers.nullValue()
+        );
+    }
+
+    /**
+     * Rate limit is empty if the headers are missing or invalid.
+     */
+    @Test
+    public void noRateLimit() {
+        final ResponseHeaders headers = new ResponseHeaders(
+            Map.of("RateLimit-Remaining", List.of("many"))
+        );
+        MatcherAssert.assertThat(
+            headers.rateLimitRemaining().isPresent(),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            headers.rateLimitReset().isPresent(),
+            Matchers.is(false)
+        );
+    }
+}
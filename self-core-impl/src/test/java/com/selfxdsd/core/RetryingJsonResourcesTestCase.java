@@ -0,0 +1,369 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import com.selfxdsd.core.mock.MockJsonResources;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for {@link RetryingJsonResources}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class RetryingJsonResourcesTestCase {
+
+    /**
+     * A GET which receives 503 is retried until it succeeds.
+     */
+    @Test
+    public void retriesGetOnServerError() {
+        final AtomicInteger sent = new AtomicInteger();
+        final RetryingJsonResources resources = this.retrying(
+            new MockJsonResources(
+                req -> {
+                    final MockResource resource;
+                    if (sent.incrementAndGet() < 3) {
+                        resource = new MockResource(503, JsonValue.NULL);
+                    } else {
+                        resource = new MockResource(200, JsonValue.NULL);
+                    }
+                    return resource;
+                }
+            ),
+            false
+        );
+        final Resource resource = resources.get(URI.create("/repos"));
+        MatcherAssert.assertThat(resource.statusCode(), Matchers.is(200));
+        MatcherAssert.assertThat(sent.get(), Matchers.is(3));
+        MatcherAssert.assertThat(resources.retries(), Matchers.is(2L));
+    }
+
+    /**
+     * The async GET is retried as well.
+     */
+    @Test
+    public void retriesGetAsync() {
+        final AtomicInteger sent = new AtomicInteger();
+        final RetryingJsonResources resources = this.retrying(
+            new MockJsonResources(
+                req -> {
+                    final MockResource resource;
+                    if (sent.incrementAndGet() < 2) {
+                        resource = new MockResource(502, JsonValue.NULL);
+                    } else {
+                        resource = new MockResource(200, JsonValue.NULL);
+                    }
+                    return resource;
+                }
+            ),
+            false
+        );
+        final Resource resource = resources
+            .getAsync(URI.create("/repos"))
+            .join();
+        MatcherAssert.assertThat(resource.statusCode(), Matchers.is(200));
+        MatcherAssert.assertThat(resources.retries(), Matchers.is(1L));
+    }
+
+    /**
+     * It gives up after the retry budget is spent and returns the last
+     * response.
+     */
+    @Test
+    public void givesUpAfterRetryBudget() {
+        final AtomicInteger sent = new AtomicInteger();
+        final RetryingJsonResources resources = this.retrying(
+            new MockJsonResources(
+                req -> {
+                    sent.incrementAndGet();
+                    return new MockResource(500, JsonValue.NULL);
+                }
+            ),
+            false
+        );
+        final Resource resource = resources.get(URI.create("/repos"));
+        MatcherAssert.assertThat(resource.statusCode(), Matchers.is(500));
+        MatcherAssert.assertThat(sent.get(), Matchers.is(4));
+        MatcherAssert.assertThat(resources.retries(), Matchers.is(3L));
+    }
+
+    /**
+     * It retries a secondary rate limit (403 with Retry-After),
+     * but not a simple 403.
+     */
+    @Test
+    public void honorsRetryAfter() {
+        final AtomicInteger sent = new AtomicInteger();
+        final RetryingJsonResources resources = this.retrying(
+            new MockJsonResources(
+                req -> {
+                    final MockResource resource;
+                    if (req.getUri().getPath().equals("/forbidden")) {
+                        resource = new MockResource(403, JsonValue.NULL);
+                    } else if (sent.incrementAndGet() < 2) {
+                        resource = new MockResource(
+                            403,
+                            JsonValue.NULL,
+                            Map.of("Retry-After", List.of("0"))
+                        );
+                    } else {
+                        resource = new MockResource(200, JsonValue.NULL);
+                    }
+                    return resource;
+                }
+            ),
+            false
+        );
+        MatcherAssert.assertThat(
+            resources.get(URI.create("/limited")).statusCode(),
+            Matchers.is(200)
+        );
+        MatcherAssert.assertThat(
+            resources.get(URI.create("/forbidden")).statusCode(),
+            Matchers.is(403)
+        );
+        MatcherAssert.assertThat(resources.retries(), Matchers.is(1L));
+    }
+
+    /**
+     * It does not retry if Retry-After asks for more than the maximum
+     * delay.
+     */
+    @Test
+    public void doesNotWaitTooLong() {
+        final RetryingJsonResources resources = this.retrying(
+            new MockJsonResources(
+                req -> new MockResource(
+                    429,
+                    JsonValue.NULL,
+                    Map.of("Retry-After", List.of("3600"))
+                )
+            ),
+            false
+        );
+        MatcherAssert.assertThat(
+            resources.get(URI.create("/repos")).statusCode(),
+            Matchers.is(429)
+        );
+        MatcherAssert.assertThat(resources.retries(), Matchers.is(0L));
+    }
+
+    /**
+     * I/O errors are retried.
+     */
+    @Test
+    public void retriesIoErrors() {
+        final AtomicInteger sent = new AtomicInteger();
+        final RetryingJsonResources resources = this.retrying(
+            new MockJsonResources(
+                req -> {
+                    if (sent.incrementAndGet() < 2) {
+                        throw new IllegalStateException(
+                            "Couldn't GET", new IOException("reset")
+                        );
+                    }
+                    return new MockResource(200, JsonValue.NULL);
+                }
+            ),
+            false
+        );
+        MatcherAssert.assertThat(
+            resources.get(URI.create("/repos")).statusCode(),
+            Matchers.is(200)
+        );
+        MatcherAssert.assertThat(resources.retries(), Matchers.is(1L));
+    }
+
+    /**
+     * Other errors are not retried.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void doesNotRetryOtherErrors() {
+        this.retrying(
+            new MockJsonResources(
+                req -> {
+                    throw new IllegalStateException("Rate limit exhausted");
+                }
+            ),
+            false
+        ).get(URI.create("/repos"));
+    }
+
+    /**
+     * POST is never retried, PUT and DELETE only if allowed.
+     */
+    @Test
+    public void retriesOnlyIdempotentWrites() {
+        final MockJsonResources mock = new MockJsonResources(
+            req -> new MockResource(503, JsonValue.NULL)
+        );
+        final RetryingJsonResources reads = this.retrying(mock, false);
+        reads.put(URI.create("/put"), JsonValue.NULL);
+        reads.delete(URI.create("/delete"), JsonValue.NULL);
+        MatcherAssert.assertThat(reads.retries(), Matchers.is(0L));
+        final RetryingJsonResources writes = this.retrying(mock, true);
+        writes.post(URI.create("/post"), JsonValue.NULL);
+        MatcherAssert.assertThat(writes.retries(), Matchers.is(0L));
+        writes.put(URI.create("/put"), JsonValue.NULL);
+        writes.delete(URI.create("/delete"), JsonValue.NULL);
+        MatcherAssert.assertThat(writes.retries(), Matchers.is(6L));
+    }
+
+    /**
+     * A secondary rate limit with an HTTP-date Retry-After, read through
+     * ResponseHeaders, is retried when the date comes.
+     */
+    @Test
+    public void retriesAfterHttpDate() {
+        final AtomicInteger sent = new AtomicInteger();
+        final String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+            ZonedDateTime.now(ZoneOffset.UTC).minusSeconds(1)
+        );
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        Mockito.when(
+            delegate.get(Mockito.any(URI.class), Mockito.any())
+        ).thenAnswer(
+            invocation -> {
+                final Resource resource;
+                if (sent.incrementAndGet() == 1) {
+                    resource = new JsonResources.JsonResponse(
+                        HttpURLConnection.HTTP_FORBIDDEN,
+                        "",
+                        new ResponseHeaders(
+                            Map.of("retry-after", List.of(date))
+                        )
+                    );
+                } else {
+                    resource = new JsonResources.JsonResponse(
+                        HttpURLConnection.HTTP_OK, "{}", Map.of()
+                    );
+                }
+                return resource;
+            }
+        );
+        final RetryingJsonResources resources = this.retrying(
+            delegate, false
+        );
+        final Resource resource = resources.get(URI.create("/repos"));
+        MatcherAssert.assertThat(resource.statusCode(), Matchers.is(200));
+        MatcherAssert.assertThat(resources.retries(), Matchers.is(1L));
+    }
+
+    /**
+     * The instances created with the public ctors share their counters,
+     * since the providers build a new chain for every call.
+     */
+    @Test
+    public void sharesCountersBetweenChains() {
+        final long before = new RetryingJsonResources(
+            Mockito.mock(JsonResources.class)
+        ).retries();
+        final RetryingJsonResources first = new RetryingJsonResources(
+            new MockJsonResources(
+                req -> new MockResource(503, JsonValue.NULL)
+            ),
+            2, Duration.ofMillis(1), Duration.ofMillis(10), false
+        );
+        first.get(URI.create("/repos"));
+        MatcherAssert.assertThat(
+            new RetryingJsonResources(
+                Mockito.mock(JsonResources.class)
+            ).retries() - before,
+            Matchers.greaterThanOrEqualTo(2L)
+        );
+    }
+
+    /**
+     * It does not retry, sync or async, if the delay would go past the
+     * current deadline: the last response is returned right away.
+     */
+    @Test
+    public void doesNotRetryPastDeadline() {
+        final AtomicInteger sent = new AtomicInteger();
+        final RetryingJsonResources resources = new RetryingJsonResources(
+            new MockJsonResources(
+                req -> {
+                    sent.incrementAndGet();
+                    return new MockResource(
+                        503,
+                        JsonValue.NULL,
+                        Map.of("Retry-After", List.of("5"))
+                    );
+                }
+            ),
+            3, Duration.ofMillis(1), Duration.ofMinutes(1), false,
+            new AtomicLong(), new AtomicLong()
+        );
+        final URI uri = URI.create("/repos");
+        final List<Integer> statuses = new ArrayList<>();
+        final long start = System.currentTimeMillis();
+        new Deadline(Duration.ofSeconds(1)).run(
+            () -> {
+                statuses.add(resources.get(uri).statusCode());
+                statuses.add(resources.getAsync(uri).join().statusCode());
+            }
+        );
+        MatcherAssert.assertThat(
+            System.currentTimeMillis() - start, Matchers.lessThan(1000L)
+        );
+        MatcherAssert.assertThat(statuses, Matchers.contains(503, 503));
+        MatcherAssert.assertThat(sent.get(), Matchers.is(2));
+        MatcherAssert.assertThat(resources.retries(), Matchers.is(0L));
+    }
+
+    /**
+     * Retrying resources with 3 retries and very short delays.
+     * @param delegate Delegate.
+     * @param writes Should PUT and DELETE be retried?
+     * @return RetryingJsonResources.
+     */
+    private RetryingJsonResources retrying(
+        final JsonResources delegate,
+        final boolean writes
+    ) {
+        return new RetryingJsonResources(
+            delegate, 3, Duration.ofMillis(1), Duration.ofMillis(10), writes,
+            new AtomicLong(), new AtomicLong()
+        );
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import com.selfxdsd.core.mock.MockJsonResources;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link SingleFlightJsonResources}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class SingleFlightJsonResourcesTestCase {
+
+    /**
+     * Concurrent async GETs of the same URI share one call.
+     */
+    @Test
+    public void coalescesConcurrentAsyncGets() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final CompletableFuture<Resource> call = new CompletableFuture<>();
+        Mockito.when(
+            delegate.getAsync(Mockito.any(URI.class), Mockito.any())
+        ).thenReturn(call);
+        final JsonResources resources = new SingleFlightJsonResources(
+            delegate, "anonymous", new ConcurrentHashMap<>()
+        );
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        final CompletableFuture<Resource> first = resources.getAsync(uri);
+        final CompletableFuture<Resource> second = resources.getAsync(uri);
+        Mockito.verify(delegate, Mockito.times(1))
+            .getAsync(Mockito.any(URI.class), Mockito.any());
+        final Resource resource = new MockResource(200, JsonValue.NULL);
+        call.complete(resource);
+        MatcherAssert.assertThat(first.join(), Matchers.sameInstance(resource));
+        MatcherAssert.assertThat(
+            second.join(), Matchers.sameInstance(resource)
+        );
+    }
+
+    /**
+     * Once the call is over, the next GET goes to the delegate again.
+     */
+    @Test
+    public void doesNotCoalesceSequentialGets() {
+        final AtomicInteger sent = new AtomicInteger();
+        final JsonResources resources = new SingleFlightJsonResources(
+            new MockJsonResources(
+                req -> {
+                    sent.incrementAndGet();
+                    return new MockResource(200, JsonValue.NULL);
+                }
+            ),
+            "anonymous",
+            new ConcurrentHashMap<>()
+        );
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        resources.get(uri);
+        resources.getAsync(uri).join();
+        resources.get(uri);
+        MatcherAssert.assertThat(sent.get(), Matchers.is(3));
+    }
+
+    /**
+     * A GET in flight is shared with the same GET made from another
+     * thread, but not with a different access token.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void coalescesBySameIdentity() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger sent = new AtomicInteger();
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        Mockito.when(delegate.authenticated(Mockito.any())).thenReturn(
+            delegate
+        );
+        Mockito.when(
+            delegate.get(Mockito.any(URI.class), Mockito.any())
+        ).thenAnswer(
+            invocation -> {
+                sent.incrementAndGet();
+                entered.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return new MockResource(200, JsonValue.NULL);
+            }
+        );
+        Mockito.when(
+            delegate.getAsync(Mockito.any(URI.class), Mockito.any())
+        ).thenReturn(
+            CompletableFuture.completedFuture(
+                new MockResource(200, JsonValue.NULL)
+            )
+        );
+        final JsonResources resources = new SingleFlightJsonResources(
+            delegate, "anonymous", new ConcurrentHashMap<>()
+        );
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        final CompletableFuture<Resource> leader = CompletableFuture
+            .supplyAsync(() -> resources.get(uri));
+        MatcherAssert.assertThat(
+            entered.await(5, TimeUnit.SECONDS), Matchers.is(true)
+        );
+        final CompletableFuture<Resource> follower = resources.getAsync(uri);
+        final CompletableFuture<Resource> other = resources
+            .authenticated(new AccessToken.Github("token123"))
+            .getAsync(uri);
+        MatcherAssert.assertThat(other.isDone(), Matchers.is(true));
+        MatcherAssert.assertThat(follower.isDone(), Matchers.is(false));
+        release.countDown();
+        MatcherAssert.assertThat(
+            follower.join(), Matchers.sameInstance(leader.join())
+        );
+        MatcherAssert.assertThat(sent.get(), Matchers.is(1));
+    }
+
+    /**
+     * The failure of the shared call reaches all the callers, and the
+     * next GET is tried again.
+     */
+    @Test
+    public void propagatesFailure() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final CompletableFuture<Resource> call = new CompletableFuture<>();
+        Mockito.when(
+            delegate.getAsync(Mockito.any(URI.class), Mockito.any())
+        ).thenReturn(call);
+        final JsonResources resources = new SingleFlightJsonResources(
+            delegate, "anonymous", new ConcurrentHashMap<>()
+        );
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        final CompletableFuture<Resource> first = resources.getAsync(uri);
+        final CompletableFuture<Resource> second = resources.getAsync(uri);
+        call.completeExceptionally(new IllegalStateException("Boom"));
+        MatcherAssert.assertThat(
+            first.isCompletedExceptionally(), Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            second.isCompletedExceptionally(), Matchers.is(true)
+        );
+        resources.getAsync(uri);
+        Mockito.verify(delegate, Mockito.times(2))
+            .getAsync(Mockito.any(URI.class), Mockito.any());
+    }
+
+    /**
+     * If the delegate throws instead of returning a future, the GET fails
+     * and the next GET for the same URI is tried again, it does not wait
+     * on a dead flight.
+     */
+    @Test
+    public void forgetsFlightWhenDelegateThrows() {
+        final JsonResources delegate = Mockito.mock(JsonResources.class);
+        final Resource ok = new MockResource(200, JsonValue.NULL);
+        Mockito.when(
+            delegate.getAsync(Mockito.any(URI.class), Mockito.any())
+        ).thenThrow(new IllegalStateException("Circuit open"))
+            .thenReturn(CompletableFuture.completedFuture(ok));
+        final Map<String, CompletableFuture<Resource>> inflight =
+            new ConcurrentHashMap<>();
+        final JsonResources resources = new SingleFlightJsonResources(
+            delegate, "anonymous", inflight
+        );
+        final URI uri = URI.create("https://api.github.com/repos/a/b");
+        MatcherAssert.assertThat(
+            resources.getAsync(uri).isCompletedExceptionally(),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(inflight.isEmpty(), Matchers.is(true));
+        MatcherAssert.assertThat(
+            resources.getAsync(uri).join(), Matchers.sameInstance(ok)
+        );
+    }
+
+    /**
+     * POST is never coalesced.
+     */
+    @Test
+    public void doesNotCoalescePost() {
+        final AtomicInteger sent = new AtomicInteger();
+        final JsonResources resources = new SingleFlightJsonResources(
+            new MockJsonResources(
+                req -> {
+                    sent.incrementAndGet();
+                    return new MockResource(201, JsonValue.NULL);
+                }
+            )
+        );
+        final URI uri = URI.create("https://api.github.com/repos/a/b/issues");
+        resources.post(uri, JsonValue.NULL);
+        resources.post(uri, JsonValue.NULL);
+        MatcherAssert.assertThat(sent.get(), Matchers.is(2));
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2020-2021, Self XDSD Contributors
+ * All rights reserved.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"),
+ * to read the Software only. Permission is hereby NOT GRANTED to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.selfxdsd.core;
+
+import com.selfxdsd.api.Resource;
+import com.selfxdsd.core.mock.MockJsonResources;
+import com.selfxdsd.core.mock.MockJsonResources.MockResource;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.json.JsonValue;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unit tests for {@link WarmUp}.
+ * @author criske
+ * @version $Id$
+ * @since 0.0.86
+ */
+public final class WarmUpTestCase {
+
+    /**
+     * WarmUp sends a GET to each base URI, ignoring failures.
+     */
+    @Test
+    public void opensEachBaseUri() {
+        final Set<URI> called = ConcurrentHashMap.newKeySet();
+        final JsonResources resources = new MockJsonResources(
+            req -> {
+                called.add(req.getUri());
+                if (req.getUri().getHost().contains("gitlab")) {
+                    throw new IllegalStateException("Connection refused");
+                }
+                return new MockResource(404, JsonValue.NULL);
+            }
+        );
+        final Duration took = new WarmUp(
+            resources,
+            List.of(Github.BASE_URI, Gitlab.BASE_URI, Bitbucket.BASE_URI),
+            Duration.ofSeconds(1)
+        ).perform();
+        MatcherAssert.assertThat(
+            called,
+            Matchers.containsInAnyOrder(
+                Github.BASE_URI, Gitlab.BASE_URI, Bitbucket.BASE_URI
+            )
+        );
+        MatcherAssert.assertThat(took.isNegative(), Matchers.is(false));
+    }
+
+    /**
+     * WarmUp does not wait more than the timeout for slow hosts.
+     */
+    @Test
+    public void givesUpAfterTimeout() {
+        final JsonResources resources = Mockito.mock(JsonResources.class);
+        Mockito.when(resources.getAsync(Mockito.any(), Mockito.any()))
+            .thenReturn(new CompletableFuture<Resource>());
+        final Duration took = new WarmUp(
+            resources, List.of(Github.BASE_URI), Duration.ofMillis(100)
+        ).perform();
+        MatcherAssert.assertThat(
+            took, Matchers.lessThan(Duration.ofSeconds(5))
+        );
+        MatcherAssert.assertThat(
+            took, Matchers.greaterThanOrEqualTo(Duration.ofMillis(100))
+        );
+    }
+}
@@ -10,6 +10,8 @@ import javax.json.JsonObject;
 import javax.json.JsonValue;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -196,6 +198,65 @@ public final class MockJsonResources implements JsonResources {
         return this.onRequest.apply(request);
     }
 
+    /**
+     * The mock completes async requests right away, on the caller thread,
+     * so the requests history keeps the order in which they were made.
+     * @param uri URI.
+     * @param headers HTTP Headers.
+     * @return Completed future Resource.
+     */
+    @Override
+    public CompletableFuture<Resource> getAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers
+    ) {
+        return CompletableFuture.completedFuture(this.get(uri, headers));
+    }
+
+    @Override
+    public CompletableFuture<Resource> postAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return CompletableFuture.completedFuture(
+            this.post(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> patchAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return CompletableFuture.completedFuture(
+            this.patch(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> putAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return CompletableFuture.completedFuture(
+            this.put(uri, headers, body)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Resource> deleteAsync(
+        final URI uri,
+        final Supplier<Map<String, List<String>>> headers,
+        final JsonValue body
+    ) {
+        return CompletableFuture.completedFuture(
+            this.delete(uri, headers, body)
+        );
+    }
+
     /**
      * Get the requests history.
      * @return MockRequests.
@@ -313,7 +374,7 @@ public final class MockJsonResources implements JsonResources {
          * Private ctor.
          */
         private MockRequests(){
-            this.requests= new ArrayList<>();
+            this.requests = new CopyOnWriteArrayList<>();
         }
 
         /**
@@ -24,11 +24,13 @@ package com.selfxdsd.core.projects;
 import com.selfxdsd.api.*;
 import com.selfxdsd.api.exceptions.WalletAlreadyExistsException;
 import com.selfxdsd.api.storage.Storage;
+import com.selfxdsd.core.Deadline;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -493,6 +495,61 @@ public final class StoredProjectTestCase {
         Mockito.verify(collaborators, Mockito.times(1)).remove("charlesmike");
     }
 
+    /**
+     * StoredProject.resolve(...) sends the Event to the PM, running it
+     * within the Event's deadline.
+     */
+    @Test
+    public void resolvesEventWithinDeadline() {
+        final ProjectManager manager = Mockito.mock(ProjectManager.class);
+        final Project project = new StoredProject(
+            Mockito.mock(User.class),
+            "john/test",
+            "wh123token",
+            manager,
+            Mockito.mock(Storage.class)
+        );
+        final Instant deadline = Instant.now().plusSeconds(60);
+        final Event event = Mockito.mock(Event.class);
+        Mockito.when(event.type()).thenReturn(Event.Type.NEW_ISSUE);
+        Mockito.when(event.deadline()).thenReturn(deadline);
+        final List<Instant> seen = new ArrayList<>();
+        Mockito.doAnswer(
+            invocation -> seen.add(Deadline.current().instant())
+        ).when(manager).newIssue(event);
+        project.resolve(event);
+        MatcherAssert.assertThat(seen, Matchers.contains(deadline));
+        MatcherAssert.assertThat(
+            Deadline.current().instant(), Matchers.is(Instant.MAX)
+        );
+    }
+
+    /**
+     * StoredProject.resolve(...) abandons the Event if its deadline passed.
+     */
+    @Test
+    public void abandonsEventPastDeadline() {
+        final ProjectManager manager = Mockito.mock(ProjectManager.class);
+        final User owner = Mockito.mock(User.class);
+        final Provider provider = Mockito.mock(Provider.class);
+        Mockito.when(provider.name()).thenReturn(Provider.Names.GITHUB);
+        Mockito.when(owner.provider()).thenReturn(provider);
+        final Project project = new StoredProject(
+            owner,
+            "john/test",
+            "wh123token",
+            manager,
+            Mockito.mock(Storage.class)
+        );
+        final Event event = Mockito.mock(Event.class);
+        Mockito.when(event.type()).thenReturn(Event.Type.NEW_ISSUE);
+        Mockito.when(event.deadline()).thenReturn(
+            Instant.now().minusSeconds(1)
+        );
+        project.resolve(event);
+        Mockito.verify(manager, Mockito.never()).newIssue(event);
+    }
+
     /**
      * Mock a Repo for test.
      *
@@ -25,11 +25,17 @@ package com.selfxdsd.core.projects;
 import com.selfxdsd.api.Event;
 import com.selfxdsd.api.Project;
 import com.selfxdsd.api.Provider;
+import com.selfxdsd.api.storage.JsonStorage;
+import com.selfxdsd.api.storage.Storage;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.net.URI;
+
 /**
  * Unit tests for {@link WebhookEvents}.
  * @author Mihai Andronache (amihaiemil@gmail.com)
@@ -65,6 +71,85 @@ public final class WebhookEventsTestCase {
         );
     }
 
+    /**
+     * The issue embedded in a Github payload of a public repository is
+     * stored in the project's JsonStorage, under its API URI.
+     */
+    @Test
+    public void storesGithubPayloadIssue() {
+        final JsonStorage jsonStorage = new JsonStorage.InMemory();
+        final Storage storage = Mockito.mock(Storage.class);
+        Mockito.when(storage.jsonStorage()).thenReturn(jsonStorage);
+        final Project project = Mockito.mock(Project.class);
+        Mockito.when(project.provider()).thenReturn(Provider.Names.GITHUB);
+        Mockito.when(project.storage()).thenReturn(storage);
+        final String url = "https://api.github.com/repos/mihai/test/issues/1";
+        final JsonObject issue = Json.createObjectBuilder()
+            .add("url", url)
+            .add("number", 1)
+            .add("updated_at", "2021-03-01T10:15:30Z")
+            .build();
+
+        WebhookEvents.create(
+            project,
+            "issues",
+            Json.createObjectBuilder()
+                .add("action", "opened")
+                .add("issue", issue)
+                .add(
+                    "repository",
+                    Json.createObjectBuilder().add("private", false)
+                )
+                .build()
+                .toString()
+        );
+
+        MatcherAssert.assertThat(
+            jsonStorage.getResource(URI.create(url)).asJsonObject(),
+            Matchers.is(issue)
+        );
+    }
+
+    /**
+     * The issue embedded in a Github payload of a private repository is
+     * not stored, since the stored payloads are shared by all identities.
+     */
+    @Test
+    public void doesNotStoreGithubPrivatePayloadIssue() {
+        final JsonStorage jsonStorage = new JsonStorage.InMemory();
+        final Storage storage = Mockito.mock(Storage.class);
+        Mockito.when(storage.jsonStorage()).thenReturn(jsonStorage);
+        final Project project = Mockito.mock(Project.class);
+        Mockito.when(project.provider()).thenReturn(Provider.Names.GITHUB);
+        Mockito.when(project.storage()).thenReturn(storage);
+        final String url = "https://api.github.com/repos/mihai/test/issues/1";
+
+        WebhookEvents.create(
+            project,
+            "issues",
+            Json.createObjectBuilder()
+                .add("action", "opened")
+                .add(
+                    "issue",
+                    Json.createObjectBuilder()
+                        .add("url", url)
+                        .add("number", 1)
+                        .add("updated_at", "2021-03-01T10:15:30Z")
+                )
+                .add(
+                    "repository",
+                    Json.createObjectBuilder().add("private", true)
+                )
+                .build()
+                .toString()
+        );
+
+        MatcherAssert.assertThat(
+            jsonStorage.getResource(URI.create(url)),
+            Matchers.nullValue()
+        );
+    }
+
     /**
      * It can create the GitlabWebhookEvent.
      */